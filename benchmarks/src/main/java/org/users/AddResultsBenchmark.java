@@ -0,0 +1,66 @@
+package org.users;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+import org.users.benchmarks.SyntheticUsers;
+import org.users.client.UsersClient;
+import org.users.client.model.User;
+
+/**
+ * Merging the city and vicinity legs of an area query, half of the users being in both, by id against the
+ * {@link HashSet} of users it replaced. The ids are sequential, random, or runs far apart from one another.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddResultsBenchmark {
+
+    @Param({"1000", "100000"})
+    private int users;
+
+    @Param({"SEQUENTIAL", "RANDOM", "BLOCKS"})
+    private SyntheticUsers.Ids ids;
+
+    private PeopleInArea peopleInArea;
+    private List<User> cityUsers;
+    private List<User> vicinityUsers;
+
+    @Setup
+    public void setUp() {
+        peopleInArea = new PeopleInArea(new UsersClient("http://127.0.0.1:1", new RestTemplate()));
+        final List<User> all = SyntheticUsers.users(users + users / 2, 42, ids);
+        cityUsers = all.subList(0, users);
+        vicinityUsers = all.subList(users / 2, all.size());
+    }
+
+    @Benchmark
+    public Set<User> addResults() {
+        return peopleInArea.addResults(cityUsers, vicinityUsers);
+    }
+
+    @Benchmark
+    public Set<User> hashSet() {
+        final Set<User> usrs = new HashSet<>();
+        usrs.addAll(cityUsers);
+        usrs.addAll(vicinityUsers);
+        return usrs;
+    }
+}
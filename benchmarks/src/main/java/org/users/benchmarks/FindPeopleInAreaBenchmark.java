@@ -0,0 +1,86 @@
+package org.users.benchmarks;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+import org.users.PeopleInArea;
+import org.users.cache.UsersSnapshotCache;
+import org.users.client.AsyncUsersClient;
+import org.users.client.UsersClient;
+import org.users.client.model.User;
+import org.users.stub.StubUsersApi;
+
+/**
+ * End-to-end area queries against an in-process stub of the Users API, for each way of wiring
+ * {@link PeopleInArea}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FindPeopleInAreaBenchmark {
+
+    private static final String CITY = "London";
+    private static final int MILES = 50;
+
+    @Param({"10000", "100000"})
+    private int users;
+
+    private StubUsersApi stubUsersApi;
+    private UsersSnapshotCache snapshotCache;
+    private PeopleInArea live;
+    private PeopleInArea asyncLive;
+    private PeopleInArea cached;
+
+    @Setup
+    public void setUp() throws IOException {
+        final List<User> synthetic = SyntheticUsers.users(users, 42);
+        stubUsersApi = StubUsersApi.builder(synthetic).otherCities(synthetic.subList(0, 100)).start();
+        final UsersClient usersClient = new UsersClient(stubUsersApi.getRootContext(), new RestTemplate());
+        snapshotCache = new UsersSnapshotCache(usersClient, Duration.ofHours(1));
+        snapshotCache.refresh();
+        live = new PeopleInArea(usersClient);
+        asyncLive = PeopleInArea.builder(new AsyncUsersClient(stubUsersApi.getRootContext())).build();
+        cached = new PeopleInArea(usersClient, snapshotCache);
+    }
+
+    @TearDown
+    public void tearDown() {
+        snapshotCache.close();
+        stubUsersApi.close();
+    }
+
+    @Benchmark
+    public Set<User> liveDataset() throws ExecutionException, InterruptedException {
+        return live.findPeopleInArea(CITY, MILES);
+    }
+
+    @Benchmark
+    public Set<User> asyncLiveDataset() throws ExecutionException, InterruptedException {
+        return asyncLive.findPeopleInAreaAsync(CITY, MILES).get();
+    }
+
+    @Benchmark
+    public Set<User> snapshotCacheDataset() throws ExecutionException, InterruptedException {
+        return cached.findPeopleInArea(CITY, MILES);
+    }
+}
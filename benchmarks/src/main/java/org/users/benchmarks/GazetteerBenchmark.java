@@ -0,0 +1,52 @@
+package org.users.benchmarks;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.users.geo.Gazetteer;
+import org.users.geo.GeoPoint;
+
+/**
+ * City name resolution through the bundled gazetteer, for plain and accented names and prefixes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GazetteerBenchmark {
+
+    private Gazetteer gazetteer;
+
+    @Setup
+    public void setUp() {
+        gazetteer = Gazetteer.defaults();
+    }
+
+    @Benchmark
+    public Optional<GeoPoint> locate() {
+        return gazetteer.locate("Manchester");
+    }
+
+    @Benchmark
+    public Optional<GeoPoint> locateAccented() {
+        return gazetteer.locate("Düsseldorf");
+    }
+
+    @Benchmark
+    public List<String> findByPrefix() {
+        return gazetteer.findByPrefix("new", 10);
+    }
+}
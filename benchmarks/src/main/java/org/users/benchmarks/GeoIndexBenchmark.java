@@ -0,0 +1,76 @@
+package org.users.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.users.client.model.User;
+import org.users.dataset.ColumnarUsersDataset;
+import org.users.dataset.IndexedUsersDataset;
+import org.users.geo.GeoCircle;
+import org.users.geo.GeoPoint;
+
+/**
+ * Radius queries through the grid index, over {@link User} objects and over primitive columns, against a full
+ * scan of the same users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class GeoIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int users;
+
+    @Param({"10", "50", "250"})
+    private int miles;
+
+    private List<User> all;
+    private IndexedUsersDataset dataset;
+    private ColumnarUsersDataset columnar;
+    private GeoCircle circle;
+
+    @Setup
+    public void setUp() {
+        all = SyntheticUsers.users(users, 42);
+        dataset = new IndexedUsersDataset(all);
+        final ColumnarUsersDataset.Builder builder = ColumnarUsersDataset.builder();
+        all.forEach(builder);
+        columnar = builder.build();
+        circle = new GeoCircle(new GeoPoint(SyntheticUsers.CITY_CENTRES[0][0], SyntheticUsers.CITY_CENTRES[0][1]), miles);
+    }
+
+    @Benchmark
+    public List<User> gridIndex() {
+        return dataset.findWithin(circle);
+    }
+
+    @Benchmark
+    public List<User> columnarGridIndex() {
+        return columnar.findWithin(circle);
+    }
+
+    @Benchmark
+    public long fullScan() {
+        long found = 0;
+        for (User user : all) {
+            if (circle.contains(user.getLatitude(), user.getLongitude())) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
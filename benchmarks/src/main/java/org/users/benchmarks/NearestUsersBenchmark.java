@@ -0,0 +1,77 @@
+package org.users.benchmarks;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.users.client.model.User;
+import org.users.dataset.ColumnarUsersDataset;
+import org.users.geo.GeoCircle;
+import org.users.geo.GeoPoint;
+
+/**
+ * The k users nearest to a city selected with a bounded heap over the columns, sequentially and split across
+ * the cores, against sorting every user within the radius.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class NearestUsersBenchmark {
+
+    @Param({"1000000"})
+    private int users;
+
+    @Param({"50", "250"})
+    private int miles;
+
+    @Param({"100"})
+    private int k;
+
+    private ColumnarUsersDataset columnar;
+    private ColumnarUsersDataset parallelColumnar;
+    private GeoCircle circle;
+
+    @Setup
+    public void setUp() {
+        final List<User> all = SyntheticUsers.users(users, 42);
+        final ColumnarUsersDataset.Builder builder = ColumnarUsersDataset.builder();
+        all.forEach(builder);
+        columnar = builder.build();
+        parallelColumnar = builder.nearestParallelism(Runtime.getRuntime().availableProcessors()).build();
+        circle = new GeoCircle(new GeoPoint(SyntheticUsers.CITY_CENTRES[0][0], SyntheticUsers.CITY_CENTRES[0][1]), miles);
+    }
+
+    @Benchmark
+    public List<User> boundedHeap() {
+        return columnar.findNearest(circle, k);
+    }
+
+    @Benchmark
+    public List<User> parallelBoundedHeap() {
+        return parallelColumnar.findNearest(circle, k);
+    }
+
+    @Benchmark
+    public List<User> sortAllWithin() {
+        return columnar.findWithin(circle).stream()
+                .sorted(Comparator.comparingDouble(user -> circle.distanceMiles(user.getLatitude(),
+                        user.getLongitude())))
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,78 @@
+package org.users.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.users.client.model.User;
+
+/**
+ * Generates reproducible users shaped like the responses of the Users API: most of them clustered around a
+ * few cities, the rest spread over the globe, each with the extra fields the API returns.
+ */
+public final class SyntheticUsers {
+
+    /**
+     * How the ids of the users are laid out, the API guaranteeing no particular order.
+     */
+    public enum Ids {
+        /** 1 to count. */
+        SEQUENTIAL,
+        /** Distinct random positive ids. */
+        RANDOM,
+        /** Runs of 1000 sequential ids, each run starting 2^18 after the previous one. */
+        BLOCKS
+    }
+
+    public static final double[][] CITY_CENTRES = {
+            {51.5074, -0.1278}, {48.8566, 2.3522}, {52.5200, 13.4050}, {40.4168, -3.7038}, {53.4808, -2.2426}};
+    private static final double CLUSTERED_SHARE = 0.6;
+
+    private SyntheticUsers() {
+    }
+
+    public static List<User> users(final int count, final long seed) {
+        return users(count, seed, Ids.SEQUENTIAL);
+    }
+
+    public static List<User> users(final int count, final long seed, final Ids ids) {
+        final Random random = new Random(seed);
+        final Set<Long> randomIds = new HashSet<>();
+        final List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final double[] location = location(random);
+            users.add(new User(id(ids, i, random, randomIds), location[0], location[1]));
+        }
+        return users;
+    }
+
+    /**
+     * The id of the index-th user, a random one being distinct from those already drawn into randomIds.
+     */
+    public static long id(final Ids ids, final int index, final Random random, final Set<Long> randomIds) {
+        switch (ids) {
+            case RANDOM:
+                long id;
+                do {
+                    id = random.nextLong() & Long.MAX_VALUE;
+                } while (!randomIds.add(id));
+                return id;
+            case BLOCKS:
+                return ((long) (index / 1000) << 18) + index % 1000 + 1;
+            default:
+                return index + 1;
+        }
+    }
+
+    private static double[] location(final Random random) {
+        if (random.nextDouble() < CLUSTERED_SHARE) {
+            final double[] centre = CITY_CENTRES[random.nextInt(CITY_CENTRES.length)];
+            return new double[]{
+                    Math.max(-90, Math.min(90, centre[0] + random.nextGaussian() * 0.7)),
+                    Math.max(-180, Math.min(180, centre[1] + random.nextGaussian() * 0.7))};
+        }
+        return new double[]{Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)), random.nextDouble() * 360 - 180};
+    }
+}
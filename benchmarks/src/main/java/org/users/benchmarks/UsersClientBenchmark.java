@@ -0,0 +1,108 @@
+package org.users.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+import org.users.client.UsersClient;
+import org.users.client.UsersRestTemplates;
+import org.users.client.metrics.ClientMetrics;
+import org.users.client.metrics.Endpoint;
+import org.users.client.metrics.EndpointMetrics;
+import org.users.client.model.User;
+import org.users.stub.StubUsersApi;
+
+/**
+ * A single {@link UsersClient} call against an in-process stub of the Users API, with and without a gzipped
+ * body and over the default or the pooled {@link RestTemplate}. The bytes per call that came over the wire
+ * are printed when a trial ends, the gc profiler gives the bytes allocated per call. The baseline is a plain
+ * {@link RestTemplate#exchange} building its URL and headers per call and sending no Accept-Encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+//without nodelay the stub's small responses wait out the delayed acknowledgement
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dsun.net.httpserver.nodelay=true"})
+public class UsersClientBenchmark {
+
+    private static final String CITY = "London";
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"100"})
+    private int cityUsers;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    @Param({"simple", "pooled"})
+    private String transport;
+
+    private StubUsersApi stubUsersApi;
+    private RestTemplate restTemplate;
+    private ClientMetrics metrics;
+    private UsersClient usersClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        final List<User> synthetic = SyntheticUsers.users(users, 42);
+        stubUsersApi = StubUsersApi.builder(synthetic)
+                .otherCities(synthetic.subList(0, Math.min(cityUsers, synthetic.size())))
+                .compress(gzip)
+                .start();
+        restTemplate = "pooled".equals(transport) ? UsersRestTemplates.pooled() : new RestTemplate();
+        metrics = new ClientMetrics();
+        usersClient = new UsersClient(stubUsersApi.getRootContext(), restTemplate, metrics);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            final EndpointMetrics endpointMetrics = metrics.get(endpoint);
+            if (endpointMetrics.getSucceeded() > 0) {
+                System.out.printf("%n%s: %d response bytes per call%n", endpoint,
+                        endpointMetrics.getResponseBytes() / endpointMetrics.getSucceeded());
+            }
+        }
+        stubUsersApi.close();
+    }
+
+    @Benchmark
+    public List<User> allUsers() {
+        return usersClient.getAllUsers();
+    }
+
+    @Benchmark
+    public List<User> cityUsers() {
+        return usersClient.getUsersByCity(CITY);
+    }
+
+    @Benchmark
+    public User[] cityUsersBaseline() {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        return restTemplate.exchange(stubUsersApi.getRootContext() + UsersClient.CITY + CITY + UsersClient.USERS,
+                HttpMethod.GET, new HttpEntity<>(headers), User[].class).getBody();
+    }
+}
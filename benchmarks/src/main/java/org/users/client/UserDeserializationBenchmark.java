@@ -0,0 +1,97 @@
+package org.users.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.users.benchmarks.SyntheticUsers;
+import org.users.client.codec.UserJsonDecoder;
+import org.users.client.model.User;
+import org.users.dataset.ColumnarUsersDataset;
+import org.users.stub.StubUsersApi;
+
+/**
+ * Parsing a "/users/" body into a {@code User[]} as {@link UsersClient#getAllUsers()} does, against the
+ * token streaming of {@link UsersClient#streamAllUsers(java.util.function.Consumer)}. The codec variants
+ * decode the same body with {@link UserJsonDecoder} instead of Jackson databind, to users or straight into the
+ * columns of a {@link ColumnarUsersDataset.Builder}. Coordinates are written with the 6 decimals the Users API
+ * sends ("api"), or with every digit of the double ("full"), which the decoder leaves to {@link Double#parseDouble}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserDeserializationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int users;
+
+    @Param({"api", "full"})
+    private String precision;
+
+    private byte[] json;
+    private ObjectMapper objectMapper;
+    private UserStreamReader userStreamReader;
+    private UserJsonDecoder decoder;
+    private UserStreamReader codecStreamReader;
+
+    @Setup
+    public void setUp() {
+        final List<User> synthetic = SyntheticUsers.users(users, 42);
+        json = StubUsersApi.json("api".equals(precision) ? synthetic.stream()
+                .map(user -> new User(user.getId(), round(user.getLatitude()), round(user.getLongitude())))
+                .collect(Collectors.toList()) : synthetic);
+        objectMapper = new ObjectMapper();
+        userStreamReader = new UserStreamReader(objectMapper);
+        decoder = new UserJsonDecoder();
+        codecStreamReader = new UserStreamReader(decoder);
+    }
+
+    @Benchmark
+    public User[] objectMapperArray() throws IOException {
+        return objectMapper.readValue(json, User[].class);
+    }
+
+    @Benchmark
+    public void streamingReader(final Blackhole blackhole) throws IOException {
+        userStreamReader.read(new ByteArrayInputStream(json), blackhole::consume);
+    }
+
+    @Benchmark
+    public User[] codecArray() throws IOException {
+        return decoder.readArray(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    public void codecStreamingReader(final Blackhole blackhole) throws IOException {
+        codecStreamReader.read(new ByteArrayInputStream(json), blackhole::consume);
+    }
+
+    @Benchmark
+    public ColumnarUsersDataset.Builder codecColumns() throws IOException {
+        final ColumnarUsersDataset.Builder builder = ColumnarUsersDataset.builder();
+        decoder.read(new ByteArrayInputStream(json), builder::add);
+        return builder;
+    }
+
+    private static double round(final double coordinate) {
+        return Math.round(coordinate * 1e6) / 1e6;
+    }
+}
@@ -0,0 +1,199 @@
+package org.users.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.web.client.RestTemplate;
+import org.users.PeopleInArea;
+import org.users.cache.UsersSnapshotCache;
+import org.users.client.UserClientException;
+import org.users.client.UsersClient;
+import org.users.client.UsersRestTemplates;
+import org.users.client.metrics.LatencyHistogram;
+import org.users.stub.StubUsersApi;
+
+/**
+ * Drives {@link PeopleInArea#findPeopleInArea(String, int)} from a number of threads against a
+ * {@link StubUsersApi} serving a {@link SyntheticDataset}, each thread querying random cities of the dataset back
+ * to back. After a warmup it reports the throughput, the latency percentiles of the successful queries and the
+ * heap use, then compares them with a stored baseline.
+ *
+ * <p>Exits with 0 when no baseline is given or the run is within its tolerance, 1 when it regressed and 2
+ * when the options or the baseline are unusable.
+ */
+public final class LoadTest {
+
+    private static final int SNAPSHOT_ATTEMPTS = 10;
+    private static final long HEAP_SAMPLE_MILLIS = 50;
+
+    private LoadTest() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.out.println("Scenario: " + options.scenario());
+        final LoadTestReport report = run(options);
+        System.out.println(report);
+        System.exit(check(options, report));
+    }
+
+    static LoadTestReport run(final LoadTestOptions options) throws Exception {
+        final SyntheticDataset dataset = SyntheticDataset.generate(options.users(), options.cities(),
+                options.distribution(), options.ids(), options.seed());
+        final StubUsersApi.Builder stub = StubUsersApi.builder(dataset.getUsers())
+                .latency(options.latency(), options.jitter())
+                .errorRate(options.errorRate());
+        dataset.getCities().forEach(city -> stub.city(city, dataset.getUsersOf(city)));
+        try (StubUsersApi api = stub.start()) {
+            final RestTemplate restTemplate = UsersRestTemplates.pooled(options.concurrency() * 2,
+                    Duration.ofSeconds(2), Duration.ofSeconds(30));
+            final UsersClient usersClient = new UsersClient(api.getRootContext(), restTemplate);
+            UsersSnapshotCache snapshotCache = null;
+            try {
+                final PeopleInArea peopleInArea;
+                if (options.liveDataset()) {
+                    peopleInArea = new PeopleInArea(usersClient);
+                } else {
+                    snapshotCache = new UsersSnapshotCache(usersClient, Duration.ofHours(1));
+                    load(snapshotCache);
+                    peopleInArea = new PeopleInArea(usersClient, snapshotCache);
+                }
+                drive(peopleInArea, dataset.getCities(), options, options.warmup(), new LatencyHistogram(),
+                        new LongAdder());
+                return measure(peopleInArea, dataset.getCities(), options);
+            } finally {
+                if (snapshotCache != null) {
+                    snapshotCache.close();
+                }
+            }
+        }
+    }
+
+    private static LoadTestReport measure(final PeopleInArea peopleInArea, final List<String> cities,
+                                          final LoadTestOptions options) throws InterruptedException {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final AtomicLong peakHeap = new AtomicLong();
+        final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        final long gcCountBefore = gcCount();
+        final long gcMillisBefore = gcMillis();
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final long started = System.nanoTime();
+        try {
+            drive(peopleInArea, cities, options, options.duration(), latencies, errors);
+        } finally {
+            sampler.shutdownNow();
+        }
+        final long elapsed = System.nanoTime() - started;
+        final long gcCount = gcCount() - gcCountBefore;
+        final long gcMillis = gcMillis() - gcMillisBefore;
+        //the users API stub and its dataset are retained too, the same for every run of a scenario
+        System.gc();
+        System.gc();
+        return LoadTestReport.of(options.scenario(), latencies.snapshot(), errors.sum(), elapsed, peakHeap.get(),
+                memory.getHeapMemoryUsage().getUsed(), gcCount, gcMillis);
+    }
+
+    private static void drive(final PeopleInArea peopleInArea, final List<String> cities,
+                              final LoadTestOptions options, final Duration duration,
+                              final LatencyHistogram latencies, final LongAdder errors) throws InterruptedException {
+        final ExecutorService workers = Executors.newFixedThreadPool(options.concurrency());
+        final long end = System.nanoTime() + duration.toNanos();
+        for (int worker = 0; worker < options.concurrency(); worker++) {
+            final Random random = new Random(options.seed() + worker);
+            workers.execute(() -> {
+                while (System.nanoTime() - end < 0 && !Thread.currentThread().isInterrupted()) {
+                    final String city = cities.get(random.nextInt(cities.size()));
+                    final long started = System.nanoTime();
+                    try {
+                        peopleInArea.findPeopleInArea(city, options.miles());
+                        latencies.record(System.nanoTime() - started);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(duration.toNanos() + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * The first download may hit an injected error like any other request.
+     */
+    private static void load(final UsersSnapshotCache snapshotCache) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                snapshotCache.refresh();
+                return;
+            } catch (UserClientException e) {
+                if (attempt == SNAPSHOT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    static int check(final LoadTestOptions options, final LoadTestReport report) throws Exception {
+        final Path baseline = options.baseline();
+        if (baseline == null) {
+            return 0;
+        }
+        if (options.writeBaseline()) {
+            report.write(baseline);
+            System.out.println("Baseline written to " + baseline);
+            return 0;
+        }
+        if (!Files.exists(baseline)) {
+            System.err.println("No baseline at " + baseline + ", run with --write-baseline to store one");
+            return 2;
+        }
+        final LoadTestReport expected = LoadTestReport.read(baseline);
+        if (!expected.getScenario().equals(report.getScenario())) {
+            System.err.println("The baseline was measured for another scenario: " + expected.getScenario());
+            return 2;
+        }
+        final List<String> regressions = report.regressionsFrom(expected, options.tolerance());
+        if (regressions.isEmpty()) {
+            System.out.println("Within " + Math.round(options.tolerance() * 100) + "% of the baseline");
+            return 0;
+        }
+        regressions.forEach(regression -> System.out.println("REGRESSION: " + regression));
+        return 1;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+}
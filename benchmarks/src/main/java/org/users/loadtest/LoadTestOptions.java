@@ -0,0 +1,154 @@
+package org.users.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.users.benchmarks.SyntheticUsers;
+
+/**
+ * The settings of a {@link LoadTest}, parsed from "--name=value" arguments. The scenario, every setting but the
+ * baseline ones, identifies the runs whose results can be compared.
+ */
+final class LoadTestOptions {
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    private LoadTestOptions() {
+        //the scenario
+        values.put("users", "50000");
+        values.put("cities", "20");
+        values.put("distribution", "mixed");
+        values.put("ids", "sequential");
+        values.put("seed", "42");
+        values.put("latency", "5ms");
+        values.put("jitter", "5ms");
+        values.put("error-rate", "0");
+        values.put("dataset", "snapshot");
+        values.put("miles", "50");
+        values.put("concurrency", "16");
+        values.put("warmup", "5s");
+        values.put("duration", "20s");
+        //the baseline
+        values.put("baseline", "");
+        values.put("write-baseline", "false");
+        values.put("tolerance", "0.25");
+    }
+
+    static LoadTestOptions parse(final String[] args) {
+        final LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            final int equals = arg.indexOf('=');
+            final String name = arg.startsWith("--") ? arg.substring(2, equals < 0 ? arg.length() : equals) : "";
+            if (!options.values.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of "
+                        + options.values.keySet());
+            }
+            options.values.put(name, equals < 0 ? "true" : arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    int users() {
+        return Integer.parseInt(values.get("users"));
+    }
+
+    int cities() {
+        return Integer.parseInt(values.get("cities"));
+    }
+
+    SyntheticDataset.Distribution distribution() {
+        return SyntheticDataset.Distribution.valueOf(values.get("distribution").toUpperCase(Locale.ROOT));
+    }
+
+    SyntheticUsers.Ids ids() {
+        return SyntheticUsers.Ids.valueOf(values.get("ids").toUpperCase(Locale.ROOT));
+    }
+
+    long seed() {
+        return Long.parseLong(values.get("seed"));
+    }
+
+    Duration latency() {
+        return duration("latency");
+    }
+
+    Duration jitter() {
+        return duration("jitter");
+    }
+
+    double errorRate() {
+        return Double.parseDouble(values.get("error-rate"));
+    }
+
+    /**
+     * "live" downloads "/users/" on every query, "snapshot" serves the vicinity from a snapshot cache.
+     */
+    boolean liveDataset() {
+        final String dataset = values.get("dataset");
+        if (!dataset.equals("live") && !dataset.equals("snapshot")) {
+            throw new IllegalArgumentException("Unknown dataset " + dataset + ", expected live or snapshot");
+        }
+        return dataset.equals("live");
+    }
+
+    int miles() {
+        return Integer.parseInt(values.get("miles"));
+    }
+
+    int concurrency() {
+        return Integer.parseInt(values.get("concurrency"));
+    }
+
+    Duration warmup() {
+        return duration("warmup");
+    }
+
+    Duration duration() {
+        return duration("duration");
+    }
+
+    Path baseline() {
+        return values.get("baseline").isEmpty() ? null : Paths.get(values.get("baseline"));
+    }
+
+    boolean writeBaseline() {
+        return Boolean.parseBoolean(values.get("write-baseline"));
+    }
+
+    /**
+     * How much worse than the baseline a result may be, 0.25 letting latencies grow and throughput drop by 25%.
+     */
+    double tolerance() {
+        return Double.parseDouble(values.get("tolerance"));
+    }
+
+    String scenario() {
+        final StringBuilder scenario = new StringBuilder();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            if (value.getKey().equals("baseline")) {
+                break;
+            }
+            scenario.append(scenario.length() == 0 ? "" : " ").append("--").append(value.getKey()).append('=')
+                    .append(value.getValue());
+        }
+        return scenario.toString();
+    }
+
+    private Duration duration(final String name) {
+        final String value = values.get(name).trim().toLowerCase(Locale.ROOT);
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        throw new IllegalArgumentException("Invalid duration --" + name + "=" + value + ", expected ms, s or m");
+    }
+}
@@ -0,0 +1,171 @@
+package org.users.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.users.client.metrics.LatencyHistogram;
+
+/**
+ * The results of a {@link LoadTest} run, stored as a properties file to serve as the baseline of later runs.
+ */
+final class LoadTestReport {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+    /**
+     * Latencies may exceed the tolerated ones by this much, sub-millisecond differences being noise.
+     */
+    private static final double LATENCY_SLACK_MILLIS = 1;
+    /**
+     * The share of failed queries may exceed the tolerated one by this much, a few failures in a thousand being
+     * noise when the stand-in injects errors at random.
+     */
+    private static final double ERROR_RATE_SLACK = 0.005;
+
+    private final String scenario;
+    private final long queries;
+    private final long errors;
+    private final double throughput;
+    private final double p50Millis;
+    private final double p99Millis;
+    private final double p999Millis;
+    private final double peakHeapMegabytes;
+    private final double retainedHeapMegabytes;
+    private final long gcCount;
+    private final long gcMillis;
+
+    private LoadTestReport(final String scenario, final long queries, final long errors, final double throughput,
+                           final double p50Millis, final double p99Millis, final double p999Millis,
+                           final double peakHeapMegabytes, final double retainedHeapMegabytes, final long gcCount,
+                           final long gcMillis) {
+        this.scenario = scenario;
+        this.queries = queries;
+        this.errors = errors;
+        this.throughput = throughput;
+        this.p50Millis = p50Millis;
+        this.p99Millis = p99Millis;
+        this.p999Millis = p999Millis;
+        this.peakHeapMegabytes = peakHeapMegabytes;
+        this.retainedHeapMegabytes = retainedHeapMegabytes;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+    }
+
+    /**
+     * @param latencies of the successful queries
+     */
+    static LoadTestReport of(final String scenario, final LatencyHistogram.Snapshot latencies, final long errors,
+                             final long elapsedNanos, final long peakHeapBytes, final long retainedHeapBytes,
+                             final long gcCount, final long gcMillis) {
+        return new LoadTestReport(scenario, latencies.getCount(), errors,
+                latencies.getCount() * 1e9 / elapsedNanos,
+                latencies.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                latencies.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                latencies.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                peakHeapBytes / BYTES_PER_MEGABYTE, retainedHeapBytes / BYTES_PER_MEGABYTE, gcCount, gcMillis);
+    }
+
+    static LoadTestReport read(final Path path) throws IOException {
+        final Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new LoadTestReport(properties.getProperty("scenario"),
+                Long.parseLong(properties.getProperty("queries")),
+                Long.parseLong(properties.getProperty("errors")),
+                Double.parseDouble(properties.getProperty("throughput")),
+                Double.parseDouble(properties.getProperty("p50.millis")),
+                Double.parseDouble(properties.getProperty("p99.millis")),
+                Double.parseDouble(properties.getProperty("p999.millis")),
+                Double.parseDouble(properties.getProperty("heap.peak.megabytes")),
+                Double.parseDouble(properties.getProperty("heap.retained.megabytes")),
+                Long.parseLong(properties.getProperty("gc.count")),
+                Long.parseLong(properties.getProperty("gc.millis")));
+    }
+
+    void write(final Path path) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("scenario", scenario);
+        properties.setProperty("queries", Long.toString(queries));
+        properties.setProperty("errors", Long.toString(errors));
+        properties.setProperty("throughput", format(throughput));
+        properties.setProperty("p50.millis", format(p50Millis));
+        properties.setProperty("p99.millis", format(p99Millis));
+        properties.setProperty("p999.millis", format(p999Millis));
+        properties.setProperty("heap.peak.megabytes", format(peakHeapMegabytes));
+        properties.setProperty("heap.retained.megabytes", format(retainedHeapMegabytes));
+        properties.setProperty("gc.count", Long.toString(gcCount));
+        properties.setProperty("gc.millis", Long.toString(gcMillis));
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            properties.store(writer, "LoadTest baseline, rerun with --write-baseline to replace it");
+        }
+    }
+
+    String getScenario() {
+        return scenario;
+    }
+
+    /**
+     * The ways this run is worse than the baseline by more than the tolerance, empty when it is not. The peak
+     * heap depends on when the collector runs, so only the heap retained after a full collection is compared.
+     */
+    List<String> regressionsFrom(final LoadTestReport baseline, final double tolerance) {
+        final List<String> regressions = new ArrayList<>();
+        if (throughput < baseline.throughput * (1 - tolerance)) {
+            regressions.add(String.format(Locale.ROOT, "throughput %.1f/s below baseline %.1f/s", throughput,
+                    baseline.throughput));
+        }
+        final double errorRate = errorRate();
+        final double baselineErrorRate = baseline.errorRate();
+        if (errorRate > baselineErrorRate * (1 + tolerance) + ERROR_RATE_SLACK) {
+            regressions.add(String.format(Locale.ROOT, "error rate %.2f%% above baseline %.2f%%", errorRate * 100,
+                    baselineErrorRate * 100));
+        }
+        checkAtMost(regressions, "p50", p50Millis, baseline.p50Millis, tolerance);
+        checkAtMost(regressions, "p99", p99Millis, baseline.p99Millis, tolerance);
+        checkAtMost(regressions, "p999", p999Millis, baseline.p999Millis, tolerance);
+        if (retainedHeapMegabytes > baseline.retainedHeapMegabytes * (1 + tolerance)) {
+            regressions.add(String.format(Locale.ROOT, "retained heap %.1f MB above baseline %.1f MB",
+                    retainedHeapMegabytes, baseline.retainedHeapMegabytes));
+        }
+        return regressions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "queries         %d (%d failed)%n"
+                        + "throughput      %.1f queries/s%n"
+                        + "latency         p50 %.2f ms, p99 %.2f ms, p999 %.2f ms%n"
+                        + "heap            peak %.1f MB, retained %.1f MB%n"
+                        + "gc              %d collections, %d ms",
+                queries, errors, throughput, p50Millis, p99Millis, p999Millis, peakHeapMegabytes,
+                retainedHeapMegabytes, gcCount, gcMillis);
+    }
+
+    /**
+     * The share of the queries that failed.
+     */
+    private double errorRate() {
+        return queries + errors == 0 ? 0 : (double) errors / (queries + errors);
+    }
+
+    private static void checkAtMost(final List<String> regressions, final String name, final double millis,
+                                    final double baselineMillis, final double tolerance) {
+        if (millis > baselineMillis * (1 + tolerance) + LATENCY_SLACK_MILLIS) {
+            regressions.add(String.format(Locale.ROOT, "%s latency %.2f ms above baseline %.2f ms", name, millis,
+                    baselineMillis));
+        }
+    }
+
+    private static String format(final double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,103 @@
+package org.users.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.users.benchmarks.SyntheticUsers;
+import org.users.client.model.User;
+import org.users.geo.Gazetteer;
+import org.users.geo.GeoPoint;
+
+/**
+ * A reproducible population of users and the cities they are registered in. The cities are real ones, so
+ * that {@link org.users.PeopleInArea} can locate them with the bundled gazetteer.
+ */
+public final class SyntheticDataset {
+
+    /**
+     * Where the users are placed: around their city, anywhere on the globe, or 60% of them around their city
+     * and the rest anywhere.
+     */
+    public enum Distribution {
+        CLUSTERED, UNIFORM, MIXED
+    }
+
+    static final List<String> CITY_NAMES = Collections.unmodifiableList(Arrays.asList(
+            "London", "Paris", "Berlin", "Madrid", "Rome", "Manchester", "Amsterdam", "Vienna", "Warsaw", "Dublin",
+            "Lisbon", "Prague", "Stockholm", "New York", "Tokyo", "Sydney", "Toronto", "Mumbai", "Cairo", "Lagos"));
+
+    private static final double CLUSTERED_SHARE = 0.6;
+    private static final double CLUSTER_DEGREES = 0.7;
+
+    private final List<User> users;
+    private final Map<String, List<User>> usersByCity;
+
+    private SyntheticDataset(final List<User> users, final Map<String, List<User>> usersByCity) {
+        this.users = users;
+        this.usersByCity = usersByCity;
+    }
+
+    /**
+     * @param cities how many of the 20 known cities the users are registered in
+     * @param ids how the ids are laid out, sequential ones filling the id-keyed structures densely
+     */
+    public static SyntheticDataset generate(final int users, final int cities, final Distribution distribution,
+                                            final SyntheticUsers.Ids ids, final long seed) {
+        if (cities < 1 || cities > CITY_NAMES.size()) {
+            throw new IllegalArgumentException("Between 1 and " + CITY_NAMES.size() + " cities, not " + cities);
+        }
+        final Gazetteer gazetteer = Gazetteer.defaults();
+        final List<String> names = CITY_NAMES.subList(0, cities);
+        final List<GeoPoint> centres = new ArrayList<>(cities);
+        final Map<String, List<User>> usersByCity = new LinkedHashMap<>();
+        for (String name : names) {
+            centres.add(gazetteer.locate(name).orElseThrow());
+            usersByCity.put(name, new ArrayList<>());
+        }
+        final Random random = new Random(seed);
+        final Set<Long> randomIds = new HashSet<>();
+        final List<User> all = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            final long id = SyntheticUsers.id(ids, i, random, randomIds);
+            final int city = random.nextInt(cities);
+            final boolean clustered = distribution == Distribution.CLUSTERED
+                    || distribution == Distribution.MIXED && random.nextDouble() < CLUSTERED_SHARE;
+            final User user = clustered ? around(id, centres.get(city), random) : anywhere(id, random);
+            all.add(user);
+            usersByCity.get(names.get(city)).add(user);
+        }
+        return new SyntheticDataset(all, usersByCity);
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    public List<String> getCities() {
+        return new ArrayList<>(usersByCity.keySet());
+    }
+
+    /**
+     * The users registered in the city, empty for a city outside the dataset.
+     */
+    public List<User> getUsersOf(final String city) {
+        return usersByCity.getOrDefault(city, Collections.emptyList());
+    }
+
+    private static User around(final long id, final GeoPoint centre, final Random random) {
+        return new User(id,
+                Math.max(-90, Math.min(90, centre.getLatitude() + random.nextGaussian() * CLUSTER_DEGREES)),
+                Math.max(-180, Math.min(180, centre.getLongitude() + random.nextGaussian() * CLUSTER_DEGREES)));
+    }
+
+    private static User anywhere(final long id, final Random random) {
+        return new User(id, Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)), random.nextDouble() * 360 - 180);
+    }
+}
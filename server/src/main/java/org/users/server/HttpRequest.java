@@ -0,0 +1,125 @@
+package org.users.server;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The head of an HTTP/1.x request, the only part the server reads: a request announcing a body is answered
+ * 413 Payload Too Large.
+ */
+final class HttpRequest {
+
+    private final String method;
+    private final String path;
+    private final Map<String, String> parameters;
+    private final boolean http11;
+    private final boolean keepAlive;
+    private final boolean body;
+
+    private HttpRequest(final String method, final String path, final Map<String, String> parameters,
+                        final boolean http11, final boolean keepAlive, final boolean body) {
+        this.method = method;
+        this.path = path;
+        this.parameters = parameters;
+        this.http11 = http11;
+        this.keepAlive = keepAlive;
+        this.body = body;
+    }
+
+    /**
+     * Parses the request line and headers, up to but excluding the blank line ending them.
+     *
+     * @throws IllegalArgumentException when the head is malformed
+     */
+    static HttpRequest parse(final String head) {
+        final String[] lines = head.split("\r\n");
+        final String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            throw new IllegalArgumentException("Malformed request line " + lines[0]);
+        }
+        final boolean http11 = requestLine[2].equals("HTTP/1.1");
+        boolean keepAlive = http11;
+        boolean body = false;
+        for (int i = 1; i < lines.length; i++) {
+            final int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Malformed header " + lines[i]);
+            }
+            final String name = lines[i].substring(0, colon).trim();
+            final String value = lines[i].substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Connection")) {
+                final String connection = value.toLowerCase(Locale.ROOT);
+                keepAlive = connection.equals("keep-alive") || keepAlive && !connection.equals("close");
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                body = true;
+            } else if (name.equalsIgnoreCase("Content-Length")) {
+                body |= contentLength(value) > 0;
+            }
+        }
+        final String target = requestLine[1];
+        final int question = target.indexOf('?');
+        final Map<String, String> parameters = new HashMap<>();
+        if (question >= 0) {
+            for (String parameter : target.substring(question + 1).split("&")) {
+                if (parameter.isEmpty()) {
+                    continue;
+                }
+                final int equals = parameter.indexOf('=');
+                parameters.putIfAbsent(decode(equals < 0 ? parameter : parameter.substring(0, equals)),
+                        equals < 0 ? "" : decode(parameter.substring(equals + 1)));
+            }
+        }
+        return new HttpRequest(requestLine[0], question < 0 ? target : target.substring(0, question), parameters,
+                http11, keepAlive, body);
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    Optional<String> getParameter(final String name) {
+        return Optional.ofNullable(parameters.get(name));
+    }
+
+    /**
+     * Whether the client reads HTTP/1.1 responses, chunked ones included, rather than only HTTP/1.0 ones.
+     */
+    boolean isHttp11() {
+        return http11;
+    }
+
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Whether a body follows the head, announced by a Transfer-Encoding or a non-zero Content-Length.
+     */
+    boolean hasBody() {
+        return body;
+    }
+
+    private static long contentLength(final String value) {
+        try {
+            final long length = Long.parseLong(value);
+            if (length >= 0) {
+                return length;
+            }
+        } catch (NumberFormatException e) {
+            //reported below
+        }
+        throw new IllegalArgumentException("Malformed Content-Length " + value);
+    }
+
+    private static String decode(final String encoded) {
+        return URLDecoder.decode(encoded, StandardCharsets.UTF_8);
+    }
+}
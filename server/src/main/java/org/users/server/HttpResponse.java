@@ -0,0 +1,78 @@
+package org.users.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A status, headers and a body streamed as the connection drains.
+ */
+final class HttpResponse {
+
+    private final int status;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private final ResponseBody body;
+
+    HttpResponse(final int status, final ResponseBody body) {
+        this.status = status;
+        this.body = body;
+        headers.put("Content-Type", "application/json");
+    }
+
+    /**
+     * A small JSON body sent as is.
+     */
+    static HttpResponse json(final int status, final String json) {
+        return new HttpResponse(status, ResponseBody.of(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static HttpResponse error(final int status, final String message) {
+        final StringBuilder json = new StringBuilder("{\"error\":");
+        UsersJsonBody.appendString(json, message);
+        return json(status, json.append('}').toString());
+    }
+
+    HttpResponse header(final String name, final String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    ResponseBody getBody() {
+        return body;
+    }
+
+    static String reason(final int status) {
+        switch (status) {
+            case 200:
+                return "OK";
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            case 413:
+                return "Payload Too Large";
+            case 431:
+                return "Request Header Fields Too Large";
+            case 500:
+                return "Internal Server Error";
+            case 502:
+                return "Bad Gateway";
+            case 503:
+                return "Service Unavailable";
+            case 504:
+                return "Gateway Timeout";
+            default:
+                return "Status " + status;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package org.users.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * A minimal HTTP/1.1 server on a single selector thread. Sockets are non-blocking: the thread reads request
+ * heads, hands each request to the handler and writes the responses, and never waits on a query. A connection
+ * serves its requests one at a time and is not read while its response is pending, so a client cannot queue
+ * up work. Response bodies are filled only as the socket drains: with chunked transfer encoding on a connection
+ * kept alive, otherwise unframed up to the close of the connection, as HTTP/1.0 clients read them. Requests
+ * announcing a body are refused with 413 Payload Too Large, requests beyond the connection limit by closing the
+ * socket, and idle connections are closed after the idle timeout.
+ */
+final class NioHttpServer implements AutoCloseable {
+
+    static final int MAX_HEAD_BYTES = 8192;
+
+    private static final int CHUNK_BYTES = 16384;
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final long SELECT_MILLIS = 1000;
+
+    private final Function<HttpRequest, CompletableFuture<HttpResponse>> handler;
+    private final int maxConnections;
+    private final long idleNanos;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final int port;
+    private final Thread thread;
+    //completed responses, handed from the threads completing them to the selector thread
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+    //only used on the selector thread
+    private final Set<Connection> connections = new HashSet<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param handler answers each request, it is called on the selector thread so it must not block
+     */
+    NioHttpServer(final InetSocketAddress address, final int maxConnections, final Duration idleTimeout,
+                  final Function<HttpRequest, CompletableFuture<HttpResponse>> handler) throws IOException {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("Invalid max connections " + maxConnections);
+        }
+        this.handler = handler;
+        this.maxConnections = maxConnections;
+        this.idleNanos = idleTimeout.toNanos();
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        this.thread = new Thread(this::run, "people-in-area-http");
+    }
+
+    NioHttpServer start() {
+        thread.start();
+        return this;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(SELECT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(SELECT_MILLIS);
+                Runnable completion;
+                while ((completion = completions.poll()) != null) {
+                    completion.run();
+                }
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        ((Connection) key.attachment()).ready(key);
+                    }
+                }
+                closeIdle();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            System.err.println("HTTP server stopped: " + e);
+        } finally {
+            new ArrayList<>(connections).forEach(Connection::close);
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Unable to close the HTTP server: " + e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            if (connections.size() >= maxConnections) {
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            final Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+        }
+    }
+
+    private void closeIdle() {
+        final long now = System.nanoTime();
+        for (Connection connection : new ArrayList<>(connections)) {
+            if (!connection.handling && !connection.writing && now - connection.lastActive > idleNanos) {
+                connection.close();
+            }
+        }
+    }
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_HEAD_BYTES);
+        private final ByteBuffer out = ByteBuffer.allocate(CHUNK_BYTES + 1024);
+        private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES);
+        private SelectionKey key;
+        private long lastActive = System.nanoTime();
+        //a request is with the handler
+        private boolean handling;
+        private boolean keepAlive;
+        //the response being sent is chunked, rather than ended by closing the connection
+        private boolean chunked;
+        //the body still to be sent, null once the last chunk is in the out buffer
+        private ResponseBody response;
+        //a response is being sent
+        private boolean writing;
+
+        private Connection(final SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ready(final SelectionKey key) {
+            try {
+                lastActive = System.nanoTime();
+                if (key.isReadable()) {
+                    if (channel.read(in) < 0) {
+                        close();
+                        return;
+                    }
+                    nextRequest();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    write();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Hands the next buffered request to the handler, if its head has been read whole.
+         */
+        private void nextRequest() throws IOException {
+            if (handling || writing) {
+                return;
+            }
+            final int end = headEnd();
+            if (end < 0) {
+                if (!in.hasRemaining()) {
+                    keepAlive = false;
+                    respond(HttpResponse.error(431, "Request head larger than " + MAX_HEAD_BYTES + " bytes"));
+                }
+                return;
+            }
+            final String head = new String(in.array(), 0, end, StandardCharsets.ISO_8859_1);
+            in.flip().position(end + 4);
+            in.compact();
+            final HttpRequest request;
+            try {
+                request = HttpRequest.parse(head);
+            } catch (IllegalArgumentException e) {
+                keepAlive = false;
+                respond(HttpResponse.error(400, e.getMessage()));
+                return;
+            }
+            //only HTTP/1.1 clients read chunked bodies, a body of unknown length otherwise ends with the connection
+            keepAlive = request.isKeepAlive() && request.isHttp11();
+            if (request.hasBody()) {
+                //the body is never read, so the connection cannot be reused
+                keepAlive = false;
+                respond(HttpResponse.error(413, "Requests carry no body"));
+                return;
+            }
+            handling = true;
+            key.interestOps(0);
+            CompletableFuture<HttpResponse> response;
+            try {
+                response = handler.apply(request);
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            response.whenComplete((completed, failure) -> {
+                completions.add(() -> {
+                    handling = false;
+                    if (channel.isOpen()) {
+                        respond(failure == null ? completed : HttpResponse.error(500, "Internal error"));
+                    }
+                });
+                selector.wakeup();
+            });
+        }
+
+        private int headEnd() {
+            final byte[] bytes = in.array();
+            for (int i = 3; i < in.position(); i++) {
+                if (bytes[i] == '\n' && bytes[i - 1] == '\r' && bytes[i - 2] == '\n' && bytes[i - 3] == '\r') {
+                    return i - 3;
+                }
+            }
+            return -1;
+        }
+
+        private void respond(final HttpResponse httpResponse) {
+            final StringBuilder head = new StringBuilder(256)
+                    .append("HTTP/1.1 ").append(httpResponse.getStatus()).append(' ')
+                    .append(HttpResponse.reason(httpResponse.getStatus())).append("\r\n");
+            for (Map.Entry<String, String> header : httpResponse.getHeaders().entrySet()) {
+                head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+            chunked = keepAlive;
+            head.append(chunked ? "Transfer-Encoding: chunked\r\n" : "Connection: close\r\n");
+            head.append("\r\n");
+            out.clear();
+            out.put(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+            response = httpResponse.getBody();
+            writing = true;
+            appendChunk();
+            out.flip();
+            try {
+                write();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void write() throws IOException {
+            while (true) {
+                channel.write(out);
+                if (out.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (response == null) {
+                    responded();
+                    return;
+                }
+                out.clear();
+                appendChunk();
+                out.flip();
+            }
+        }
+
+        /**
+         * Appends the next chunk of the body to the out buffer, and the last chunk once the body is complete. An
+         * unframed body is appended as is.
+         */
+        private void appendChunk() {
+            chunk.clear();
+            //room for the chunk size, the CRLFs and the last chunk next to the response head
+            chunk.limit(Math.min(chunk.capacity(), out.remaining() - 32));
+            final boolean more;
+            try {
+                more = response.fill(chunk);
+            } catch (RuntimeException e) {
+                //the status is sent, cutting the body short is all that is left to signal the failure
+                System.err.println("Response body failed: " + e);
+                keepAlive = false;
+                response = null;
+                return;
+            }
+            chunk.flip();
+            if (!chunked) {
+                out.put(chunk);
+                if (!more) {
+                    response = null;
+                }
+                return;
+            }
+            if (chunk.hasRemaining()) {
+                out.put(Integer.toHexString(chunk.remaining()).getBytes(StandardCharsets.US_ASCII));
+                out.put(CRLF);
+                out.put(chunk);
+                out.put(CRLF);
+            }
+            if (!more) {
+                out.put(LAST_CHUNK);
+                response = null;
+            }
+        }
+
+        private void responded() throws IOException {
+            writing = false;
+            lastActive = System.nanoTime();
+            if (!keepAlive) {
+                close();
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            //a pipelined request may be buffered already
+            nextRequest();
+        }
+
+        private void close() {
+            connections.remove(this);
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //closing anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.users.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.users.AreaQuery;
+import org.users.PeopleInArea;
+import org.users.cache.CoalescingCache;
+import org.users.cache.UsersSnapshotCache;
+import org.users.cache.UsersSnapshotFile;
+import org.users.client.AimdConcurrencyLimiter;
+import org.users.client.LoadShedder;
+import org.users.client.UsersClient;
+import org.users.client.UsersRestTemplates;
+import org.users.client.metrics.MetricsSink;
+import org.users.client.model.User;
+import org.users.concurrent.QueryExecutor;
+import org.users.dataset.LiveUsersDataset;
+import org.users.geo.Gazetteer;
+import org.users.geo.GeoPoint;
+import org.users.stub.StubUsersApi;
+
+/**
+ * Serves {@link PeopleInArea#findPeopleInAreaAsync(String, int)} over HTTP, so that services share one process
+ * and one warm dataset instead of each embedding the library and downloading "/users/" itself. By default the
+ * vicinity is answered from a {@link UsersSnapshotCache} loaded at startup and refreshed in the background, and
+ * the users of a city and whole area results are cached for a short time. See the module README for the
+ * options.
+ */
+public final class PeopleInAreaServer implements AutoCloseable {
+
+    private static final int CACHED_ENTRIES = 10_000;
+    private static final int STUB_CITIES = 50;
+
+    private final StubUsersApi stub;
+    private final QueryExecutor executor;
+    private final UsersSnapshotCache snapshotCache;
+    private final NioHttpServer httpServer;
+
+    private PeopleInAreaServer(final ServerOptions options) throws IOException {
+        this.stub = options.usersApi().equals(ServerOptions.STUB) ? stubUsersApi(options.stubUsers(), 42)
+                : null;
+        final String rootContext = stub != null ? stub.getRootContext() : options.usersApi();
+        final UsersClient usersClient = new UsersClient(rootContext,
+                UsersRestTemplates.withUserCodec(UsersRestTemplates.pooled(options.workers() * 2,
+                        UsersRestTemplates.DEFAULT_CONNECT_TIMEOUT, UsersRestTemplates.DEFAULT_READ_TIMEOUT)),
+                MetricsSink.NONE, LoadShedder.defaults());
+        this.executor = QueryExecutor.bounded("people-in-area-query", options.workers(), options.maxInFlight() * 2,
+                QueryExecutor.RejectionPolicy.ABORT);
+        final PeopleInArea.Builder builder = PeopleInArea.builder(usersClient)
+                .executor(executor)
+                .cityCache(new CoalescingCache<String, List<User>>(CACHED_ENTRIES, options.cacheTtl()))
+                .areaCache(new CoalescingCache<AreaQuery, Set<User>>(CACHED_ENTRIES, options.cacheTtl()));
+        final Supplier<Optional<Instant>> loadedAt;
+        if (options.liveDataset()) {
+            this.snapshotCache = null;
+            builder.usersDataset(new LiveUsersDataset(usersClient, executor));
+            loadedAt = () -> Optional.of(Instant.EPOCH);
+        } else {
+            this.snapshotCache = new UsersSnapshotCache(usersClient, options.refresh(),
+                    options.snapshotFile() == null ? null : new UsersSnapshotFile(options.snapshotFile()));
+            builder.usersDataset(snapshotCache.start());
+            loadedAt = snapshotCache::getLoadedAt;
+        }
+        final AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(options.maxInFlight(), 1,
+                options.maxInFlight(), options.latencyThreshold());
+        this.httpServer = new NioHttpServer(new InetSocketAddress(options.port()), options.maxConnections(),
+                options.idleTimeout(), new PeopleInAreaService(builder.build(), limiter, executor,
+                options.maxMiles(), loadedAt)).start();
+    }
+
+    static PeopleInAreaServer start(final ServerOptions options) throws IOException {
+        return new PeopleInAreaServer(options);
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final ServerOptions options;
+        try {
+            options = ServerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        final PeopleInAreaServer server = start(options);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Serving " + PeopleInAreaService.PEOPLE_IN_AREA + " on port " + server.getPort()
+                + (server.stub != null ? " from a stub Users API at " + server.stub.getRootContext() : ""));
+    }
+
+    /**
+     * A stub Users API whose users are scattered around the first cities of the bundled gazetteer, each listed
+     * under the city it was placed around.
+     */
+    private static StubUsersApi stubUsersApi(final int count, final long seed) throws IOException {
+        final Gazetteer gazetteer = Gazetteer.defaults();
+        final List<String> cities = gazetteer.findByPrefix("", STUB_CITIES);
+        final List<User> users = new ArrayList<>(count);
+        final Map<String, List<User>> usersByCity = new HashMap<>();
+        final Random random = new Random(seed);
+        for (int id = 1; id <= count; id++) {
+            final String city = cities.get(id % cities.size());
+            final GeoPoint centre = gazetteer.locate(city).orElseThrow();
+            final User user = new User(id, centre.getLatitude() + random.nextGaussian() * 0.3,
+                    centre.getLongitude() + random.nextGaussian() * 0.3);
+            users.add(user);
+            usersByCity.computeIfAbsent(city, name -> new ArrayList<>()).add(user);
+        }
+        final StubUsersApi.Builder stub = StubUsersApi.builder(users);
+        usersByCity.forEach(stub::city);
+        return stub.start();
+    }
+
+    int getPort() {
+        return httpServer.getPort();
+    }
+
+    @Override
+    public void close() {
+        httpServer.close();
+        if (snapshotCache != null) {
+            snapshotCache.close();
+        }
+        executor.close();
+        if (stub != null) {
+            stub.close();
+        }
+    }
+}
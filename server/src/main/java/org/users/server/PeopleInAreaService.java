@@ -0,0 +1,132 @@
+package org.users.server;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.web.client.RestClientException;
+import org.users.PeopleInArea;
+import org.users.client.AimdConcurrencyLimiter;
+import org.users.client.RequestRejectedException;
+import org.users.client.UserClientException;
+import org.users.client.model.User;
+
+/**
+ * Routes the requests of the {@link NioHttpServer}:
+ * <ul>
+ *     <li>GET /people-in-area?city={city}&amp;miles={miles} answers the users of
+ *     {@link PeopleInArea#findPeopleInAreaAsync(String, int)} as a JSON array,</li>
+ *     <li>GET /health answers 200 once the shared dataset is loaded, 503 before.</li>
+ * </ul>
+ * Queries are admitted by an {@link AimdConcurrencyLimiter}, which shrinks the queries in flight while they are
+ * slow or failing upstream. A query over the limit is answered 503 with a Retry-After straight away rather than
+ * queued. Admitted queries start on the executor, off the selector thread.
+ */
+final class PeopleInAreaService implements Function<HttpRequest, CompletableFuture<HttpResponse>> {
+
+    static final String PEOPLE_IN_AREA = "/people-in-area";
+    static final String HEALTH = "/health";
+
+    private final PeopleInArea peopleInArea;
+    private final AimdConcurrencyLimiter limiter;
+    private final Executor executor;
+    private final int maxMiles;
+    private final Supplier<Optional<Instant>> loadedAt;
+
+    /**
+     * @param loadedAt when the shared dataset was loaded, empty while it is loading
+     */
+    PeopleInAreaService(final PeopleInArea peopleInArea, final AimdConcurrencyLimiter limiter,
+                        final Executor executor, final int maxMiles, final Supplier<Optional<Instant>> loadedAt) {
+        this.peopleInArea = peopleInArea;
+        this.limiter = limiter;
+        this.executor = executor;
+        this.maxMiles = maxMiles;
+        this.loadedAt = loadedAt;
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> apply(final HttpRequest request) {
+        if (!request.getMethod().equals("GET")) {
+            return CompletableFuture.completedFuture(HttpResponse.error(405, "Only GET is supported")
+                    .header("Allow", "GET"));
+        }
+        switch (request.getPath()) {
+            case PEOPLE_IN_AREA:
+                return peopleInArea(request);
+            case HEALTH:
+                return CompletableFuture.completedFuture(health());
+            default:
+                return CompletableFuture.completedFuture(HttpResponse.error(404, "No resource " + request.getPath()));
+        }
+    }
+
+    private CompletableFuture<HttpResponse> peopleInArea(final HttpRequest request) {
+        final Optional<String> city = request.getParameter("city").filter(name -> !name.isBlank());
+        final Optional<Integer> miles = request.getParameter("miles").flatMap(PeopleInAreaService::parseMiles);
+        if (city.isEmpty() || miles.isEmpty() || miles.get() < 0 || miles.get() > maxMiles) {
+            return CompletableFuture.completedFuture(HttpResponse.error(400,
+                    "Expected a city and miles from 0 to " + maxMiles));
+        }
+        if (!limiter.tryAcquire()) {
+            return CompletableFuture.completedFuture(HttpResponse.error(503, "Too many queries in flight")
+                    .header("Retry-After", "1"));
+        }
+        final long started = System.nanoTime();
+        final CompletableFuture<Set<User>> query;
+        try {
+            query = CompletableFuture.supplyAsync(() -> peopleInArea.findPeopleInAreaAsync(city.get(), miles.get()),
+                    executor).thenCompose(Function.identity());
+        } catch (RejectedExecutionException e) {
+            limiter.onDropped(started);
+            return CompletableFuture.completedFuture(HttpResponse.error(503, "Query executor saturated")
+                    .header("Retry-After", "1"));
+        }
+        return query.handle((users, failure) -> {
+            if (failure == null) {
+                limiter.onSuccess(started, System.nanoTime() - started);
+                return new HttpResponse(200, new UsersJsonBody(users.iterator()));
+            }
+            limiter.onDropped(started);
+            return failed(failure instanceof CompletionException ? failure.getCause() : failure);
+        });
+    }
+
+    private HttpResponse health() {
+        return loadedAt.get()
+                .map(instant -> HttpResponse.json(200, "{\"status\":\"UP\",\"loadedAt\":\"" + instant + "\"}"))
+                .orElseGet(() -> HttpResponse.json(503, "{\"status\":\"LOADING\"}"));
+    }
+
+    private static HttpResponse failed(final Throwable failure) {
+        if (failure instanceof TimeoutException) {
+            return HttpResponse.error(504, "The Users API did not answer in time");
+        }
+        if (failure instanceof RejectedExecutionException) {
+            return HttpResponse.error(503, "Query executor saturated").header("Retry-After", "1");
+        }
+        if (failure instanceof RequestRejectedException) {
+            return HttpResponse.error(503, "The Users API is shedding load").header("Retry-After", "1");
+        }
+        if (failure instanceof UserClientException || failure instanceof RestClientException) {
+            return HttpResponse.error(502, "The Users API failed: " + failure.getMessage());
+        }
+        System.err.println("Query failed: " + failure);
+        return HttpResponse.error(500, "Internal error");
+    }
+
+    private static Optional<Integer> parseMiles(final String miles) {
+        try {
+            return Optional.of(Integer.parseInt(miles.trim()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.users.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Produces a response body piece by piece as the connection drains, so that a large body is never held whole.
+ */
+@FunctionalInterface
+interface ResponseBody {
+
+    /**
+     * The least room a buffer is given to fill.
+     */
+    int MIN_FILL_BYTES = 1024;
+
+    /**
+     * Writes the next bytes of the body into the buffer, which has at least {@link #MIN_FILL_BYTES} remaining.
+     *
+     * @return whether more bytes follow
+     */
+    boolean fill(ByteBuffer buffer);
+
+    static ResponseBody of(final byte[] bytes) {
+        final int[] written = new int[1];
+        return buffer -> {
+            final int length = Math.min(buffer.remaining(), bytes.length - written[0]);
+            buffer.put(bytes, written[0], length);
+            written[0] += length;
+            return written[0] < bytes.length;
+        };
+    }
+}
@@ -0,0 +1,134 @@
+package org.users.server;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The settings of a {@link PeopleInAreaServer}, parsed from "--name=value" arguments.
+ */
+final class ServerOptions {
+
+    static final String STUB = "stub";
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    private ServerOptions() {
+        values.put("port", "8080");
+        values.put("users-api", "");
+        values.put("stub-users", "10000");
+        values.put("dataset", "snapshot");
+        values.put("refresh", "5m");
+        values.put("snapshot-file", "");
+        values.put("cache-ttl", "30s");
+        values.put("max-in-flight", "64");
+        values.put("latency-threshold", "2s");
+        values.put("workers", Integer.toString(Math.max(2, Runtime.getRuntime().availableProcessors())));
+        values.put("max-connections", "1024");
+        values.put("idle-timeout", "30s");
+        values.put("max-miles", "1000");
+    }
+
+    static ServerOptions parse(final String[] args) {
+        final ServerOptions options = new ServerOptions();
+        for (String arg : args) {
+            final int equals = arg.indexOf('=');
+            final String name = arg.startsWith("--") ? arg.substring(2, equals < 0 ? arg.length() : equals) : "";
+            if (!options.values.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of "
+                        + options.values.keySet());
+            }
+            options.values.put(name, equals < 0 ? "true" : arg.substring(equals + 1));
+        }
+        if (options.usersApi().isEmpty()) {
+            throw new IllegalArgumentException("--users-api is required, the root of the Users API or \"stub\"");
+        }
+        final String dataset = options.values.get("dataset");
+        if (!dataset.equals("live") && !dataset.equals("snapshot")) {
+            throw new IllegalArgumentException("Unknown dataset " + dataset + ", expected live or snapshot");
+        }
+        return options;
+    }
+
+    int port() {
+        return Integer.parseInt(values.get("port"));
+    }
+
+    /**
+     * The root context of the Users API, or "stub" to serve synthetic users from an in-process stub.
+     */
+    String usersApi() {
+        return values.get("users-api");
+    }
+
+    int stubUsers() {
+        return Integer.parseInt(values.get("stub-users"));
+    }
+
+    /**
+     * "snapshot" keeps one dataset for the process, refreshed in the background, "live" downloads "/users/" on
+     * every query.
+     */
+    boolean liveDataset() {
+        return values.get("dataset").equals("live");
+    }
+
+    Duration refresh() {
+        return duration("refresh");
+    }
+
+    Path snapshotFile() {
+        return values.get("snapshot-file").isEmpty() ? null : Paths.get(values.get("snapshot-file"));
+    }
+
+    /**
+     * How long the users of a city and the results of an area query are shared between requests.
+     */
+    Duration cacheTtl() {
+        return duration("cache-ttl");
+    }
+
+    int maxInFlight() {
+        return Integer.parseInt(values.get("max-in-flight"));
+    }
+
+    /**
+     * Queries slower than this shrink the number admitted in flight.
+     */
+    Duration latencyThreshold() {
+        return duration("latency-threshold");
+    }
+
+    int workers() {
+        return Integer.parseInt(values.get("workers"));
+    }
+
+    int maxConnections() {
+        return Integer.parseInt(values.get("max-connections"));
+    }
+
+    Duration idleTimeout() {
+        return duration("idle-timeout");
+    }
+
+    int maxMiles() {
+        return Integer.parseInt(values.get("max-miles"));
+    }
+
+    private Duration duration(final String name) {
+        final String value = values.get(name).trim().toLowerCase(Locale.ROOT);
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        throw new IllegalArgumentException("Invalid duration --" + name + "=" + value + ", expected ms, s or m");
+    }
+}
@@ -0,0 +1,77 @@
+package org.users.server;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import org.users.client.model.User;
+
+/**
+ * Serializes users to a JSON array as the connection asks for more, a buffer at a time, in the shape the Users
+ * API serves them. A user without a location has no coordinates, JSON having no NaN.
+ */
+final class UsersJsonBody implements ResponseBody {
+
+    private final Iterator<? extends User> users;
+    private boolean started;
+
+    UsersJsonBody(final Iterator<? extends User> users) {
+        this.users = users;
+    }
+
+    @Override
+    public boolean fill(final ByteBuffer buffer) {
+        if (!started) {
+            buffer.put((byte) '[');
+        }
+        //the longest user is about 80 bytes, so that much room is left to append the next one
+        while (users.hasNext() && buffer.remaining() > 128) {
+            if (started) {
+                buffer.put((byte) ',');
+            }
+            append(buffer, users.next());
+            started = true;
+        }
+        started = true;
+        if (users.hasNext()) {
+            return true;
+        }
+        buffer.put((byte) ']');
+        return false;
+    }
+
+    private static void append(final ByteBuffer buffer, final User user) {
+        putAscii(buffer, "{\"id\":");
+        putAscii(buffer, Long.toString(user.getId()));
+        if (user.hasLocation()) {
+            putAscii(buffer, ",\"latitude\":");
+            putAscii(buffer, Double.toString(user.getLatitude()));
+            putAscii(buffer, ",\"longitude\":");
+            putAscii(buffer, Double.toString(user.getLongitude()));
+        }
+        buffer.put((byte) '}');
+    }
+
+    private static void putAscii(final ByteBuffer buffer, final String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer.put((byte) ascii.charAt(i));
+        }
+    }
+
+    /**
+     * Appends a JSON string literal, escaping quotes, backslashes and control characters.
+     */
+    static void appendString(final StringBuilder json, final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,247 @@
+package org.users.server;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.users.client.model.User;
+
+public class PeopleInAreaServerIntTest {
+
+    private static final String USERS_API = "http://127.0.0.1:8093";
+    private static final int VICINITY_USERS = 5000;
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(wireMockConfig().port(8093).gzipDisabled(true));
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private PeopleInAreaServer server;
+
+    @Before
+    public void setUp() {
+        final StringBuilder users = new StringBuilder("[");
+        for (int id = 100; id < 100 + VICINITY_USERS; id++) {
+            users.append(id == 100 ? "" : ",").append("{\"id\":").append(id)
+                    .append(",\"first_name\":\"User\",\"latitude\":").append(51.5 + (id % 100) * 0.001)
+                    .append(",\"longitude\":-0.12}");
+        }
+        users.append(",{\"id\":99,\"latitude\":48.85,\"longitude\":2.35}]");
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(okJson(users.toString())));
+        stubFor(get(urlPathMatching("/city/.*/users/")).willReturn(okJson("[{\"id\": 1}, {\"id\": 2}]")));
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void shouldStreamPeopleInAreaFromSharedDataset() throws Exception {
+        //given
+        server = start();
+        awaitLoaded();
+
+        //when
+        final HttpResponse<String> first = query("London", 20);
+        final HttpResponse<String> second = query("London", 20);
+
+        //then
+        assertEquals(200, first.statusCode());
+        assertEquals("chunked", first.headers().firstValue("Transfer-Encoding").orElse(""));
+        final Set<Long> ids = ids(first.body());
+        assertEquals(VICINITY_USERS + 2, ids.size());
+        assertTrue(ids.contains(1L) && ids.contains(100L));
+        assertEquals(ids, ids(second.body()));
+        verify(1, getRequestedFor(urlPathEqualTo("/users/")));
+    }
+
+    @Test
+    public void shouldServeManyQueriesOnOneConnection() throws Exception {
+        //given
+        server = start();
+
+        //when and then
+        for (int miles = 1; miles <= 20; miles++) {
+            final HttpResponse<String> response = query("Paris", miles);
+            assertEquals(200, response.statusCode());
+            assertEquals(Set.of(1L, 2L, 99L), ids(response.body()));
+        }
+    }
+
+    @Test
+    public void shouldRejectQueriesOverAdmissionLimit() throws Exception {
+        //given
+        stubFor(get(urlPathMatching("/city/.*/users/"))
+                .willReturn(okJson("[{\"id\": 1}]").withFixedDelay(1000)));
+        server = start("--max-in-flight=1");
+
+        //when
+        final CompletableFuture<HttpResponse<String>> admitted = queryAsync("London", 5);
+        Thread.sleep(300);
+        final HttpResponse<String> rejected = query("Paris", 5);
+
+        //then
+        assertEquals(503, rejected.statusCode());
+        assertEquals("1", rejected.headers().firstValue("Retry-After").orElse(""));
+        assertEquals(200, admitted.get().statusCode());
+    }
+
+    @Test
+    public void shouldAnswerBadRequestWithoutMiles() throws Exception {
+        //given
+        server = start();
+
+        //when
+        final HttpResponse<String> response = send("/people-in-area?city=London");
+
+        //then
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    public void shouldAnswerBadGatewayWhenUsersApiFails() throws Exception {
+        //given
+        stubFor(get(urlPathMatching("/city/.*/users/")).willReturn(aResponse().withStatus(500)));
+        server = start();
+
+        //when
+        final HttpResponse<String> response = query("London", 5);
+
+        //then
+        assertEquals(502, response.statusCode());
+    }
+
+    @Test
+    public void shouldReportHealthOnceDatasetIsLoaded() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(okJson("[]").withFixedDelay(1000)));
+        server = start();
+
+        //when
+        final HttpResponse<String> loading = send("/health");
+        awaitLoaded();
+
+        //then
+        assertEquals(503, loading.statusCode());
+        assertTrue(loading.body().contains("\"LOADING\""));
+    }
+
+    @Test
+    public void shouldSendUnframedBodyToHttp10Client() throws Exception {
+        //given
+        server = start();
+        awaitLoaded();
+
+        //when
+        final String response = exchangeRaw("GET /people-in-area?city=Paris&miles=5 HTTP/1.0\r\n"
+                + "Connection: keep-alive\r\n\r\n");
+
+        //then
+        final int bodyStart = response.indexOf("\r\n\r\n") + 4;
+        final String head = response.substring(0, bodyStart);
+        assertTrue(head, head.startsWith("HTTP/1.1 200 "));
+        assertFalse(head, head.contains("Transfer-Encoding"));
+        assertTrue(head, head.contains("Connection: close"));
+        assertEquals(Set.of(1L, 2L, 99L), ids(response.substring(bodyStart)));
+    }
+
+    @Test
+    public void shouldRefuseRequestWithBody() throws Exception {
+        //given
+        server = start();
+
+        //when
+        final String response = exchangeRaw("POST /people-in-area?city=Paris&miles=5 HTTP/1.1\r\n"
+                + "Content-Length: 5\r\n\r\nhello");
+
+        //then
+        assertTrue(response, response.startsWith("HTTP/1.1 413 "));
+        assertTrue(response, response.contains("Connection: close"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownDatasetWhenParsingOptions() {
+        //when
+        ServerOptions.parse(new String[]{"--users-api=stub", "--dataset=cached"});
+    }
+
+    private PeopleInAreaServer start(final String... options) throws IOException {
+        final List<String> args = Arrays.stream(options).collect(Collectors.toList());
+        args.add("--port=0");
+        args.add("--users-api=" + USERS_API);
+        return PeopleInAreaServer.start(ServerOptions.parse(args.toArray(new String[0])));
+    }
+
+    /**
+     * Writes the request on a new connection and reads the response until the server closes it.
+     */
+    private String exchangeRaw(final String request) throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void awaitLoaded() throws Exception {
+        final long deadline = System.currentTimeMillis() + 5000;
+        HttpResponse<String> health;
+        while ((health = send("/health")).statusCode() != 200) {
+            assertTrue("Dataset not loaded: " + health.body(), System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+        assertTrue(health.body().contains("\"UP\""));
+    }
+
+    private HttpResponse<String> query(final String city, final int miles) throws Exception {
+        return queryAsync(city, miles).get();
+    }
+
+    private CompletableFuture<HttpResponse<String>> queryAsync(final String city, final int miles) {
+        return httpClient.sendAsync(request("/people-in-area?city=" + city + "&miles=" + miles),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> send(final String path) throws Exception {
+        return httpClient.send(request(path), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest request(final String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path)).build();
+    }
+
+    private Set<Long> ids(final String json) throws IOException {
+        return Arrays.stream(objectMapper.readValue(json, User[].class)).map(User::getId).collect(Collectors.toSet());
+    }
+}
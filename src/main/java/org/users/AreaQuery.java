@@ -0,0 +1,31 @@
+package org.users;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * The arguments of an area query, used as cache key for its result.
+ */
+@EqualsAndHashCode
+public final class AreaQuery {
+
+    private final String cityName;
+    private final int miles;
+
+    public AreaQuery(final String cityName, final int miles) {
+        this.cityName = cityName;
+        this.miles = miles;
+    }
+
+    public String getCityName() {
+        return cityName;
+    }
+
+    public int getMiles() {
+        return miles;
+    }
+
+    @Override
+    public String toString() {
+        return cityName + " within " + miles + " miles";
+    }
+}
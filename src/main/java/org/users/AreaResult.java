@@ -0,0 +1,45 @@
+package org.users;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.users.client.model.User;
+
+/**
+ * The users found by a deadline bound area query, with the legs of the query that did not complete in time.
+ */
+public class AreaResult {
+
+    public enum Leg {
+        /** The users the API lists for the city. */
+        CITY,
+        /** The users within the radius of the city. */
+        VICINITY
+    }
+
+    private final Set<User> users;
+    private final Set<Leg> missingLegs;
+
+    public AreaResult(final Set<User> users, final Set<Leg> missingLegs) {
+        this.users = users;
+        this.missingLegs = missingLegs.isEmpty()
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(missingLegs));
+    }
+
+    public Set<User> getUsers() {
+        return users;
+    }
+
+    /**
+     * Whether some legs missed the deadline, in which case the users are only those of the completed legs.
+     */
+    public boolean isPartial() {
+        return !missingLegs.isEmpty();
+    }
+
+    public Set<Leg> getMissingLegs() {
+        return missingLegs;
+    }
+}
@@ -1,52 +1,419 @@
 package org.users;
 
-import java.util.HashSet;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
+import org.users.cache.CoalescingCache;
+import org.users.client.AsyncUsersClient;
+import org.users.client.UserClientException;
 import org.users.client.UsersClient;
 import org.users.client.model.User;
+import org.users.concurrent.Deadline;
+import org.users.concurrent.DeadlineExceededException;
+import org.users.dataset.AsyncLiveUsersDataset;
+import org.users.dataset.LiveUsersDataset;
+import org.users.dataset.UserIdSet;
+import org.users.dataset.UsersDataset;
+import org.users.geo.CityLocator;
+import org.users.geo.Gazetteer;
+import org.users.geo.GeoCircle;
+import org.users.geo.GeoPoint;
+import org.users.trace.QueryTrace;
+import org.users.trace.Stage;
+import org.users.trace.StageSpan;
+import org.users.trace.TracedResult;
+import org.users.trace.Tracing;
 
 public class PeopleInArea {
 
     public static final int TIMEOUT = 3;
     private final UsersClient usersClient;
+    private final AsyncUsersClient asyncUsersClient;
+    private final UsersDataset usersDataset;
+    private final CityLocator cityLocator;
+    private final Executor executor;
+    private final CoalescingCache<String, List<User>> cityCache;
+    private final CoalescingCache<AreaQuery, Set<User>> areaCache;
 
     public PeopleInArea(final UsersClient usersClient) {
-        this.usersClient = usersClient;
+        this(builder(usersClient));
+    }
+
+    public PeopleInArea(final UsersClient usersClient, final UsersDataset usersDataset) {
+        this(builder(usersClient).usersDataset(usersDataset));
+    }
+
+    public PeopleInArea(final UsersClient usersClient, final UsersDataset usersDataset, final CityLocator cityLocator) {
+        this(builder(usersClient).usersDataset(usersDataset).cityLocator(cityLocator));
+    }
+
+    private PeopleInArea(final Builder builder) {
+        this.usersClient = builder.usersClient;
+        this.asyncUsersClient = builder.asyncUsersClient;
+        this.executor = Tracing.propagating(builder.executor != null ? builder.executor : ForkJoinPool.commonPool());
+        if (builder.usersDataset != null) {
+            this.usersDataset = builder.usersDataset;
+        } else if (asyncUsersClient != null) {
+            this.usersDataset = new AsyncLiveUsersDataset(asyncUsersClient);
+        } else {
+            this.usersDataset = new LiveUsersDataset(usersClient, executor);
+        }
+        this.cityLocator = builder.cityLocator != null ? builder.cityLocator : Gazetteer.defaults();
+        this.cityCache = builder.cityCache;
+        this.areaCache = builder.areaCache;
+    }
+
+    public static Builder builder(final UsersClient usersClient) {
+        return new Builder(usersClient);
+    }
+
+    public static Builder builder(final AsyncUsersClient asyncUsersClient) {
+        return new Builder(null).asyncUsersClient(asyncUsersClient);
     }
 
     public Set<User> findPeopleInArea(String cityName, int miles) throws ExecutionException, InterruptedException {
+        return findPeopleInAreaAsync(cityName, miles).get();
+    }
+
+    /**
+     * Runs both legs of the query concurrently. With an {@link AsyncUsersClient} configured no thread is
+     * blocked while the upstream requests are in flight.
+     */
+    public CompletableFuture<Set<User>> findPeopleInAreaAsync(String cityName, int miles) {
+        if (Tracing.isRecording()) {
+            //the trace carries the query id to the JFR events of the stages
+            return findPeopleInAreaTracedAsync(cityName, miles).thenApply(TracedResult::getResult);
+        }
+        return findPeopleInAreaCached(cityName, miles);
+    }
+
+    public TracedResult<Set<User>> findPeopleInAreaTraced(String cityName, int miles)
+            throws ExecutionException, InterruptedException {
+        return findPeopleInAreaTracedAsync(cityName, miles).get();
+    }
 
-        final Future<Set<User>> future = CompletableFuture.supplyAsync(() -> this.findPeopleInCity(cityName))
+    /**
+     * Like {@link #findPeopleInAreaAsync(String, int)}, returning the people with the time each stage of the
+     * query took: the executor queue wait and the HTTP fetch and JSON parsing of the {@link UsersClient}
+     * calls, the vicinity filtering of in-memory datasets and the merging of both legs. A live dataset
+     * built with its own executor only has its stages traced when the executor is wrapped by
+     * {@link Tracing#propagating(java.util.concurrent.Executor)}.
+     */
+    public CompletableFuture<TracedResult<Set<User>>> findPeopleInAreaTracedAsync(String cityName, int miles) {
+        return Tracing.traceAsync("people in area " + cityName + " within " + miles + " miles",
+                () -> findPeopleInAreaCached(cityName, miles), Set::size);
+    }
+
+    private CompletableFuture<Set<User>> findPeopleInAreaCached(String cityName, int miles) {
+        if (areaCache == null) {
+            return queryArea(new AreaQuery(cityName, miles));
+        }
+        return areaCache.getAsync(new AreaQuery(cityName, miles), this::queryArea);
+    }
+
+    /**
+     * Streams the people in the area, each user once, as soon as either leg finds them rather than when both
+     * have completed. Each subscription runs the query anew, starting when the subscriber is subscribed unless
+     * it cancels right away, and cancelling it aborts the requests still in flight. Users found ahead of the
+     * subscriber's demand are buffered up to a bound, beyond which the streamed downloads pause until the
+     * subscriber requests more. The legs time out once they go {@link #TIMEOUT} seconds without finding a user
+     * while the subscriber is not holding them back, so that a slow subscriber is not failed however long it
+     * takes. The area cache is bypassed.
+     */
+    public Flow.Publisher<User> publishPeopleInArea(String cityName, int miles) {
+        return subscriber -> {
+            final UsersSubscription subscription = new UsersSubscription(subscriber);
+            subscriber.onSubscribe(subscription);
+            if (subscription.isCancelled()) {
+                return;
+            }
+            subscription.track(List.of(
+                    streamPeopleInCity(cityName, subscription),
+                    cityLocator.locate(cityName)
+                            .map(centre -> usersDataset.streamWithinAsync(new GeoCircle(centre, miles),
+                                    subscription))
+                            .orElse(CompletableFuture.completedFuture(null))), TIMEOUT, TimeUnit.SECONDS);
+        };
+    }
+
+    public Map<String, Set<User>> findPeopleInAreas(Map<String, Integer> cityToMiles)
+            throws ExecutionException, InterruptedException {
+        return findPeopleInAreasAsync(cityToMiles).get();
+    }
+
+    /**
+     * Queries several areas at once, keyed by city in the iteration order of the map. The city legs run
+     * concurrently and the vicinity of every city is searched in a single query of the dataset, so the live
+     * datasets download "/users/" once for all the cities. The area cache is bypassed.
+     */
+    public CompletableFuture<Map<String, Set<User>>> findPeopleInAreasAsync(Map<String, Integer> cityToMiles) {
+        final QueryTrace trace = Tracing.current();
+        final List<String> cities = new ArrayList<>(cityToMiles.keySet());
+        final List<CompletableFuture<List<User>>> cityLegs = new ArrayList<>(cities.size());
+        final List<GeoCircle> circles = new ArrayList<>(cities.size());
+        //the circle of each city, -1 for a city without a vicinity
+        final int[] circleOfCity = new int[cities.size()];
+        for (int i = 0; i < cities.size(); i++) {
+            final String cityName = cities.get(i);
+            cityLegs.add(findPeopleInCity(cityName));
+            final Optional<GeoPoint> centre = cityLocator.locate(cityName);
+            circleOfCity[i] = centre.isPresent() ? circles.size() : -1;
+            centre.ifPresent(point -> circles.add(new GeoCircle(point, cityToMiles.get(cityName))));
+        }
+        final CompletableFuture<List<List<User>>> vicinityLeg = circles.isEmpty()
+                ? CompletableFuture.completedFuture(Collections.emptyList())
+                : usersDataset.findWithinEachAsync(circles);
+        return CompletableFuture.allOf(cityLegs.toArray(new CompletableFuture<?>[0]))
+                .thenCombine(vicinityLeg, (done, withinEach) -> {
+                    final Map<String, Set<User>> areas = new LinkedHashMap<>();
+                    for (int i = 0; i < cities.size(); i++) {
+                        areas.put(cities.get(i), merge(trace, cityLegs.get(i).join(),
+                                circleOfCity[i] < 0 ? Collections.emptyList() : withinEach.get(circleOfCity[i])));
+                    }
+                    return areas;
+                })
+                .orTimeout(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    public List<User> findNearestPeople(String cityName, int k, int maxMiles)
+            throws ExecutionException, InterruptedException {
+        return findNearestPeopleAsync(cityName, k, maxMiles).get();
+    }
+
+    /**
+     * The k people of the dataset nearest to the city and at most maxMiles from it, nearest first. Only the
+     * selected users are sorted, the others being dropped as they are found. The users the API lists for the
+     * city are not ranked, having no distance of their own, and a city that cannot be located has no nearest
+     * people. The caches are bypassed.
+     */
+    public CompletableFuture<List<User>> findNearestPeopleAsync(String cityName, int k, int maxMiles) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Invalid k " + k);
+        }
+        return cityLocator.locate(cityName)
+                .map(centre -> usersDataset.findNearestAsync(new GeoCircle(centre, maxMiles), k))
+                .orElse(CompletableFuture.completedFuture(Collections.emptyList()))
+                .orTimeout(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    public AreaResult findPeopleInArea(String cityName, int miles, Deadline deadline)
+            throws ExecutionException, InterruptedException {
+        return findPeopleInAreaAsync(cityName, miles, deadline).get();
+    }
+
+    /**
+     * Completes by the deadline with the legs that finished in time, flagging the result as partial when one
+     * did not and cancelling it, which aborts its request. The requests are bounded by the remaining budget,
+     * those of a blocking {@link UsersClient} only with a template of
+     * {@link org.users.client.UsersRestTemplates#pooled()}; a city call shared through the city cache is left
+     * to complete for the other callers. A leg failing before the deadline fails the query. The area cache is
+     * bypassed, as partial results must not be shared.
+     */
+    public CompletableFuture<AreaResult> findPeopleInAreaAsync(String cityName, int miles, Deadline deadline) {
+        final QueryTrace trace = Tracing.current();
+        final CompletableFuture<List<User>> city = findPeopleInCity(cityName, deadline);
+        final CompletableFuture<List<User>> vicinity = findPeopleWithinVicinityOfCity(cityName, miles, deadline);
+        return CompletableFuture.allOf(city, vicinity)
+                .completeOnTimeout(null, deadline.remainingNanos(), TimeUnit.NANOSECONDS)
+                .handle((done, failure) -> {
+                    final Set<AreaResult.Leg> missing = EnumSet.noneOf(AreaResult.Leg.class);
+                    final List<User> inCity = legResult(city, AreaResult.Leg.CITY, missing);
+                    final List<User> inVicinity = legResult(vicinity, AreaResult.Leg.VICINITY, missing);
+                    return new AreaResult(merge(trace, inCity, inVicinity), missing);
+                });
+    }
+
+    private static List<User> legResult(final CompletableFuture<List<User>> leg, final AreaResult.Leg name,
+                                        final Set<AreaResult.Leg> missing) {
+        //a no-op once the leg has completed
+        leg.cancel(true);
+        try {
+            return leg.join();
+        } catch (CancellationException e) {
+            missing.add(name);
+            return Collections.emptyList();
+        } catch (CompletionException e) {
+            if (!isDeadlineFailure(e.getCause())) {
+                throw e;
+            }
+            missing.add(name);
+            return Collections.emptyList();
+        }
+    }
+
+    private static boolean isDeadlineFailure(final Throwable failure) {
+        return failure instanceof DeadlineExceededException
+                || failure instanceof CancellationException
+                || failure instanceof UserClientException && failure.getCause() instanceof HttpTimeoutException;
+    }
+
+    private CompletableFuture<Set<User>> queryArea(final AreaQuery query) {
+        //the legs complete on other threads
+        final QueryTrace trace = Tracing.current();
+        return findPeopleInCity(query.getCityName())
                 .thenCombine(
-                        CompletableFuture.supplyAsync(() -> this.findPeopleWithinVicinityOfCity(cityName, miles)),
-                        (result1, result2) -> addResults(result1, result2))
+                        findPeopleWithinVicinityOfCity(query.getCityName(), query.getMiles()),
+                        (result1, result2) -> merge(trace, result1, result2))
                 .orTimeout(TIMEOUT, TimeUnit.SECONDS);
-        return future.get();
     }
 
-    private Set<User> addResults(final List<User> result1, final List<User> result2) {
-        Set<User> usrs = new HashSet<>();
+    private Set<User> merge(final QueryTrace trace, final List<User> result1, final List<User> result2) {
+        final StageSpan merge = Tracing.start(trace, Stage.MERGE);
+        final Set<User> merged = addResults(result1, result2);
+        merge.end(null, merged.size());
+        return merged;
+    }
+
+    /**
+     * Merges by id into a read-only set, which a cached result can share between callers.
+     */
+    Set<User> addResults(final List<User> result1, final List<User> result2) {
+        final UserIdSet usrs = new UserIdSet(result1.size() + result2.size());
         usrs.addAll(result1);
         usrs.addAll(result2);
-        return usrs;
+        return usrs.asSet();
+    }
+
+    private CompletableFuture<List<User>> findPeopleInCity(String cityName) {
+        if (asyncUsersClient != null) {
+            return cityCache == null
+                    ? asyncUsersClient.getUsersByCityAsync(cityName)
+                    : cityCache.getAsync(cityName, asyncUsersClient::getUsersByCityAsync);
+        }
+        if (cityCache == null) {
+            return usersClient.getUsersByCityAsync(cityName, null, executor);
+        }
+        return CompletableFuture.supplyAsync(() -> cityCache.get(cityName, usersClient::getUsersByCity), executor);
     }
 
-    private List<User> findPeopleInCity(String cityName) {
-        return usersClient.getUsersByCity(cityName);
+    private CompletableFuture<Void> streamPeopleInCity(String cityName, Consumer<User> consumer) {
+        if (asyncUsersClient != null && cityCache == null) {
+            return asyncUsersClient.streamUsersByCityAsync(cityName, consumer);
+        }
+        //the blocking client and the cache only have the city's users once all have been read
+        final CompletableFuture<List<User>> city = findPeopleInCity(cityName);
+        final CompletableFuture<Void> streamed = city.thenAccept(users -> users.forEach(consumer));
+        streamed.whenComplete((done, failure) -> {
+            if (streamed.isCancelled()) {
+                city.cancel(true);
+            }
+        });
+        return streamed;
     }
 
-    private List<User> findPeopleWithinVicinityOfCity(String cityName, int miles) {
-        final List<User> allUsers = usersClient.getAllUsers();
-        //As the swagger model do not provide any additional data to determine the vicinity of User,
-        // a random list of users are selected
-        return allUsers.stream().limit(3).collect(Collectors.toList());
+    private CompletableFuture<List<User>> findPeopleInCity(String cityName, Deadline deadline) {
+        if (asyncUsersClient == null) {
+            return cityCache == null
+                    ? usersClient.getUsersByCityAsync(cityName, deadline, executor)
+                    : findPeopleInCity(cityName);
+        }
+        return cityCache == null
+                ? asyncUsersClient.getUsersByCityAsync(cityName, deadline.remaining())
+                : cityCache.getAsync(cityName, city -> asyncUsersClient.getUsersByCityAsync(city, deadline.remaining()));
     }
 
+    private CompletableFuture<List<User>> findPeopleWithinVicinityOfCity(String cityName, int miles,
+                                                                         Deadline deadline) {
+        return cityLocator.locate(cityName)
+                .map(centre -> usersDataset.findWithinAsync(new GeoCircle(centre, miles), deadline))
+                .orElse(CompletableFuture.completedFuture(Collections.emptyList()));
+    }
+
+    private CompletableFuture<List<User>> findPeopleWithinVicinityOfCity(String cityName, int miles) {
+        //A city we cannot locate has no vicinity, only the users the API lists for it
+        return cityLocator.locate(cityName)
+                .map(centre -> usersDataset.findWithinAsync(new GeoCircle(centre, miles)))
+                .orElse(CompletableFuture.completedFuture(Collections.emptyList()));
+    }
+
+    public static final class Builder {
+
+        private final UsersClient usersClient;
+        private AsyncUsersClient asyncUsersClient;
+        private UsersDataset usersDataset;
+        private CityLocator cityLocator;
+        private Executor executor;
+        private CoalescingCache<String, List<User>> cityCache;
+        private CoalescingCache<AreaQuery, Set<User>> areaCache;
+
+        private Builder(final UsersClient usersClient) {
+            this.usersClient = usersClient;
+        }
+
+        /**
+         * Queries the Users API through the non-blocking client instead of parking threads on the
+         * {@link UsersClient}. Also becomes the default vicinity dataset.
+         */
+        public Builder asyncUsersClient(final AsyncUsersClient asyncUsersClient) {
+            this.asyncUsersClient = asyncUsersClient;
+            return this;
+        }
+
+        /**
+         * Where users in the vicinity of a city are searched, by default the "/users/" endpoint on every query.
+         * A {@link org.users.dataset.ColumnarUsersDataset} holds millions of users without keeping a
+         * {@link User} per user.
+         */
+        public Builder usersDataset(final UsersDataset usersDataset) {
+            this.usersDataset = usersDataset;
+            return this;
+        }
+
+        /**
+         * Resolves the city names to coordinates, by default the bundled {@link Gazetteer}.
+         */
+        public Builder cityLocator(final CityLocator cityLocator) {
+            this.cityLocator = cityLocator;
+            return this;
+        }
+
+        /**
+         * Runs the blocking {@link UsersClient} calls, by default the common fork join pool. A
+         * {@link org.users.concurrent.QueryExecutor} isolates them and reports its saturation. When it rejects
+         * a task the query fails with a {@link java.util.concurrent.RejectedExecutionException}.
+         */
+        public Builder executor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Caches and coalesces the "/city/{city}/users/" calls by city.
+         */
+        public Builder cityCache(final CoalescingCache<String, List<User>> cityCache) {
+            this.cityCache = cityCache;
+            return this;
+        }
+
+        /**
+         * Caches and coalesces whole area queries by city and radius. Cached results are unmodifiable.
+         */
+        public Builder areaCache(final CoalescingCache<AreaQuery, Set<User>> areaCache) {
+            this.areaCache = areaCache;
+            return this;
+        }
+
+        public PeopleInArea build() {
+            if (usersClient == null && asyncUsersClient == null) {
+                throw new IllegalStateException("A UsersClient or an AsyncUsersClient is required");
+            }
+            return new PeopleInArea(this);
+        }
+    }
 }
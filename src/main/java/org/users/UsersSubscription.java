@@ -0,0 +1,233 @@
+package org.users;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.users.client.PausingConsumer;
+import org.users.client.model.User;
+import org.users.dataset.UserIdSet;
+
+/**
+ * Delivers the users pushed by the legs of a query to a subscriber, once per id and no faster than it requests
+ * them. Users arriving ahead of demand are queued, and a single thread at a time drains the queue to the
+ * subscriber. Once {@link #CAPACITY} users are queued, the legs streaming a download are held back as a
+ * {@link PausingConsumer} until the subscriber's demand has drained half of them, so that a slow subscriber
+ * slows the downloads down instead of having them buffered. Legs holding their users in memory already hand
+ * them over at once. The legs time out when they go too long without pushing a user while the subscriber is
+ * not holding them back, however long a slow subscriber takes. Cancelling cancels the legs, which aborts their requests in flight, and makes the next
+ * user pushed by a leg throw, which aborts the leg's download.
+ */
+final class UsersSubscription implements Flow.Subscription, PausingConsumer<User> {
+
+    static final int CAPACITY = 1024;
+
+    private final Flow.Subscriber<? super User> subscriber;
+    private final Queue<User> queue = new ConcurrentLinkedQueue<>();
+    //the size of the queue, which the concurrent queue only counts by walking it
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<Runnable> paused = new ConcurrentLinkedQueue<>();
+    private final UserIdSet seen = new UserIdSet();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger drains = new AtomicInteger();
+    private final List<CompletableFuture<?>> legs = new ArrayList<>();
+
+    private volatile boolean cancelled;
+    private volatile boolean upstreamDone;
+    private volatile Throwable failure;
+    //when a leg last pushed a user or was resumed
+    private volatile long activeNanos;
+
+    UsersSubscription(final Flow.Subscriber<? super User> subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    /**
+     * Completes the subscription once all the legs have, or fails it with the first leg that fails, or with a
+     * {@link TimeoutException} once the legs push no user for the timeout while none of them is paused.
+     */
+    void track(final List<CompletableFuture<?>> upstream, final long timeout, final TimeUnit unit) {
+        synchronized (legs) {
+            legs.addAll(upstream);
+        }
+        upstream.forEach(leg -> leg.whenComplete((done, error) -> {
+            if (error != null) {
+                fail(error);
+            }
+        }));
+        CompletableFuture.allOf(upstream.toArray(new CompletableFuture<?>[0])).whenComplete((done, error) -> {
+            upstreamDone = true;
+            drain();
+        });
+        activeNanos = System.nanoTime();
+        watch(unit.toNanos(timeout));
+    }
+
+    /**
+     * Whether the subscriber cancelled or the subscription terminated, even before the legs were tracked.
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Called by the legs for every user they find.
+     *
+     * @throws CancellationException once the subscription is cancelled, to abort the leg
+     */
+    @Override
+    public void accept(final User user) {
+        if (cancelled) {
+            throw new CancellationException("Subscription cancelled");
+        }
+        final boolean first;
+        synchronized (seen) {
+            first = seen.add(user);
+        }
+        activeNanos = System.nanoTime();
+        if (first) {
+            queue.offer(user);
+            queued.incrementAndGet();
+            drain();
+        }
+    }
+
+    /**
+     * Holds back a streaming leg while the queue is full, until it has been drained to half.
+     */
+    @Override
+    public boolean proceed(final Runnable resume) {
+        if (cancelled || queued.get() < CAPACITY) {
+            return true;
+        }
+        paused.add(resume);
+        //the queue may have been drained before the leg was added
+        resumePaused();
+        return false;
+    }
+
+    @Override
+    public void request(final long n) {
+        if (n <= 0) {
+            fail(new IllegalArgumentException("Requested " + n + " users, the demand must be positive"));
+            return;
+        }
+        requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        cancelLegs();
+        drain();
+    }
+
+    private void fail(final Throwable error) {
+        if (failure == null) {
+            failure = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        }
+        cancelLegs();
+        drain();
+    }
+
+    /**
+     * Checks again once the legs would have been idle for the timeout, or after the timeout while one is paused.
+     */
+    private void watch(final long timeoutNanos) {
+        final long delay = paused.isEmpty() ? timeoutNanos - (System.nanoTime() - activeNanos) : timeoutNanos;
+        CompletableFuture.delayedExecutor(Math.max(0, delay), TimeUnit.NANOSECONDS).execute(() -> {
+            if (cancelled || upstreamDone) {
+                return;
+            }
+            if (paused.isEmpty() && System.nanoTime() - activeNanos >= timeoutNanos) {
+                fail(new TimeoutException("No users found for " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos)
+                        + " ms"));
+            } else {
+                watch(timeoutNanos);
+            }
+        });
+    }
+
+    private void cancelLegs() {
+        synchronized (legs) {
+            legs.forEach(leg -> leg.cancel(true));
+        }
+    }
+
+    private void drain() {
+        if (drains.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            final long demand = requested.get();
+            long emitted = 0;
+            while (!cancelled) {
+                if (failure != null) {
+                    terminate();
+                    break;
+                }
+                final boolean done = upstreamDone;
+                if (emitted == demand) {
+                    if (done && queue.isEmpty()) {
+                        terminate();
+                    }
+                    break;
+                }
+                final User user = queue.poll();
+                if (user == null) {
+                    if (done) {
+                        terminate();
+                    }
+                    break;
+                }
+                queued.decrementAndGet();
+                subscriber.onNext(user);
+                emitted++;
+            }
+            if (cancelled) {
+                queue.clear();
+                queued.set(0);
+            }
+            if (emitted != 0 && demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+            //a leg resumed on this thread may push users at once, the drain then going round again
+            resumePaused();
+            missed = drains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Resumes the paused legs while the queue has room, or all of them once cancelled, their next user then
+     * aborting them.
+     */
+    private void resumePaused() {
+        Runnable resume;
+        while ((cancelled || queued.get() <= CAPACITY / 2) && (resume = paused.poll()) != null) {
+            activeNanos = System.nanoTime();
+            resume.run();
+        }
+    }
+
+    private void terminate() {
+        cancelled = true;
+        queue.clear();
+        queued.set(0);
+        if (failure != null) {
+            subscriber.onError(failure);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.users.cache;
+
+/**
+ * A point in time copy of the counters of {@link UsersSnapshotCache}.
+ */
+public class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long refreshes;
+    private final long notModified;
+    private final long refreshFailures;
+    private final long snapshotFileFailures;
+
+    public CacheStats(final long hits, final long misses, final long refreshes, final long notModified,
+                      final long refreshFailures, final long snapshotFileFailures) {
+        this.hits = hits;
+        this.misses = misses;
+        this.refreshes = refreshes;
+        this.notModified = notModified;
+        this.refreshFailures = refreshFailures;
+        this.snapshotFileFailures = snapshotFileFailures;
+    }
+
+    /** Queries answered from the cached snapshot. */
+    public long getHits() {
+        return hits;
+    }
+
+    /** Queries that had to wait for the snapshot to be downloaded. */
+    public long getMisses() {
+        return misses;
+    }
+
+    /** Successful revalidations, whether or not the snapshot changed. */
+    public long getRefreshes() {
+        return refreshes;
+    }
+
+    /** Revalidations the server answered with 304 Not Modified. */
+    public long getNotModified() {
+        return notModified;
+    }
+
+    public long getRefreshFailures() {
+        return refreshFailures;
+    }
+
+    /** Snapshot files that could not be read, because corrupt or unreadable, or written. */
+    public long getSnapshotFileFailures() {
+        return snapshotFileFailures;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hits + ", misses=" + misses + ", refreshes=" + refreshes
+                + ", notModified=" + notModified + ", refreshFailures=" + refreshFailures
+                + ", snapshotFileFailures=" + snapshotFileFailures + "}";
+    }
+}
@@ -0,0 +1,186 @@
+package org.users.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * A size bounded, least recently used cache whose entries expire a fixed time after being loaded.
+ * Loads are single-flight: while a key is being loaded every other caller asking for it waits on the same
+ * load instead of starting its own, so the number of upstream calls does not grow with the number of
+ * concurrent callers. Failed loads are not cached.
+ */
+public class CoalescingCache<K, V> {
+
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoTime;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final ConcurrentMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CoalescingCache(final int maximumSize, final Duration timeToLive) {
+        this(maximumSize, timeToLive, System::nanoTime);
+    }
+
+    CoalescingCache(final int maximumSize, final Duration timeToLive, final LongSupplier nanoTime) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.nanoTime = nanoTime;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, Entry<V>> eldest) {
+                if (size() > CoalescingCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value, or loads it on the calling thread unless another caller is already loading it.
+     *
+     * @throws RuntimeException the exception thrown by the loader, also for the callers that joined the load
+     */
+    public V get(final K key, final Function<? super K, ? extends V> loader) {
+        final CompletableFuture<V> value = getAsync(key, k -> {
+            try {
+                return CompletableFuture.completedFuture(loader.apply(k));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+        try {
+            return value.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the cached value, or a future shared with every other caller asking for the key until the
+     * loader's future completes. Cancelling the returned future does not cancel the shared load.
+     */
+    public CompletableFuture<V> getAsync(final K key, final Function<? super K, ? extends CompletableFuture<V>> loader) {
+        final V cached = getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        final CompletableFuture<V> created = new CompletableFuture<>();
+        final CompletableFuture<V> inFlight = loading.putIfAbsent(key, created);
+        if (inFlight != null) {
+            coalesced.increment();
+            return inFlight.copy();
+        }
+        //a load may have completed between the lookup and claiming the key
+        final V loaded = getIfPresent(key);
+        if (loaded != null) {
+            hits.increment();
+            loading.remove(key, created);
+            created.complete(loaded);
+            return created.copy();
+        }
+        misses.increment();
+        try {
+            loader.apply(key).whenComplete((value, failure) -> {
+                if (failure == null) {
+                    put(key, value);
+                }
+                loading.remove(key, created);
+                if (failure == null) {
+                    created.complete(value);
+                } else {
+                    created.completeExceptionally(failure);
+                }
+            });
+        } catch (RuntimeException e) {
+            loading.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created.copy();
+    }
+
+    public V getIfPresent(final K key) {
+        synchronized (entries) {
+            final Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (nanoTime.getAsLong() - entry.loadedAtNanos >= timeToLiveNanos) {
+                entries.remove(key);
+                evictions.increment();
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    public void invalidate(final K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** Lookups answered from the cache. */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** Lookups that started a load. */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** Lookups that joined a load started by another caller. */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /** Entries dropped because the cache was full or they had expired. */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private void put(final K key, final V value) {
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, nanoTime.getAsLong()));
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long loadedAtNanos;
+
+        private Entry(final V value, final long loadedAtNanos) {
+            this.value = value;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package org.users.cache;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.users.client.UserClientException;
+import org.users.client.UsersClient;
+import org.users.client.VersionedUsers;
+import org.users.client.model.User;
+import org.users.dataset.DeltaSyncedUsersDataset;
+import org.users.dataset.SyncStats;
+import org.users.dataset.UsersDataset;
+import org.users.geo.GeoCircle;
+
+/**
+ * Keeps the last "/users/" response in memory behind a spatial index and revalidates it in the background
+ * with ETag/If-Modified-Since. Queries are answered from the current snapshot while a refresh runs, so only
+ * the very first query pays for the download. A changed snapshot is applied to the index as a delta by user
+ * id, see {@link DeltaSyncedUsersDataset}.
+ *
+ * <p>With a {@link UsersSnapshotFile} every downloaded snapshot is also saved to disk, and after a restart the
+ * saved one is served, and revalidated with its validators, instead of waiting for a full download. Until a
+ * download replaces it, the saved snapshot is queried through the columns read from the file, already in the
+ * order of their index. A corrupt file is ignored in favour of a full download.
+ */
+public class UsersSnapshotCache implements UsersDataset, AutoCloseable {
+
+    private final UsersClient usersClient;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final UsersSnapshotFile snapshotFile;
+    private final Object loadLock = new Object();
+    //the refresh running, which the callers arriving meanwhile wait for instead of downloading again
+    private final AtomicReference<CompletableFuture<Void>> refreshing = new AtomicReference<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder snapshotFileFailures = new LongAdder();
+
+    private final DeltaSyncedUsersDataset dataset = new DeltaSyncedUsersDataset();
+    private volatile Snapshot snapshot;
+    //guarded by loadLock, the file is only tried once
+    private boolean snapshotFileTried;
+
+    public UsersSnapshotCache(final UsersClient usersClient, final Duration refreshInterval) {
+        this(usersClient, refreshInterval, (UsersSnapshotFile) null);
+    }
+
+    public UsersSnapshotCache(final UsersClient usersClient, final Duration refreshInterval,
+                              final UsersSnapshotFile snapshotFile) {
+        this(usersClient, refreshInterval, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "users-snapshot-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }), true, snapshotFile);
+    }
+
+    public UsersSnapshotCache(final UsersClient usersClient, final Duration refreshInterval,
+                              final ScheduledExecutorService scheduler) {
+        this(usersClient, refreshInterval, scheduler, null);
+    }
+
+    public UsersSnapshotCache(final UsersClient usersClient, final Duration refreshInterval,
+                              final ScheduledExecutorService scheduler, final UsersSnapshotFile snapshotFile) {
+        this(usersClient, refreshInterval, scheduler, false, snapshotFile);
+    }
+
+    private UsersSnapshotCache(final UsersClient usersClient, final Duration refreshInterval,
+                               final ScheduledExecutorService scheduler, final boolean ownsScheduler,
+                               final UsersSnapshotFile snapshotFile) {
+        this.usersClient = usersClient;
+        this.refreshInterval = refreshInterval;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Loads the snapshot file, if any, and schedules the background refresh, the first one running immediately.
+     */
+    public UsersSnapshotCache start() {
+        synchronized (loadLock) {
+            if (snapshot == null) {
+                loadSnapshotFile();
+            }
+        }
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    @Override
+    public List<User> findWithin(final GeoCircle circle) {
+        return current().index.findWithin(circle);
+    }
+
+    /**
+     * The users of the current snapshot, downloading it if none has been loaded yet.
+     */
+    public List<User> getUsers() {
+        return current().users;
+    }
+
+    /**
+     * When the current snapshot was downloaded, empty until the first load. For a snapshot read from file,
+     * when the file was written.
+     */
+    public Optional<Instant> getLoadedAt() {
+        final Snapshot current = snapshot;
+        return current == null ? Optional.empty() : Optional.of(current.loadedAt);
+    }
+
+    /**
+     * Revalidates the snapshot against the server, replacing it when the server returns new data. A call made
+     * while another refresh runs, such as the background one, waits for that refresh and shares its outcome.
+     *
+     * @throws UserClientException when the request fails, in which case the previous snapshot is kept
+     */
+    public void refresh() {
+        final CompletableFuture<Void> refresh = new CompletableFuture<>();
+        final CompletableFuture<Void> running = refreshing.compareAndExchange(null, refresh);
+        if (running != null) {
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw (RuntimeException) e.getCause();
+            }
+            return;
+        }
+        try {
+            revalidate();
+            refresh.complete(null);
+        } catch (RuntimeException | Error e) {
+            refresh.completeExceptionally(e);
+            throw e;
+        } finally {
+            refreshing.set(null);
+        }
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), refreshes.sum(), notModified.sum(), refreshFailures.sum(),
+                snapshotFileFailures.sum());
+    }
+
+    /**
+     * What applying the downloaded snapshots to the spatial index changed and cost.
+     */
+    public SyncStats getSyncStats() {
+        return dataset.getStats();
+    }
+
+    @Override
+    public void close() {
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private Snapshot current() {
+        final Snapshot current = snapshot;
+        if (current != null) {
+            hits.increment();
+            return current;
+        }
+        misses.increment();
+        synchronized (loadLock) {
+            if (snapshot == null && loadSnapshotFile()) {
+                //serve the saved snapshot while it is revalidated
+                scheduler.execute(this::refreshQuietly);
+            }
+            if (snapshot == null) {
+                refresh();
+            }
+            return snapshot;
+        }
+    }
+
+    private synchronized void publish(final VersionedUsers versionedUsers, final Instant loadedAt) {
+        //the index first, a reader seeing the snapshot must find its users
+        dataset.sync(versionedUsers.getUsers());
+        snapshot = new Snapshot(versionedUsers, loadedAt, dataset);
+    }
+
+    private synchronized void publishSaved(final UsersSnapshotFile.Contents saved) {
+        //the delta index is only filled by the first download
+        snapshot = new Snapshot(saved.getUsers(), saved.getSavedAt(), saved.getDataset());
+    }
+
+    private boolean loadSnapshotFile() {
+        if (snapshotFile == null || snapshotFileTried) {
+            return false;
+        }
+        snapshotFileTried = true;
+        try {
+            final Optional<UsersSnapshotFile.Contents> contents = snapshotFile.read();
+            contents.ifPresent(this::publishSaved);
+            return contents.isPresent();
+        } catch (IOException e) {
+            //a full download replaces the file
+            snapshotFileFailures.increment();
+            return false;
+        }
+    }
+
+    private void saveSnapshotFile(final VersionedUsers versionedUsers) {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            snapshotFile.write(versionedUsers);
+        } catch (IOException e) {
+            //the in-memory snapshot is still served, the next change retries
+            snapshotFileFailures.increment();
+        }
+    }
+
+    private void revalidate() {
+        final Snapshot previous = snapshot;
+        final Optional<VersionedUsers> response;
+        try {
+            response = previous == null
+                    ? usersClient.getAllUsersIfModified(null, null)
+                    : usersClient.getAllUsersIfModified(previous.eTag, previous.lastModified);
+        } catch (RuntimeException e) {
+            refreshFailures.increment();
+            throw e;
+        }
+        refreshes.increment();
+        if (response.isPresent()) {
+            publish(response.get(), Instant.now());
+            saveSnapshotFile(response.get());
+        } else {
+            notModified.increment();
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            //keep serving the previous snapshot, the failure is counted and the next run retries
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final List<User> users;
+        private final String eTag;
+        private final String lastModified;
+        private final Instant loadedAt;
+        private final UsersDataset index;
+
+        private Snapshot(final VersionedUsers versionedUsers, final Instant loadedAt, final UsersDataset index) {
+            this.users = versionedUsers.getUsers();
+            this.eTag = versionedUsers.getETag();
+            this.lastModified = versionedUsers.getLastModified();
+            this.loadedAt = loadedAt;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package org.users.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import org.users.client.VersionedUsers;
+import org.users.client.model.User;
+import org.users.dataset.ColumnarUsersDataset;
+import org.users.geo.GeoGridIndex;
+
+/**
+ * A "/users/" snapshot on disk, so that a restarted service can answer queries before the download completes.
+ * The users are saved in the cell order of a {@link GeoGridIndex}, and read back by bulk copying the columns of
+ * the memory-mapped file into a {@link ColumnarUsersDataset} that shares them with its index: no {@link User} is
+ * created and nothing is sorted. The file is replaced atomically when written.
+ *
+ * <p>Layout, big-endian: the magic number and format version ints, the saved-at epoch millis, the user count,
+ * the cell size of the order in degrees as a double, the ETag and Last-Modified validators as a length (-1 for
+ * none) followed by UTF-8 bytes, then the ids, latitudes and longitudes each as a column, and a CRC32 of all the
+ * preceding bytes as a long.
+ */
+public class UsersSnapshotFile {
+
+    static final int MAGIC = 0x55535253;
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = Integer.BYTES * 3 + Long.BYTES + Double.BYTES;
+    private static final int USER_BYTES = Long.BYTES + Double.BYTES * 2;
+
+    private final Path path;
+
+    public UsersSnapshotFile(final Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return empty when there is no file
+     * @throws CorruptSnapshotException when the file is truncated, fails its checksum or has another version
+     */
+    public Optional<Contents> read() throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new CorruptSnapshotException("Snapshot too large: " + channel.size() + " bytes");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        return Optional.of(decode(buffer));
+    }
+
+    /**
+     * Replaces the file with the users, in cell order, and their validators.
+     */
+    public void write(final VersionedUsers versionedUsers) throws IOException {
+        final List<User> users = versionedUsers.getUsers();
+        final double[] latitudes = new double[users.size()];
+        final double[] longitudes = new double[users.size()];
+        for (int i = 0; i < users.size(); i++) {
+            latitudes[i] = users.get(i).getLatitude();
+            longitudes[i] = users.get(i).getLongitude();
+        }
+        final int[] order = GeoGridIndex.cellOrder(latitudes, longitudes, users.size(),
+                GeoGridIndex.DEFAULT_CELL_DEGREES);
+        final byte[] eTag = bytes(versionedUsers.getETag());
+        final byte[] lastModified = bytes(versionedUsers.getLastModified());
+        final long size = HEADER_BYTES + length(eTag) + length(lastModified) + (long) USER_BYTES * users.size()
+                + Long.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too many users for a snapshot: " + users.size());
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putInt(users.size())
+                .putDouble(GeoGridIndex.DEFAULT_CELL_DEGREES);
+        putBytes(buffer, eTag);
+        putBytes(buffer, lastModified);
+        for (int position : order) {
+            buffer.putLong(users.get(position).getId());
+        }
+        for (int position : order) {
+            buffer.putDouble(latitudes[position]);
+        }
+        for (int position : order) {
+            buffer.putDouble(longitudes[position]);
+        }
+        buffer.putLong(checksum(buffer.duplicate().flip()));
+        buffer.flip();
+
+        final Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        final Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Contents decode(final ByteBuffer buffer) throws CorruptSnapshotException {
+        if (buffer.remaining() < HEADER_BYTES + Long.BYTES) {
+            throw new CorruptSnapshotException("Snapshot truncated");
+        }
+        final ByteBuffer content = buffer.duplicate().limit(buffer.limit() - Long.BYTES);
+        if (checksum(content) != buffer.getLong(buffer.limit() - Long.BYTES)) {
+            throw new CorruptSnapshotException("Snapshot checksum mismatch");
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new CorruptSnapshotException("Not a users snapshot");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new CorruptSnapshotException("Unsupported snapshot version " + version);
+        }
+        final Instant savedAt = Instant.ofEpochMilli(buffer.getLong());
+        final int count = buffer.getInt();
+        final double cellDegrees = buffer.getDouble();
+        final String eTag = getString(buffer);
+        final String lastModified = getString(buffer);
+        if (count < 0 || (long) count * USER_BYTES != buffer.remaining() - Long.BYTES) {
+            throw new CorruptSnapshotException("Snapshot size does not match its " + count + " users");
+        }
+        final long[] ids = new long[count];
+        final double[] latitudes = new double[count];
+        final double[] longitudes = new double[count];
+        buffer.asLongBuffer().get(ids);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        buffer.asDoubleBuffer().get(latitudes);
+        buffer.position(buffer.position() + count * Double.BYTES);
+        buffer.asDoubleBuffer().get(longitudes);
+        final ColumnarUsersDataset dataset;
+        try {
+            dataset = ColumnarUsersDataset.ofCellOrdered(ids, latitudes, longitudes, cellDegrees);
+        } catch (IllegalArgumentException e) {
+            throw new CorruptSnapshotException("Snapshot users are not in cell order: " + e.getMessage());
+        }
+        return new Contents(new VersionedUsers(dataset.getUsers(), eTag, lastModified), dataset, savedAt);
+    }
+
+    private static long checksum(final ByteBuffer content) {
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private static String getString(final ByteBuffer buffer) throws CorruptSnapshotException {
+        if (buffer.remaining() < Integer.BYTES) {
+            throw new CorruptSnapshotException("Snapshot truncated");
+        }
+        final int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new CorruptSnapshotException("Snapshot truncated");
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(final String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(final byte[] bytes) {
+        return Integer.BYTES + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putBytes(final ByteBuffer buffer, final byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    /**
+     * The users read from a snapshot file, already indexed, and when it was written.
+     */
+    public static class Contents {
+
+        private final VersionedUsers users;
+        private final ColumnarUsersDataset dataset;
+        private final Instant savedAt;
+
+        Contents(final VersionedUsers users, final ColumnarUsersDataset dataset, final Instant savedAt) {
+            this.users = users;
+            this.dataset = dataset;
+            this.savedAt = savedAt;
+        }
+
+        /**
+         * The users in the order of the file, each one created when it is read, with the validators.
+         */
+        public VersionedUsers getUsers() {
+            return users;
+        }
+
+        /**
+         * The saved columns behind their index, ready to be queried.
+         */
+        public ColumnarUsersDataset getDataset() {
+            return dataset;
+        }
+
+        public Instant getSavedAt() {
+            return savedAt;
+        }
+    }
+
+    /**
+     * The snapshot file cannot be trusted, a full download has to replace it.
+     */
+    public static class CorruptSnapshotException extends IOException {
+
+        public CorruptSnapshotException(final String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.users.client;
+
+import java.time.Duration;
+
+/**
+ * Caps the requests in flight to the Users API at a limit found by additive increase, multiplicative decrease.
+ * While the requests use at least half of the limit and come back faster than the latency threshold, each one
+ * grows the limit by 1/limit, about one more request per round trip. A request that is dropped (a server
+ * error, a lost connection or a response slower than the threshold) shrinks the limit by a tenth. Only one
+ * decrease is made per congestion episode: requests started before the last decrease do not shrink it again.
+ */
+public class AimdConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final Duration DEFAULT_LATENCY_THRESHOLD = Duration.ofSeconds(2);
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+
+    private double limit;
+    private int inFlight;
+    private boolean decreased;
+    private long lastDecreaseNanos;
+
+    public AimdConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_LATENCY_THRESHOLD);
+    }
+
+    /**
+     * @param latencyThreshold a successful request slower than this counts as dropped
+     */
+    public AimdConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+                                  final Duration latencyThreshold) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid limits, expected 1 <= " + minLimit + " <= " + initialLimit
+                    + " <= " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @return false when the limit is reached, otherwise the caller must report the outcome of its request
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * @param startedNanos the {@link System#nanoTime()} the request was sent at
+     */
+    public synchronized void onSuccess(final long startedNanos, final long latencyNanos) {
+        final int wasInFlight = inFlight--;
+        if (latencyNanos > latencyThresholdNanos) {
+            decrease(startedNanos);
+        } else if (wasInFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    public synchronized void onDropped(final long startedNanos) {
+        inFlight--;
+        decrease(startedNanos);
+    }
+
+    /**
+     * Releases a request whose outcome says nothing about the Users API, such as a 404 or an aborted download.
+     */
+    public synchronized void onIgnored() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void decrease(final long startedNanos) {
+        if (decreased && startedNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.floor(limit * BACKOFF_RATIO));
+        decreased = true;
+        lastDecreaseNanos = System.nanoTime();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AimdConcurrencyLimiter{limit=" + (int) limit + ", inFlight=" + inFlight + "}";
+    }
+}
@@ -0,0 +1,220 @@
+package org.users.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.RestClientResponseException;
+import org.users.client.model.User;
+
+/**
+ * Non-blocking counterpart of {@link UsersClient} on the JDK {@link HttpClient}. Requests are multiplexed over
+ * HTTP/2 where the server supports it, falling back to pooled keep-alive HTTP/1.1 connections, and response
+ * bodies are parsed as they arrive, so no thread is held while a request is in flight. Cancelling a returned
+ * future gives up on the response of its request.
+ */
+public class AsyncUsersClient {
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+    public static final int DEFAULT_BATCH_CONCURRENCY = 16;
+    private static final String APPLICATION_JSON = "application/json";
+
+    private final String rootContext;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final ObjectReader userReader;
+
+    public AsyncUsersClient(String rootContext) {
+        this(rootContext, HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(DEFAULT_TIMEOUT)
+                .build(), DEFAULT_TIMEOUT);
+    }
+
+    public AsyncUsersClient(String rootContext, HttpClient httpClient, Duration requestTimeout) {
+        this.rootContext = rootContext;
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+        this.userReader = new ObjectMapper().readerFor(User.class);
+    }
+
+    public CompletableFuture<List<User>> getAllUsersAsync() {
+        return collect(this::streamAllUsersAsync);
+    }
+
+    /**
+     * Hands each user of the "/users/" endpoint to the consumer as soon as it is parsed. The consumer runs on
+     * the client's executor and may abort the download by throwing.
+     */
+    public CompletableFuture<Void> streamAllUsersAsync(Consumer<? super User> consumer) {
+        return streamAllUsersAsync(consumer, requestTimeout);
+    }
+
+    /**
+     * @param timeout bounds this request instead of the client's request timeout
+     */
+    public CompletableFuture<Void> streamAllUsersAsync(Consumer<? super User> consumer, Duration timeout) {
+        return send(UsersClient.USERS, timeout, () -> new JsonArrayBodySubscriber<>(userReader, consumer));
+    }
+
+    public CompletableFuture<User> getUserAsync(long id) {
+        return send(UsersClient.USER + id, requestTimeout, () -> HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.ofByteArray(), this::readUser));
+    }
+
+    public CompletableFuture<Map<Long, UserResult>> getUsersAsync(Collection<Long> ids) {
+        return getUsersAsync(ids, DEFAULT_BATCH_CONCURRENCY);
+    }
+
+    /**
+     * Fetches each distinct id once with at most {@code concurrency} requests in flight. The map is ordered
+     * like the ids; a failed request is reported in its {@link UserResult} instead of failing the batch.
+     */
+    public CompletableFuture<Map<Long, UserResult>> getUsersAsync(Collection<Long> ids, int concurrency) {
+        final long[] distinctIds = distinct(ids);
+        final Map<Long, UserResult> completed = new HashMap<>();
+        return new BatchFetch(distinctIds, concurrency, this::getUserAsync, result -> completed.put(result.getId(), result))
+                .start()
+                .thenApply(done -> {
+                    final Map<Long, UserResult> ordered = new LinkedHashMap<>();
+                    for (long id : distinctIds) {
+                        ordered.put(id, completed.get(id));
+                    }
+                    return ordered;
+                });
+    }
+
+    /**
+     * Fetches each distinct id once with at most {@code concurrency} requests in flight, handing every result
+     * to the listener as soon as it completes. The listener is never called concurrently.
+     */
+    public CompletableFuture<Void> streamUsersAsync(Collection<Long> ids, int concurrency, Consumer<UserResult> listener) {
+        return new BatchFetch(distinct(ids), concurrency, this::getUserAsync, listener).start();
+    }
+
+    public CompletableFuture<List<User>> getUsersByCityAsync(String city) {
+        return getUsersByCityAsync(city, requestTimeout);
+    }
+
+    /**
+     * @param timeout bounds this request instead of the client's request timeout
+     */
+    public CompletableFuture<List<User>> getUsersByCityAsync(String city, Duration timeout) {
+        return collect(consumer -> streamUsersByCityAsync(city, consumer, timeout));
+    }
+
+    /**
+     * Passes each user of the city to the consumer as it is parsed, see {@link #streamAllUsersAsync(Consumer)}.
+     */
+    public CompletableFuture<Void> streamUsersByCityAsync(String city, Consumer<? super User> consumer) {
+        return streamUsersByCityAsync(city, consumer, requestTimeout);
+    }
+
+    private CompletableFuture<Void> streamUsersByCityAsync(final String city, final Consumer<? super User> consumer,
+                                                           final Duration timeout) {
+        return send(UsersClient.cityPath(city), timeout, () -> new JsonArrayBodySubscriber<>(userReader, consumer));
+    }
+
+    private CompletableFuture<List<User>> collect(final Function<Consumer<User>, CompletableFuture<Void>> stream) {
+        final List<User> users = new ArrayList<>();
+        final CompletableFuture<Void> streamed = stream.apply(users::add);
+        final CompletableFuture<List<User>> collected = streamed.thenApply(done -> users);
+        collected.whenComplete((done, failure) -> {
+            if (collected.isCancelled()) {
+                streamed.cancel(true);
+            }
+        });
+        return collected;
+    }
+
+    private <T> CompletableFuture<T> send(final String path, final Duration timeout,
+                                          final Supplier<HttpResponse.BodySubscriber<T>> onSuccess) {
+        if (timeout.isZero() || timeout.isNegative()) {
+            return CompletableFuture.failedFuture(new UserClientException("Error processing request",
+                    new HttpTimeoutException("No time left to send the request")));
+        }
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(rootContext + path))
+                .timeout(timeout)
+                .header(HttpHeaders.ACCEPT, APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON)
+                .GET()
+                .build();
+        final BodyCancellation cancellation = new BodyCancellation();
+        final CompletableFuture<T> result = httpClient.sendAsync(request, responseInfo -> cancellation.wrap(
+                responseInfo.statusCode() / 100 == 2
+                        ? onSuccess.get()
+                        : HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+                                body -> this.<T>failure(responseInfo, body))))
+                .handle((response, failure) -> {
+                    if (failure != null) {
+                        throw translate(failure);
+                    }
+                    return response.body();
+                });
+        result.whenComplete((body, failure) -> {
+            if (result.isCancelled()) {
+                cancellation.cancel();
+            }
+        });
+        return result;
+    }
+
+    private static long[] distinct(final Collection<Long> ids) {
+        return new LinkedHashSet<>(ids).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private User readUser(final byte[] body) {
+        try {
+            return userReader.readValue(body);
+        } catch (IOException e) {
+            throw new UserClientException("Error processing response", e);
+        }
+    }
+
+    private <T> T failure(final HttpResponse.ResponseInfo responseInfo, final byte[] body) {
+        final HttpHeaders headers = new HttpHeaders();
+        responseInfo.headers().map().forEach(headers::addAll);
+        throw new UserClientException("Error processing request", new RestClientResponseException(
+                "Unexpected status " + responseInfo.statusCode(), responseInfo.statusCode(), "", headers, body,
+                StandardCharsets.UTF_8));
+    }
+
+    private static RuntimeException translate(final Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof UserClientException) {
+            return (UserClientException) cause;
+        }
+        //since JDK 16 a cancelled request fails with a CancellationException, which callers tell from failures
+        if (cause instanceof CancellationException) {
+            return (CancellationException) cause;
+        }
+        if (cause instanceof IOException && cause.getCause() instanceof UserClientException) {
+            return (UserClientException) cause.getCause();
+        }
+        return new UserClientException("Error processing request", cause);
+    }
+}
@@ -0,0 +1,101 @@
+package org.users.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import org.users.client.model.User;
+
+/**
+ * Fetches users by id keeping at most {@code concurrency} requests in flight: every completed request starts
+ * the next one, so the window stays full without any thread waiting. Results are handed to the listener one
+ * at a time in completion order. Requests are started by a drain loop rather than from the callback of the
+ * previous one, so requests completing on the calling thread do not nest. No request is started once the
+ * batch has failed, its listener having thrown, or has been cancelled.
+ */
+class BatchFetch {
+
+    private final long[] ids;
+    private final int concurrency;
+    private final LongFunction<CompletableFuture<User>> fetch;
+    private final Consumer<UserResult> listener;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger remaining;
+    //requests to run the drain loop, only the thread taking it from 0 runs it
+    private final AtomicInteger dispatching = new AtomicInteger();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    //only used by the thread running the drain loop
+    private int next;
+
+    BatchFetch(final long[] ids, final int concurrency, final LongFunction<CompletableFuture<User>> fetch,
+               final Consumer<UserResult> listener) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.ids = ids;
+        this.concurrency = concurrency;
+        this.fetch = fetch;
+        this.listener = listener;
+        this.remaining = new AtomicInteger(ids.length);
+    }
+
+    CompletableFuture<Void> start() {
+        if (ids.length == 0) {
+            done.complete(null);
+        }
+        dispatch();
+        return done;
+    }
+
+    /**
+     * Starts requests until the window is full, looping again when a request completed meanwhile.
+     */
+    private void dispatch() {
+        if (dispatching.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (!done.isDone() && next < ids.length && inFlight.get() < concurrency) {
+                inFlight.incrementAndGet();
+                send(ids[next++]);
+            }
+        } while (dispatching.decrementAndGet() != 0);
+    }
+
+    private void send(final long id) {
+        CompletableFuture<User> request;
+        try {
+            request = fetch.apply(id);
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.whenComplete((user, failure) -> {
+            try {
+                synchronized (listener) {
+                    if (!done.isDone()) {
+                        listener.accept(failure == null ? UserResult.success(id, user) : UserResult.failure(id, translate(failure)));
+                    }
+                }
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+            inFlight.decrementAndGet();
+            if (remaining.decrementAndGet() == 0) {
+                done.complete(null);
+            } else {
+                dispatch();
+            }
+        });
+    }
+
+    private static UserClientException translate(final Throwable failure) {
+        final Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+        return cause instanceof UserClientException
+                ? (UserClientException) cause
+                : new UserClientException("Error processing request", cause);
+    }
+}
@@ -0,0 +1,67 @@
+package org.users.client;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Gives up on the body of a response, which cancelling the future of the JDK 11 {@link java.net.http.HttpClient}
+ * does not: the request runs on until the body is read. Cancelling drops the subscription of the wrapped body
+ * subscriber, and the connection or HTTP/2 stream with it, at once while the body is streaming and otherwise
+ * as soon as the response head arrives.
+ */
+final class BodyCancellation {
+
+    private Flow.Subscription subscription;
+    private boolean cancelled;
+
+    <T> HttpResponse.BodySubscriber<T> wrap(final HttpResponse.BodySubscriber<T> subscriber) {
+        return new HttpResponse.BodySubscriber<T>() {
+            @Override
+            public CompletionStage<T> getBody() {
+                return subscriber.getBody();
+            }
+
+            @Override
+            public void onSubscribe(final Flow.Subscription subscription) {
+                subscriber.onSubscribe(subscription);
+                if (!subscribed(subscription)) {
+                    subscription.cancel();
+                }
+            }
+
+            @Override
+            public void onNext(final List<ByteBuffer> item) {
+                subscriber.onNext(item);
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                subscriber.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+        };
+    }
+
+    void cancel() {
+        final Flow.Subscription cancelling;
+        synchronized (this) {
+            cancelled = true;
+            cancelling = subscription;
+        }
+        if (cancelling != null) {
+            cancelling.cancel();
+        }
+    }
+
+    private synchronized boolean subscribed(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        return !cancelled;
+    }
+}
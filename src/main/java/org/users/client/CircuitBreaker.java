@@ -0,0 +1,158 @@
+package org.users.client;
+
+import java.time.Duration;
+
+/**
+ * Stops calling an endpoint of the Users API that keeps failing. Closed, it records the outcome of the last
+ * window of requests, a slow response counting as a failure. Once enough of them failed it opens and rejects
+ * every request for the open duration. It then lets a single probe through (half open) which closes it again
+ * when it succeeds, or reopens it when it fails.
+ */
+public class CircuitBreaker {
+
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    public static final int DEFAULT_MINIMUM_CALLS = 10;
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_SLOW_CALL_THRESHOLD = Duration.ofSeconds(2);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final boolean[] failed;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final long slowCallNanos;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int calls;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker() {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_MINIMUM_CALLS, DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_OPEN_DURATION,
+                DEFAULT_SLOW_CALL_THRESHOLD);
+    }
+
+    /**
+     * @param windowSize           the number of most recent requests the failure rate is computed over
+     * @param minimumCalls         the requests the window needs before the breaker may open
+     * @param failureRateThreshold the share of failed requests in the window, from 0 to 1, that opens it
+     */
+    public CircuitBreaker(final int windowSize, final int minimumCalls, final double failureRateThreshold,
+                          final Duration openDuration, final Duration slowCallThreshold) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid window of " + windowSize + " with " + minimumCalls
+                    + " minimum calls");
+        }
+        if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+            throw new IllegalArgumentException("Invalid failure rate threshold " + failureRateThreshold);
+        }
+        this.failed = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.slowCallNanos = slowCallThreshold.toNanos();
+    }
+
+    /**
+     * @return false while open, otherwise the caller must report the outcome of its request
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            default:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess(final long latencyNanos) {
+        if (latencyNanos > slowCallNanos) {
+            onFailure();
+        } else if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+        }
+    }
+
+    /**
+     * Releases a request whose outcome says nothing about the endpoint, letting another probe through.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    /**
+     * The state as of the last request, an open breaker only turns half open when a request is attempted.
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Adds the outcome to the window, opening the breaker when the failure rate reaches the threshold.
+     */
+    private void record(final boolean failure) {
+        if (calls == failed.length) {
+            if (failed[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        failed[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % failed.length;
+        if (calls >= minimumCalls && failures >= failureRateThreshold * calls) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        probing = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        probing = false;
+        next = 0;
+        calls = 0;
+        failures = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CircuitBreaker{" + state + ", " + failures + "/" + calls + " failed}";
+    }
+}
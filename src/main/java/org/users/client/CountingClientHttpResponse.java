@@ -0,0 +1,109 @@
+package org.users.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Counts the bytes read from the body of a response. Closing the body leaves it to the underlying response,
+ * which a parser closing its input on a failure must not read to the end; once the body is parsed,
+ * {@link #drain()} reads what is left of it, as the underlying responses do to keep the connection alive, so
+ * that those bytes are counted too.
+ */
+class CountingClientHttpResponse implements ClientHttpResponse {
+
+    private final ClientHttpResponse delegate;
+    private CountingInputStream body;
+
+    CountingClientHttpResponse(final ClientHttpResponse delegate) {
+        this.delegate = delegate;
+    }
+
+    long getBytesRead() {
+        return body == null ? 0 : body.count;
+    }
+
+    void drain() throws IOException {
+        final InputStream in = getBody();
+        final byte[] buffer = new byte[4096];
+        while (in.read(buffer, 0, buffer.length) >= 0) {
+            //drained
+        }
+    }
+
+    @Override
+    public HttpStatus getStatusCode() throws IOException {
+        return delegate.getStatusCode();
+    }
+
+    @Override
+    public int getRawStatusCode() throws IOException {
+        return delegate.getRawStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+        return delegate.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return delegate.getHeaders();
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+        if (body == null) {
+            body = new CountingInputStream(delegate.getBody());
+        }
+        return body;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = super.read();
+            if (read >= 0) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() {
+            //the response closes the underlying body
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.users.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Decodes a gzip or deflate response body as it is read, so a compressed download is never held in memory
+ * whole. The headers no longer announce the encoding once the body is decoded.
+ */
+class DecompressingClientHttpResponse implements ClientHttpResponse {
+
+    static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+
+    private static final int BUFFER_BYTES = 8192;
+
+    private final ClientHttpResponse delegate;
+    private HttpHeaders headers;
+    private InputStream body;
+
+    DecompressingClientHttpResponse(final ClientHttpResponse delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public HttpStatus getStatusCode() throws IOException {
+        return delegate.getStatusCode();
+    }
+
+    @Override
+    public int getRawStatusCode() throws IOException {
+        return delegate.getRawStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+        return delegate.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        if (headers == null) {
+            final HttpHeaders received = delegate.getHeaders();
+            if (encoding() == null) {
+                headers = received;
+            } else {
+                headers = new HttpHeaders();
+                headers.putAll(received);
+                headers.remove(HttpHeaders.CONTENT_ENCODING);
+                headers.remove(HttpHeaders.CONTENT_LENGTH);
+            }
+        }
+        return headers;
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+        if (body == null) {
+            final String encoding = encoding();
+            final InputStream received = delegate.getBody();
+            if ("gzip".equals(encoding) || "x-gzip".equals(encoding)) {
+                body = new GZIPInputStream(received, BUFFER_BYTES);
+            } else if ("deflate".equals(encoding)) {
+                body = inflating(received);
+            } else {
+                body = received;
+            }
+        }
+        return body;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private String encoding() {
+        final String encoding = delegate.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        return encoding == null || "identity".equalsIgnoreCase(encoding.trim())
+                ? null : encoding.trim().toLowerCase();
+    }
+
+    /**
+     * "deflate" is meant to be zlib wrapped, but some servers send the raw deflate stream. The first two bytes
+     * tell them apart.
+     */
+    private static InputStream inflating(final InputStream received) throws IOException {
+        final PushbackInputStream in = new PushbackInputStream(received, 2);
+        final int first = in.read();
+        final int second = first < 0 ? -1 : in.read();
+        if (second >= 0) {
+            in.unread(second);
+        }
+        if (first >= 0) {
+            in.unread(first);
+        }
+        final boolean zlib = second >= 0 && (first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0;
+        final Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(in, inflater, BUFFER_BYTES) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
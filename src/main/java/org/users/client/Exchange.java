@@ -0,0 +1,134 @@
+package org.users.client;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+import org.users.concurrent.Deadline;
+
+/**
+ * The state of one {@link UsersClient} call shared with the request factory of its thread: the deadline the
+ * factory bounds the request by, and how to abort the request in flight. The request factory of
+ * {@link UsersRestTemplates#pooled()} registers the abort of the HttpClient request; other factories register
+ * none, the client then closing the body without reading it to the end.
+ */
+final class Exchange {
+
+    private static final ThreadLocal<Exchange> CURRENT = new ThreadLocal<>();
+
+    private final Deadline deadline;
+    private Runnable hook;
+    private boolean hooked;
+    private volatile boolean aborted;
+    private boolean finished;
+
+    /**
+     * @param deadline bounds the call, null for none
+     */
+    Exchange(final Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * The exchange of the call running on this thread, null outside of one.
+     */
+    static Exchange current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the call with this exchange as the current one of the thread.
+     */
+    <T> T run(final Supplier<T> call) {
+        final Exchange outer = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return call.get();
+        } finally {
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+            synchronized (this) {
+                finished = true;
+                hook = null;
+            }
+        }
+    }
+
+    Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Called by the request factory with the abort of the request it created, which runs at once when the
+     * exchange is already aborted.
+     */
+    void onAbort(final Runnable abort) {
+        synchronized (this) {
+            hooked = true;
+            if (!aborted) {
+                hook = abort;
+                return;
+            }
+        }
+        abort.run();
+    }
+
+    /**
+     * Gives up on the call, aborting its request in flight or failing the next user it streams. A no-op once
+     * the call has returned.
+     */
+    void abort() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            aborted = true;
+        }
+        disconnect();
+    }
+
+    /**
+     * Drops the connection of the request through the abort registered by the request factory.
+     *
+     * @return false when none was registered, the caller then having to drop the connection itself
+     */
+    boolean disconnect() {
+        final Runnable abort;
+        synchronized (this) {
+            if (!hooked) {
+                return false;
+            }
+            abort = hook;
+            hook = null;
+        }
+        if (abort != null) {
+            abort.run();
+        }
+        return true;
+    }
+
+    boolean isAborted() {
+        return aborted;
+    }
+
+    boolean isExpired() {
+        return deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * Called for every streamed user.
+     *
+     * @throws CancellationException once the exchange is aborted
+     * @throws org.users.concurrent.DeadlineExceededException once the deadline has passed
+     */
+    void check() {
+        if (aborted) {
+            throw new CancellationException("Request aborted");
+        }
+        if (deadline != null) {
+            deadline.check();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.users.client;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Parses a JSON array body with Jackson's non-blocking parser as the chunks arrive, buffering the tokens of
+ * one element at a time and handing each bound element to the consumer. No thread waits for the network
+ * and the body is never held in memory as a whole. A {@link PausingConsumer} holding back the stream delays
+ * the request of the next chunk until it resumes it, so the connection is not read in the meantime.
+ */
+class JsonArrayBodySubscriber<T> implements HttpResponse.BodySubscriber<Void> {
+
+    private final ObjectReader reader;
+    private final Consumer<? super T> consumer;
+    private final PausingConsumer<? super T> pausing;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private Flow.Subscription subscription;
+    private TokenBuffer element;
+    private int depth;
+    private boolean started;
+    private boolean finished;
+
+    JsonArrayBodySubscriber(final ObjectReader reader, final Consumer<? super T> consumer) {
+        this.reader = reader;
+        this.consumer = consumer;
+        this.pausing = consumer instanceof PausingConsumer ? (PausingConsumer<? super T>) consumer : null;
+        try {
+            this.parser = reader.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new UserClientException("Unable to create JSON parser", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    @Override
+    public CompletionStage<Void> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(final List<ByteBuffer> buffers) {
+        try {
+            for (ByteBuffer buffer : buffers) {
+                final byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                feeder.feedInput(bytes, 0, bytes.length);
+                drain();
+            }
+        } catch (IOException | RuntimeException e) {
+            subscription.cancel();
+            fail(e);
+            return;
+        }
+        if (pausing == null || pausing.proceed(this::requestNext)) {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            feeder.endOfInput();
+            drain();
+            if (!finished) {
+                throw new UserClientException("Incomplete JSON array in response");
+            }
+            result.complete(null);
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    private void requestNext() {
+        subscription.request(1);
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (!started) {
+                if (token != JsonToken.START_ARRAY) {
+                    throw new UserClientException("Expected a JSON array but got " + token);
+                }
+                started = true;
+                continue;
+            }
+            if (depth == 0) {
+                if (token == JsonToken.END_ARRAY) {
+                    finished = true;
+                    continue;
+                }
+                if (token != JsonToken.START_OBJECT || finished) {
+                    throw new UserClientException("Unexpected token " + token + " in JSON array");
+                }
+                element = new TokenBuffer(parser);
+            }
+            element.copyCurrentEvent(parser);
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                depth++;
+            } else if ((token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) && --depth == 0) {
+                final T value = reader.readValue(element.asParser());
+                element = null;
+                consumer.accept(value);
+            }
+        }
+    }
+
+    private void fail(final Throwable throwable) {
+        if (throwable instanceof UserClientException) {
+            result.completeExceptionally(throwable);
+        } else {
+            result.completeExceptionally(new UserClientException("Error processing response", throwable));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.users.client;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.users.client.metrics.Endpoint;
+
+/**
+ * Guards the requests of a {@link UsersClient} with a concurrency limiter shared by all the endpoints and a
+ * circuit breaker per endpoint. A request that either of them turns down fails at once with a
+ * {@link RequestRejectedException} instead of queueing for a connection.
+ */
+public final class LoadShedder {
+
+    public static final LoadShedder NONE = builder().build();
+
+    private final AimdConcurrencyLimiter concurrencyLimiter;
+    private final Map<Endpoint, CircuitBreaker> circuitBreakers;
+
+    private LoadShedder(final Builder builder) {
+        this.concurrencyLimiter = builder.concurrencyLimiter;
+        this.circuitBreakers = new EnumMap<>(Endpoint.class);
+        if (builder.circuitBreakers != null) {
+            for (Endpoint endpoint : Endpoint.values()) {
+                circuitBreakers.put(endpoint, builder.circuitBreakers.get());
+            }
+        }
+    }
+
+    /**
+     * An {@link AimdConcurrencyLimiter} and a {@link CircuitBreaker} per endpoint with their default settings.
+     */
+    public static LoadShedder defaults() {
+        return builder()
+                .concurrencyLimiter(new AimdConcurrencyLimiter())
+                .circuitBreakers(CircuitBreaker::new)
+                .build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Optional<AimdConcurrencyLimiter> getConcurrencyLimiter() {
+        return Optional.ofNullable(concurrencyLimiter);
+    }
+
+    public Optional<CircuitBreaker> getCircuitBreaker(final Endpoint endpoint) {
+        return Optional.ofNullable(circuitBreakers.get(endpoint));
+    }
+
+    /**
+     * @throws RequestRejectedException when the circuit of the endpoint is open or the limit is reached
+     */
+    Permit acquire(final Endpoint endpoint) {
+        final CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            throw new RequestRejectedException(endpoint, RequestRejectedException.Reason.CIRCUIT_OPEN);
+        }
+        if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire()) {
+            if (circuitBreaker != null) {
+                circuitBreaker.onIgnored();
+            }
+            throw new RequestRejectedException(endpoint, RequestRejectedException.Reason.CONCURRENCY_LIMIT);
+        }
+        return new Permit(concurrencyLimiter, circuitBreaker, System.nanoTime());
+    }
+
+    /**
+     * An admitted request, to be released exactly once with its outcome.
+     */
+    static final class Permit {
+
+        private final AimdConcurrencyLimiter concurrencyLimiter;
+        private final CircuitBreaker circuitBreaker;
+        private final long startedNanos;
+
+        private Permit(final AimdConcurrencyLimiter concurrencyLimiter, final CircuitBreaker circuitBreaker,
+                       final long startedNanos) {
+            this.concurrencyLimiter = concurrencyLimiter;
+            this.circuitBreaker = circuitBreaker;
+            this.startedNanos = startedNanos;
+        }
+
+        void succeeded(final long latencyNanos) {
+            if (concurrencyLimiter != null) {
+                concurrencyLimiter.onSuccess(startedNanos, latencyNanos);
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onSuccess(latencyNanos);
+            }
+        }
+
+        /**
+         * Server errors, 429 Too Many Requests and failed connections (status 0) count against the Users API,
+         * other client errors were answered in time and count as successes.
+         */
+        void failed(final long latencyNanos, final int statusCode) {
+            if (statusCode == 0 || statusCode == 429 || statusCode >= 500) {
+                if (concurrencyLimiter != null) {
+                    concurrencyLimiter.onDropped(startedNanos);
+                }
+                if (circuitBreaker != null) {
+                    circuitBreaker.onFailure();
+                }
+            } else {
+                if (concurrencyLimiter != null) {
+                    concurrencyLimiter.onIgnored();
+                }
+                if (circuitBreaker != null) {
+                    circuitBreaker.onSuccess(latencyNanos);
+                }
+            }
+        }
+
+        /**
+         * The request failed on this side, for example when a streaming consumer aborted it.
+         */
+        void released() {
+            if (concurrencyLimiter != null) {
+                concurrencyLimiter.onIgnored();
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onIgnored();
+            }
+        }
+    }
+
+    public static final class Builder {
+
+        private AimdConcurrencyLimiter concurrencyLimiter;
+        private Supplier<CircuitBreaker> circuitBreakers;
+
+        private Builder() {
+        }
+
+        public Builder concurrencyLimiter(final AimdConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = concurrencyLimiter;
+            return this;
+        }
+
+        /**
+         * Called once per endpoint, each endpoint getting its own breaker.
+         */
+        public Builder circuitBreakers(final Supplier<CircuitBreaker> circuitBreakers) {
+            this.circuitBreakers = circuitBreakers;
+            return this;
+        }
+
+        public LoadShedder build() {
+            return new LoadShedder(this);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.users.client;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A consumer of streamed users that can hold back the stream until it has room for more. The streams of the
+ * {@link AsyncUsersClient} ask it after each chunk of the response they parsed, and read no further from the
+ * connection while it holds them back; streams read on the calling thread ask after each user, see
+ * {@link #blocking(Consumer)}.
+ */
+public interface PausingConsumer<T> extends Consumer<T> {
+
+    /**
+     * Whether the stream may go on. When it may not, the consumer runs resume once, when it has room again or
+     * is no longer interested, the next value then being refused by throwing.
+     */
+    boolean proceed(Runnable resume);
+
+    /**
+     * Passes on the values the filter accepts, holding back the stream like the consumer when it pauses.
+     */
+    static <T> Consumer<T> filtering(final Consumer<? super T> consumer, final Predicate<? super T> filter) {
+        if (consumer instanceof PausingConsumer) {
+            final PausingConsumer<? super T> pausing = (PausingConsumer<? super T>) consumer;
+            return new PausingConsumer<T>() {
+                @Override
+                public void accept(final T value) {
+                    if (filter.test(value)) {
+                        pausing.accept(value);
+                    }
+                }
+
+                @Override
+                public boolean proceed(final Runnable resume) {
+                    return pausing.proceed(resume);
+                }
+            };
+        }
+        return value -> {
+            if (filter.test(value)) {
+                consumer.accept(value);
+            }
+        };
+    }
+
+    /**
+     * Wraps the consumer of a stream read on the calling thread, blocking it after each value while the
+     * consumer, when it is a pausing one, holds back the stream.
+     */
+    static <T> Consumer<T> blocking(final Consumer<T> consumer) {
+        if (!(consumer instanceof PausingConsumer)) {
+            return consumer;
+        }
+        final PausingConsumer<T> pausing = (PausingConsumer<T>) consumer;
+        final Semaphore resumed = new Semaphore(0);
+        final Runnable resume = resumed::release;
+        return value -> {
+            pausing.accept(value);
+            if (!pausing.proceed(resume)) {
+                try {
+                    resumed.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UserClientException("Interrupted while the consumer was paused", e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package org.users.client;
+
+import org.users.client.metrics.Endpoint;
+
+/**
+ * A request shed by the {@link LoadShedder} before it was sent, the Users API being saturated or failing.
+ */
+public class RequestRejectedException extends UserClientException {
+
+    public enum Reason {
+        CONCURRENCY_LIMIT, CIRCUIT_OPEN
+    }
+
+    private final Endpoint endpoint;
+    private final Reason reason;
+
+    RequestRejectedException(final Endpoint endpoint, final Reason reason) {
+        super("Request to " + endpoint + " rejected: " + reason);
+        this.endpoint = endpoint;
+        this.reason = reason;
+    }
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
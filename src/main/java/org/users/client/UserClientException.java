@@ -7,4 +7,12 @@ public class UserClientException extends RuntimeException {
     UserClientException(String message, final RestClientResponseException e) {
         super(message,e);
     }
+
+    UserClientException(String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+    UserClientException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,49 @@
+package org.users.client;
+
+import org.users.client.model.User;
+
+/**
+ * The outcome of fetching one user of a batch: either the user or the exception that request failed with.
+ */
+public class UserResult {
+
+    private final long id;
+    private final User user;
+    private final UserClientException error;
+
+    private UserResult(final long id, final User user, final UserClientException error) {
+        this.id = id;
+        this.user = user;
+        this.error = error;
+    }
+
+    static UserResult success(final long id, final User user) {
+        return new UserResult(id, user, null);
+    }
+
+    static UserResult failure(final long id, final UserClientException error) {
+        return new UserResult(id, null, error);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @throws UserClientException the failure of the request for this user
+     */
+    public User getUser() {
+        if (error != null) {
+            throw error;
+        }
+        return user;
+    }
+
+    public UserClientException getError() {
+        return error;
+    }
+}
@@ -0,0 +1,59 @@
+package org.users.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.users.client.codec.UserJsonDecoder;
+import org.users.client.model.User;
+
+/**
+ * Reads a JSON array of users token by token, binding and handing over one {@link User} at a time
+ * so that neither the raw body nor the whole array has to be held in memory. Binds with Jackson databind,
+ * or with a {@link UserJsonDecoder} when given one.
+ */
+class UserStreamReader {
+
+    private final ObjectReader userReader;
+    private final UserJsonDecoder decoder;
+
+    UserStreamReader(final ObjectMapper objectMapper) {
+        this.userReader = objectMapper.readerFor(User.class);
+        this.decoder = null;
+    }
+
+    UserStreamReader(final UserJsonDecoder decoder) {
+        this.userReader = null;
+        this.decoder = decoder;
+    }
+
+    void read(final InputStream body, final Consumer<? super User> consumer) throws IOException {
+        if (decoder != null) {
+            try {
+                decoder.read(body, (id, latitude, longitude) -> consumer.accept(new User(id, latitude, longitude)));
+            } catch (JsonProcessingException e) {
+                throw new UserClientException("Error processing response", e);
+            }
+            return;
+        }
+        try (JsonParser parser = userReader.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new UserClientException("Expected a JSON array of users");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                consumer.accept(userReader.readValue(parser));
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new UserClientException("Unexpected token " + token + " in users array");
+            }
+        } catch (JsonProcessingException e) {
+            throw new UserClientException("Error processing response", e);
+        }
+    }
+}
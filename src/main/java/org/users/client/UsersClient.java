@@ -1,71 +1,347 @@
 package org.users.client;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
-import org.springframework.http.HttpEntity;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
+import org.users.client.codec.UserJsonHttpMessageConverter;
+import org.users.client.metrics.Endpoint;
+import org.users.client.metrics.MetricsSink;
 import org.users.client.model.User;
+import org.users.concurrent.Deadline;
+import org.users.concurrent.DeadlineExceededException;
+import org.users.trace.Stage;
+import org.users.trace.StageSpan;
+import org.users.trace.Tracing;
 
 public class UsersClient {
 
     public static final String USER = "/user/";
     public static final String CITY = "/city/";
     public static final String USERS = "/users/";
+
+    /**
+     * Sent with every request: JSON plus the compressed encodings the responses are decoded from.
+     */
+    private static final HttpHeaders REQUEST_HEADERS = requestHeaders();
+    private static final RequestCallback JSON_REQUEST = request -> copyHeaders(REQUEST_HEADERS, request.getHeaders());
+    private static final int MAX_CACHED_CITIES = 1024;
+
     private final String rootContext;
     private final RestTemplate restTemplate;
+    private final UserStreamReader userStreamReader;
+    private final MetricsSink metricsSink;
+    private final LoadShedder loadShedder;
+    private final URI allUsersUri;
+    private final Map<String, URI> cityUris = new ConcurrentHashMap<>();
+    private final ResponseExtractor<ResponseEntity<User[]>> usersExtractor;
+    private final ResponseExtractor<ResponseEntity<User>> userExtractor;
 
     public UsersClient(String rootContext, RestTemplate restTemplate) {
+        this(rootContext, restTemplate, MetricsSink.NONE);
+    }
+
+    /**
+     * @param metricsSink receives the latency, size and outcome of every request
+     */
+    public UsersClient(String rootContext, RestTemplate restTemplate, MetricsSink metricsSink) {
+        this(rootContext, restTemplate, metricsSink, LoadShedder.NONE);
+    }
+
+    /**
+     * @param loadShedder rejects requests with a {@link RequestRejectedException} while the Users API is
+     *                    saturated or failing, see {@link LoadShedder#defaults()}
+     */
+    public UsersClient(String rootContext, RestTemplate restTemplate, MetricsSink metricsSink,
+                       LoadShedder loadShedder) {
         this.rootContext = rootContext;
         this.restTemplate = restTemplate;
+        this.userStreamReader = userStreamReader(restTemplate);
+        this.metricsSink = metricsSink;
+        this.loadShedder = loadShedder;
+        this.allUsersUri = URI.create(rootContext + USERS);
+        this.usersExtractor = restTemplate.responseEntityExtractor(User[].class);
+        this.userExtractor = restTemplate.responseEntityExtractor(User.class);
     }
 
     public List<User> getAllUsers() {
-        final String url = rootContext + USERS;
-        final ResponseEntity<User[]> response;
-        try {
-            response = restTemplate.exchange(url, HttpMethod.GET, getHttpHeaders(), User[].class);
-        } catch (RestClientResponseException e) {
-            throw new UserClientException("Error processing request", e);
-        }
+        final ResponseEntity<User[]> response = exchange(Endpoint.ALL_USERS, allUsersUri, JSON_REQUEST, usersExtractor);
         return Arrays.asList(response.getBody());
     }
 
-    public User getUser(long id) {
-        final String url = rootContext + USER + id;
-        final ResponseEntity<User> response;
-        try {
-            response = restTemplate.exchange(url, HttpMethod.GET, getHttpHeaders(), User.class);
-        } catch (RestClientResponseException e) {
-            throw new UserClientException("Error processing request", e);
+    /**
+     * Revalidates a previous "/users/" response with its ETag and Last-Modified validators, either of which
+     * may be null. Returns empty when the server answers 304 Not Modified.
+     */
+    public Optional<VersionedUsers> getAllUsersIfModified(String eTag, String lastModified) {
+        final RequestCallback conditionalRequest = request -> {
+            final HttpHeaders headers = request.getHeaders();
+            copyHeaders(REQUEST_HEADERS, headers);
+            if (eTag != null) {
+                headers.set(HttpHeaders.IF_NONE_MATCH, eTag);
+            }
+            if (lastModified != null) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+        };
+        final ResponseEntity<User[]> response =
+                exchange(Endpoint.ALL_USERS, allUsersUri, conditionalRequest, usersExtractor);
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+            return Optional.empty();
         }
+        return Optional.of(new VersionedUsers(Arrays.asList(response.getBody()),
+                response.getHeaders().getETag(),
+                response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED)));
+    }
+
+    /**
+     * Streams the users of the "/users/" endpoint to the consumer as they are parsed from the response,
+     * without materializing the whole list. The consumer runs on the calling thread and may abort the
+     * download by throwing.
+     */
+    public void streamAllUsers(Consumer<? super User> consumer) {
+        final Exchange exchange = Exchange.current();
+        final int[] items = new int[1];
+        execute(Endpoint.ALL_USERS, allUsersUri, JSON_REQUEST,
+                response -> {
+                    userStreamReader.read(response.getBody(), user -> {
+                        if (exchange != null) {
+                            exchange.check();
+                        }
+                        items[0]++;
+                        consumer.accept(user);
+                    });
+                    return null;
+                },
+                nothing -> items[0]);
+    }
+
+    /**
+     * Runs {@link #streamAllUsers(Consumer)} on the executor. The download is aborted as soon as a user is
+     * parsed after the deadline or once the returned future is cancelled. With a template of
+     * {@link UsersRestTemplates#pooled()} the request also waits no longer than the deadline for data, and
+     * cancelling drops its connection at once.
+     *
+     * @param deadline bounds the download, null for none
+     */
+    public CompletableFuture<Void> streamAllUsersAsync(Consumer<? super User> consumer, Deadline deadline,
+                                                       Executor executor) {
+        return callAsync(deadline, executor, () -> {
+            streamAllUsers(consumer);
+            return null;
+        });
+    }
+
+    public User getUser(long id) {
+        final URI uri = URI.create(rootContext + USER + id);
+        final ResponseEntity<User> response = exchange(Endpoint.USER, uri, JSON_REQUEST, userExtractor);
         return response.getBody();
     }
 
     public List<User> getUsersByCity(String city) {
-        final String url = rootContext + CITY + city + USERS;
-        final ResponseEntity<User[]> response;
+        final ResponseEntity<User[]> response =
+                exchange(Endpoint.CITY_USERS, cityUri(city), JSON_REQUEST, usersExtractor);
+        return Arrays.asList(response.getBody());
+    }
+
+    /**
+     * Runs {@link #getUsersByCity(String)} on the executor. Only a template of {@link UsersRestTemplates#pooled()}
+     * bounds the request by the deadline and aborts it when the returned future is cancelled, other templates
+     * reading the response until their own timeouts.
+     *
+     * @param deadline bounds the request, null for none
+     */
+    public CompletableFuture<List<User>> getUsersByCityAsync(String city, Deadline deadline, Executor executor) {
+        return callAsync(deadline, executor, () -> getUsersByCity(city));
+    }
+
+    /**
+     * The path of a city's users, the name encoded as a single path segment.
+     */
+    static String cityPath(final String city) {
+        return CITY + URLEncoder.encode(city, StandardCharsets.UTF_8).replace("+", "%20") + USERS;
+    }
+
+    private URI cityUri(final String city) {
+        final URI uri = cityUris.get(city);
+        if (uri != null) {
+            return uri;
+        }
+        if (cityUris.size() >= MAX_CACHED_CITIES) {
+            cityUris.clear();
+        }
+        return cityUris.computeIfAbsent(city, name -> URI.create(rootContext + cityPath(name)));
+    }
+
+    private <T> CompletableFuture<T> callAsync(final Deadline deadline, final Executor executor,
+                                               final Supplier<T> call) {
+        final Exchange exchange = new Exchange(deadline);
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        result.whenComplete((done, failure) -> {
+            if (result.isCancelled()) {
+                exchange.abort();
+            }
+        });
+        executor.execute(() -> {
+            try {
+                exchange.check();
+                result.complete(exchange.run(call));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private <T> ResponseEntity<T> exchange(final Endpoint endpoint, final URI uri, final RequestCallback request,
+                                           final ResponseExtractor<ResponseEntity<T>> extractor) {
+        return execute(endpoint, uri, request, extractor, response -> countItems(response.getBody()));
+    }
+
+    /**
+     * Counts the bytes as they come over the wire, before they are decompressed. Times the
+     * {@link Stage#HTTP_FETCH} until the response head is received, then the {@link Stage#JSON_PARSE} of the
+     * body, ending either stage when the request fails in it. A failed or aborted extraction drops the
+     * connection rather than reading the rest of the body, and a request aborted or past its deadline does not
+     * count as a failure of the Users API.
+     */
+    private <T> T execute(final Endpoint endpoint, final URI uri, final RequestCallback request,
+                          final ResponseExtractor<T> extractor, final ToIntFunction<T> items) {
+        final LoadShedder.Permit permit;
         try {
-            response = restTemplate.exchange(url, HttpMethod.GET, getHttpHeaders(), User[].class);
+            permit = loadShedder.acquire(endpoint);
+        } catch (RequestRejectedException e) {
+            metricsSink.requestRejected(endpoint);
+            throw e;
+        }
+        final Exchange current = Exchange.current();
+        final Exchange exchange = current != null ? current : new Exchange(null);
+        metricsSink.requestStarted(endpoint);
+        final long started = System.nanoTime();
+        final StageSpan fetch = Tracing.start(Stage.HTTP_FETCH);
+        final CountingClientHttpResponse[] counted = new CountingClientHttpResponse[1];
+        final T result;
+        try {
+            result = exchange.run(() -> restTemplate.execute(uri, HttpMethod.GET, request, response -> {
+                fetch.end(endpoint.name(), 0);
+                final StageSpan parse = Tracing.start(Stage.JSON_PARSE);
+                int parsed = 0;
+                try {
+                    counted[0] = new CountingClientHttpResponse(response);
+                    final T extracted = extractor.extractData(new DecompressingClientHttpResponse(counted[0]));
+                    //the parser stops at the closing bracket, a compressed body may have a trailer left to count
+                    counted[0].drain();
+                    parsed = items.applyAsInt(extracted);
+                    return extracted;
+                } catch (IOException | RuntimeException e) {
+                    disconnect(exchange, response);
+                    throw e;
+                } finally {
+                    parse.end(endpoint.name(), parsed);
+                }
+            }));
         } catch (RestClientResponseException e) {
+            fetch.end(endpoint.name(), 0);
+            final long latency = System.nanoTime() - started;
+            permit.failed(latency, e.getRawStatusCode());
+            metricsSink.requestFailed(endpoint, latency, e.getRawStatusCode());
             throw new UserClientException("Error processing request", e);
+        } catch (ResourceAccessException e) {
+            fetch.end(endpoint.name(), 0);
+            final long latency = System.nanoTime() - started;
+            if (exchange.isAborted() || exchange.isExpired()) {
+                permit.released();
+                metricsSink.requestFailed(endpoint, latency, 0);
+                throw exchange.isAborted() ? new CancellationException("Request aborted")
+                        : new DeadlineExceededException("Deadline exceeded", e);
+            }
+            permit.failed(latency, 0);
+            metricsSink.requestFailed(endpoint, latency, 0);
+            throw e;
+        } catch (RuntimeException e) {
+            fetch.end(endpoint.name(), 0);
+            permit.released();
+            metricsSink.requestFailed(endpoint, System.nanoTime() - started, 0);
+            throw e;
         }
-        return Arrays.asList(response.getBody());
+        final long latency = System.nanoTime() - started;
+        permit.succeeded(latency);
+        metricsSink.requestSucceeded(endpoint, latency, counted[0] == null ? 0 : counted[0].getBytesRead(),
+                items.applyAsInt(result));
+        return result;
     }
 
-    private HttpEntity<String> getHttpHeaders() {
-        HttpHeaders headers = new HttpHeaders();
+    /**
+     * Closing the response would read the rest of the body to keep the connection, so the connection is dropped
+     * first: through the request factory, or by closing the raw body, which the JDK connection gives up on
+     * rather than waiting for the rest.
+     */
+    private static void disconnect(final Exchange exchange, final ClientHttpResponse response) {
+        if (exchange.disconnect()) {
+            return;
+        }
+        try {
+            response.getBody().close();
+        } catch (IOException e) {
+            //the connection is dropped either way
+        }
+    }
+
+    private static int countItems(final Object body) {
+        if (body == null) {
+            return 0;
+        }
+        return body instanceof Object[] ? ((Object[]) body).length : 1;
+    }
+
+    /**
+     * Streams with the decoder of a registered {@link UserJsonHttpMessageConverter}, so that every endpoint
+     * decodes alike, otherwise with Jackson databind.
+     */
+    private static UserStreamReader userStreamReader(final RestTemplate restTemplate) {
+        for (HttpMessageConverter<?> converter : restTemplate.getMessageConverters()) {
+            if (converter instanceof UserJsonHttpMessageConverter) {
+                return new UserStreamReader(((UserJsonHttpMessageConverter) converter).getDecoder());
+            }
+        }
+        return new UserStreamReader(new ObjectMapper());
+    }
+
+    private static HttpHeaders requestHeaders() {
+        final HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
-        List<MediaType> mediaTypes = new ArrayList<>();
-        mediaTypes.add(MediaType.APPLICATION_JSON);
-        headers.setAccept(mediaTypes);
-        return new HttpEntity<>(headers);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        headers.set(HttpHeaders.ACCEPT_ENCODING, DecompressingClientHttpResponse.ACCEPTED_ENCODINGS);
+        return HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+
+    private static void copyHeaders(final HttpHeaders from, final HttpHeaders to) {
+        from.forEach(to::addAll);
     }
 
 }
@@ -0,0 +1,125 @@
+package org.users.client;
+
+import java.net.URI;
+import java.time.Duration;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import org.users.client.codec.UserJsonHttpMessageConverter;
+
+/**
+ * {@link RestTemplate}s tuned for {@link UsersClient}, backed by a pool of keep-alive connections so that
+ * requests after the first skip the TCP handshake. Needs the optional Apache HttpClient dependency on the
+ * classpath. A template holds its pool for as long as it lives, so share one per application. The requests of
+ * calls bounded by a deadline wait no longer than what is left of it for a connection or data, and aborting
+ * such a call drops its connection instead of reading the rest of the response.
+ */
+public final class UsersRestTemplates {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Pooled connections idle for longer are checked before being reused, in case the server closed them.
+     */
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2_000;
+
+    private UsersRestTemplates() {
+    }
+
+    public static RestTemplate pooled() {
+        return pooled(DEFAULT_MAX_CONNECTIONS, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * @param maxConnections the most connections open at once, callers beyond it wait up to the connect timeout
+     *                       for one to be released
+     */
+    public static RestTemplate pooled(final int maxConnections, final Duration connectTimeout,
+                                      final Duration readTimeout) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("Invalid max connections " + maxConnections);
+        }
+        final PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(maxConnections);
+        connections.setDefaultMaxPerRoute(maxConnections);
+        connections.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        final RequestConfig defaults = RequestConfig.custom()
+                .setConnectTimeout(Math.toIntExact(connectTimeout.toMillis()))
+                .setConnectionRequestTimeout(Math.toIntExact(connectTimeout.toMillis()))
+                .setSocketTimeout(Math.toIntExact(readTimeout.toMillis()))
+                .build();
+        final CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connections)
+                .setDefaultRequestConfig(defaults)
+                //UsersClient negotiates the encoding itself, to count the compressed bytes
+                .disableContentCompression()
+                .disableCookieManagement()
+                .disableAuthCaching()
+                .build();
+        return new RestTemplate(new ExchangeRequestFactory(httpClient, defaults));
+    }
+
+    /**
+     * Registers a {@link UserJsonHttpMessageConverter} ahead of the other converters, so that users are decoded
+     * without Jackson databind. Call it before creating the {@link UsersClient}. Needs no Apache HttpClient.
+     */
+    public static RestTemplate withUserCodec(final RestTemplate restTemplate) {
+        restTemplate.getMessageConverters().add(0, new UserJsonHttpMessageConverter());
+        return restTemplate;
+    }
+
+    /**
+     * Registers the abort of every request with the {@link Exchange} of its call, and caps the timeouts of the
+     * requests of a call with a deadline by the time left.
+     */
+    private static final class ExchangeRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+        private final RequestConfig defaults;
+
+        private ExchangeRequestFactory(final CloseableHttpClient httpClient, final RequestConfig defaults) {
+            super(httpClient);
+            this.defaults = defaults;
+        }
+
+        @Override
+        protected HttpUriRequest createHttpUriRequest(final HttpMethod httpMethod, final URI uri) {
+            final HttpUriRequest request = super.createHttpUriRequest(httpMethod, uri);
+            final Exchange exchange = Exchange.current();
+            if (exchange != null) {
+                exchange.onAbort(request::abort);
+            }
+            return request;
+        }
+
+        @Override
+        protected HttpContext createHttpContext(final HttpMethod httpMethod, final URI uri) {
+            final Exchange exchange = Exchange.current();
+            if (exchange == null || exchange.getDeadline() == null) {
+                return null;
+            }
+            //HttpClient takes a timeout of 0 as none at all
+            final long remaining = Math.max(1, exchange.getDeadline().remaining().toMillis());
+            final HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.copy(defaults)
+                    .setConnectTimeout(cap(defaults.getConnectTimeout(), remaining))
+                    .setConnectionRequestTimeout(cap(defaults.getConnectionRequestTimeout(), remaining))
+                    .setSocketTimeout(cap(defaults.getSocketTimeout(), remaining))
+                    .build());
+            return context;
+        }
+
+        private static int cap(final int timeoutMillis, final long remainingMillis) {
+            return (int) Math.min(timeoutMillis <= 0 ? Integer.MAX_VALUE : timeoutMillis, remainingMillis);
+        }
+    }
+}
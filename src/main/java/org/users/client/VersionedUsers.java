@@ -0,0 +1,34 @@
+package org.users.client;
+
+import java.util.List;
+
+import org.users.client.model.User;
+
+/**
+ * The users returned by the "/users/" endpoint together with the validators the server sent for them,
+ * which may be null when the server does not support conditional requests.
+ */
+public class VersionedUsers {
+
+    private final List<User> users;
+    private final String eTag;
+    private final String lastModified;
+
+    public VersionedUsers(final List<User> users, final String eTag, final String lastModified) {
+        this.users = users;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,194 @@
+package org.users.client.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.users.client.model.User;
+
+/**
+ * A hand-written decoder of the users JSON on the Jackson streaming parser, without databind. Only "id",
+ * "latitude" and "longitude" are decoded; any other field is skipped, its value never being converted or
+ * bound to a tree. The fields of each user go to a {@link Visitor} as primitives, so that a caller collecting
+ * columns allocates nothing per user. Coordinates of up to 15 significant digits, as the Users API sends
+ * them, are parsed from the parser's buffer without the String and the big number arithmetic of
+ * {@link Double#parseDouble}. Numbers may be quoted as Jackson accepts them; a null or missing coordinate is
+ * NaN, the user then having no location.
+ */
+public final class UserJsonDecoder {
+
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Receives the fields of every decoded user, on the decoding thread.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        void user(long id, double latitude, double longitude);
+    }
+
+    private final JsonFactory jsonFactory;
+
+    public UserJsonDecoder() {
+        this(new JsonFactory());
+    }
+
+    public UserJsonDecoder(final JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Decodes a JSON array of users, one visit per user in the order of the array.
+     */
+    public void read(final InputStream body, final Visitor visitor) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON array of users");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                readFields(parser, visitor);
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Unexpected token " + token + " in users array");
+            }
+        }
+    }
+
+    public User[] readArray(final InputStream body) throws IOException {
+        final List<User> users = new ArrayList<>();
+        read(body, (id, latitude, longitude) -> users.add(new User(id, latitude, longitude)));
+        return users.toArray(new User[0]);
+    }
+
+    /**
+     * Decodes a single JSON user object.
+     */
+    public User readUser(final InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON user");
+            }
+            final User[] user = new User[1];
+            readFields(parser, (id, latitude, longitude) -> user[0] = new User(id, latitude, longitude));
+            return user[0];
+        }
+    }
+
+    private static void readFields(final JsonParser parser, final Visitor visitor) throws IOException {
+        long id = 0;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            final JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id":
+                    id = longValue(parser, value);
+                    break;
+                case "latitude":
+                    latitude = doubleValue(parser, value);
+                    break;
+                case "longitude":
+                    longitude = doubleValue(parser, value);
+                    break;
+                default:
+                    //leaves a nested object or array without reading into it, no-op on a scalar
+                    parser.skipChildren();
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Unexpected token " + parser.currentToken() + " in user");
+        }
+        visitor.user(id, latitude, longitude);
+    }
+
+    private static long longValue(final JsonParser parser, final JsonToken value) throws IOException {
+        switch (value) {
+            case VALUE_NUMBER_INT:
+                return parser.getLongValue();
+            case VALUE_NULL:
+                return 0;
+            case VALUE_STRING:
+                try {
+                    return Long.parseLong(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(parser, "Invalid id \"" + parser.getText() + "\"", e);
+                }
+            default:
+                throw new JsonParseException(parser, "Unexpected " + value + " for the id");
+        }
+    }
+
+    private static double doubleValue(final JsonParser parser, final JsonToken value) throws IOException {
+        switch (value) {
+            case VALUE_NUMBER_FLOAT:
+                final double exact = parseDecimal(parser.getTextCharacters(), parser.getTextOffset(),
+                        parser.getTextLength());
+                return Double.isNaN(exact) ? parser.getDoubleValue() : exact;
+            case VALUE_NUMBER_INT:
+                return parser.getDoubleValue();
+            case VALUE_NULL:
+                return Double.NaN;
+            case VALUE_STRING:
+                try {
+                    return Double.parseDouble(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(parser, "Invalid coordinate \"" + parser.getText() + "\"", e);
+                }
+            default:
+                throw new JsonParseException(parser, "Unexpected " + value + " for a coordinate");
+        }
+    }
+
+    /**
+     * Parses a plain decimal whose significant digits fit in a long below 2^53 and whose scale is at most 22.
+     * Both the digits and the power of ten are then exact doubles, so their quotient is correctly rounded. Returns
+     * NaN for any other number, which {@link Double#parseDouble} is left to parse.
+     */
+    static double parseDecimal(final char[] chars, final int offset, final int length) {
+        final int end = offset + length;
+        int i = offset;
+        final boolean negative = i < end && chars[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long digits = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            final char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                if (digits != 0 || c != '0') {
+                    if (++significant > MAX_EXACT_DIGITS) {
+                        return Double.NaN;
+                    }
+                    digits = digits * 10 + (c - '0');
+                }
+                if (fraction) {
+                    scale++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (scale >= POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+        final double value = digits / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+}
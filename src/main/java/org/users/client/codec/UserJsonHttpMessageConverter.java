@@ -0,0 +1,61 @@
+package org.users.client.codec;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.users.client.model.User;
+
+/**
+ * Reads {@code User} and {@code User[]} JSON bodies with a {@link UserJsonDecoder} instead of Jackson databind.
+ * Registered ahead of the other converters of a RestTemplate, it also makes
+ * {@link org.users.client.UsersClient} stream users through the decoder, see
+ * {@link org.users.client.UsersRestTemplates#withUserCodec}. It cannot write.
+ */
+public class UserJsonHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private final UserJsonDecoder decoder;
+
+    public UserJsonHttpMessageConverter() {
+        this(new UserJsonDecoder());
+    }
+
+    public UserJsonHttpMessageConverter(final UserJsonDecoder decoder) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.decoder = decoder;
+    }
+
+    public UserJsonDecoder getDecoder() {
+        return decoder;
+    }
+
+    @Override
+    protected boolean supports(final Class<?> clazz) {
+        return clazz == User[].class || clazz == User.class;
+    }
+
+    @Override
+    public boolean canWrite(final Class<?> clazz, final MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(final Class<?> clazz, final HttpInputMessage inputMessage) throws IOException {
+        try {
+            return clazz == User.class ? decoder.readUser(inputMessage.getBody())
+                    : decoder.readArray(inputMessage.getBody());
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Invalid users JSON: " + e.getOriginalMessage(), e,
+                    inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(final Object users, final HttpOutputMessage outputMessage) {
+        throw new UnsupportedOperationException("Users are only read");
+    }
+}
@@ -0,0 +1,44 @@
+package org.users.client.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * An in-memory {@link MetricsSink} keeping latency histograms, throughput, error and in-flight counters per
+ * endpoint, to be read or exported periodically.
+ */
+public class ClientMetrics implements MetricsSink {
+
+    private final Map<Endpoint, EndpointMetrics> endpoints = new EnumMap<>(Endpoint.class);
+
+    public ClientMetrics() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            endpoints.put(endpoint, new EndpointMetrics());
+        }
+    }
+
+    public EndpointMetrics get(final Endpoint endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    @Override
+    public void requestStarted(final Endpoint endpoint) {
+        endpoints.get(endpoint).started();
+    }
+
+    @Override
+    public void requestSucceeded(final Endpoint endpoint, final long latencyNanos, final long responseBytes,
+                                 final int items) {
+        endpoints.get(endpoint).succeeded(latencyNanos, responseBytes, items);
+    }
+
+    @Override
+    public void requestFailed(final Endpoint endpoint, final long latencyNanos, final int statusCode) {
+        endpoints.get(endpoint).failed(latencyNanos, statusCode);
+    }
+
+    @Override
+    public void requestRejected(final Endpoint endpoint) {
+        endpoints.get(endpoint).rejected();
+    }
+}
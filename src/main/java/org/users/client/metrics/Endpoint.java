@@ -0,0 +1,18 @@
+package org.users.client.metrics;
+
+public enum Endpoint {
+
+    ALL_USERS("/users/"),
+    USER("/user/{id}"),
+    CITY_USERS("/city/{city}/users/");
+
+    private final String path;
+
+    Endpoint(final String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,89 @@
+package org.users.client.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of one endpoint in {@link ClientMetrics}.
+ */
+public class EndpointMetrics {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder otherErrors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    void started() {
+        inFlight.incrementAndGet();
+    }
+
+    void succeeded(final long latencyNanos, final long bytes, final int count) {
+        inFlight.decrementAndGet();
+        latency.record(latencyNanos);
+        succeeded.increment();
+        responseBytes.add(bytes);
+        items.add(count);
+    }
+
+    void failed(final long latencyNanos, final int statusCode) {
+        inFlight.decrementAndGet();
+        latency.record(latencyNanos);
+        if (statusCode >= 400 && statusCode < 500) {
+            clientErrors.increment();
+        } else if (statusCode >= 500 && statusCode < 600) {
+            serverErrors.increment();
+        } else {
+            otherErrors.increment();
+        }
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    /** Latency in nanoseconds of every completed request, failed ones included. */
+    public LatencyHistogram.Snapshot getLatency() {
+        return latency.snapshot();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getSucceeded() {
+        return succeeded.sum();
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    public long getItems() {
+        return items.sum();
+    }
+
+    /** Requests answered with a 4xx status. */
+    public long getClientErrors() {
+        return clientErrors.sum();
+    }
+
+    /** Requests answered with a 5xx status. */
+    public long getServerErrors() {
+        return serverErrors.sum();
+    }
+
+    /** Requests that failed without a 4xx or 5xx status, such as I/O errors and unreadable bodies. */
+    public long getOtherErrors() {
+        return otherErrors.sum();
+    }
+
+    /** Requests shed by the load shedder without being sent. */
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,42 @@
+package org.users.client.metrics;
+
+/**
+ * Receives one event per request made by the client. Implementations are called on the request threads and
+ * must be thread-safe and cheap.
+ */
+public interface MetricsSink {
+
+    MetricsSink NONE = new MetricsSink() {
+        @Override
+        public void requestStarted(final Endpoint endpoint) {
+        }
+
+        @Override
+        public void requestSucceeded(final Endpoint endpoint, final long latencyNanos, final long responseBytes,
+                                     final int items) {
+        }
+
+        @Override
+        public void requestFailed(final Endpoint endpoint, final long latencyNanos, final int statusCode) {
+        }
+    };
+
+    void requestStarted(Endpoint endpoint);
+
+    /**
+     * @param responseBytes bytes of the response body as read from the connection
+     * @param items         users in the response
+     */
+    void requestSucceeded(Endpoint endpoint, long latencyNanos, long responseBytes, int items);
+
+    /**
+     * @param statusCode the HTTP status of the response, 0 when no response was received or it could not be read
+     */
+    void requestFailed(Endpoint endpoint, long latencyNanos, int statusCode);
+
+    /**
+     * A request shed before it was sent, no other event is received for it.
+     */
+    default void requestRejected(Endpoint endpoint) {
+    }
+}
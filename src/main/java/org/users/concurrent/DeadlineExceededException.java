@@ -0,0 +1,12 @@
+package org.users.concurrent;
+
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(final String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,136 @@
+package org.users.concurrent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A dedicated executor for the blocking legs of area queries, keeping them off
+ * {@link java.util.concurrent.ForkJoinPool#commonPool()}, with saturation metrics to size it under load.
+ * Either a bounded pool of platform threads in front of a bounded queue, or one virtual thread per task on
+ * JDKs that support them.
+ */
+public class QueryExecutor implements Executor, AutoCloseable {
+
+    public enum RejectionPolicy {
+        /** Fail the submission with a {@link RejectedExecutionException}, shedding the query. */
+        ABORT,
+        /** Run the task on the submitting thread, slowing the caller down. */
+        CALLER_RUNS
+    }
+
+    private final ExecutorService delegate;
+    private final ThreadPoolExecutor pool;
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder rejectedTasks;
+
+    private QueryExecutor(final ExecutorService delegate, final ThreadPoolExecutor pool, final LongAdder rejectedTasks) {
+        this.delegate = delegate;
+        this.pool = pool;
+        this.rejectedTasks = rejectedTasks;
+    }
+
+    /**
+     * A pool of {@code threads} platform threads that queues up to {@code queueCapacity} tasks before applying
+     * the rejection policy.
+     */
+    public static QueryExecutor bounded(final String name, final int threads, final int queueCapacity,
+                                        final RejectionPolicy rejectionPolicy) {
+        final RejectedExecutionHandler handler = rejectionPolicy == RejectionPolicy.CALLER_RUNS
+                ? new ThreadPoolExecutor.CallerRunsPolicy()
+                : new ThreadPoolExecutor.AbortPolicy();
+        final LongAdder rejectedTasks = new LongAdder();
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads(name), (task, rejectedBy) -> {
+                    rejectedTasks.increment();
+                    handler.rejectedExecution(task, rejectedBy);
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return new QueryExecutor(pool, pool, rejectedTasks);
+    }
+
+    /**
+     * Starts a virtual thread per task, so blocking calls do not tie up platform threads.
+     *
+     * @throws UnsupportedOperationException on JDKs without virtual threads
+     */
+    public static QueryExecutor virtualThreads() {
+        try {
+            final ExecutorService executorService = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            return new QueryExecutor(executorService, null, new LongAdder());
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later", e);
+        }
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        delegate.execute(() -> {
+            activeTasks.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                activeTasks.decrementAndGet();
+                completedTasks.increment();
+            }
+        });
+    }
+
+    /** Tasks waiting for a thread, always 0 for virtual threads. */
+    public int getQueueDepth() {
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    /** Tasks currently running, including those run by submitting threads. */
+    public int getActiveTasks() {
+        return activeTasks.get();
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks.sum();
+    }
+
+    /** Submissions the rejection policy was applied to. */
+    public long getRejectedTasks() {
+        return rejectedTasks.sum();
+    }
+
+    /** Platform threads currently in the pool, 0 for virtual threads. */
+    public int getPoolSize() {
+        return pool == null ? 0 : pool.getPoolSize();
+    }
+
+    @Override
+    public void close() {
+        delegate.shutdown();
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
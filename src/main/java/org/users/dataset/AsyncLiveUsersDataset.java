@@ -0,0 +1,125 @@
+package org.users.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import org.users.client.AsyncUsersClient;
+import org.users.client.PausingConsumer;
+import org.users.client.model.User;
+import org.users.concurrent.Deadline;
+import org.users.concurrent.DeadlineExceededException;
+import org.users.geo.GeoCircle;
+
+/**
+ * Queries the "/users/" endpoint on every call through the {@link AsyncUsersClient}, filtering users while
+ * the response streams in without holding a thread.
+ */
+public class AsyncLiveUsersDataset implements UsersDataset {
+
+    private final AsyncUsersClient asyncUsersClient;
+
+    public AsyncLiveUsersDataset(final AsyncUsersClient asyncUsersClient) {
+        this.asyncUsersClient = asyncUsersClient;
+    }
+
+    @Override
+    public List<User> findWithin(final GeoCircle circle) {
+        return join(findWithinAsync(circle));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findWithinAsync(final GeoCircle circle) {
+        final List<User> within = new ArrayList<>();
+        return asyncUsersClient.streamAllUsersAsync(user -> {
+            if (circle.contains(user.getLatitude(), user.getLongitude())) {
+                within.add(user);
+            }
+        }).thenApply(done -> within);
+    }
+
+    @Override
+    public CompletableFuture<Void> streamWithinAsync(final GeoCircle circle, final Consumer<? super User> consumer) {
+        return asyncUsersClient.streamAllUsersAsync(PausingConsumer.filtering(consumer,
+                user -> circle.contains(user.getLatitude(), user.getLongitude())));
+    }
+
+    @Override
+    public List<User> findNearest(final GeoCircle circle, final int k) {
+        return join(findNearestAsync(circle, k));
+    }
+
+    /**
+     * Keeps only the k nearest users while the response streams in.
+     */
+    @Override
+    public CompletableFuture<List<User>> findNearestAsync(final GeoCircle circle, final int k) {
+        final NearestUsers nearest = new NearestUsers(circle, k);
+        return asyncUsersClient.streamAllUsersAsync(nearest).thenApply(done -> nearest.getNearest());
+    }
+
+    /**
+     * Downloads the users once for all the circles.
+     */
+    @Override
+    public List<List<User>> findWithinEach(final List<GeoCircle> circles) {
+        return join(findWithinEachAsync(circles));
+    }
+
+    @Override
+    public CompletableFuture<List<List<User>>> findWithinEachAsync(final List<GeoCircle> circles) {
+        final CirclesFilter filter = new CirclesFilter(circles);
+        return asyncUsersClient.streamAllUsersAsync(filter).thenApply(done -> filter.getWithin());
+    }
+
+    /**
+     * Bounds the request by the remaining budget and stops reading the response once the returned future is
+     * cancelled.
+     */
+    @Override
+    public CompletableFuture<List<User>> findWithinAsync(final GeoCircle circle, final Deadline deadline) {
+        if (deadline.isExpired()) {
+            return CompletableFuture.failedFuture(new DeadlineExceededException("Deadline exceeded"));
+        }
+        final CompletableFuture<List<User>> result = new CompletableFuture<>();
+        final List<User> within = new ArrayList<>();
+        final CompletableFuture<Void> download = asyncUsersClient.streamAllUsersAsync(user -> {
+            if (result.isDone()) {
+                throw new CancellationException("Query cancelled");
+            }
+            if (circle.contains(user.getLatitude(), user.getLongitude())) {
+                within.add(user);
+            }
+        }, deadline.remaining());
+        download.whenComplete((done, failure) -> {
+            if (failure == null) {
+                result.complete(within);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        });
+        result.whenComplete((done, failure) -> {
+            if (result.isCancelled()) {
+                download.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Waits for the result, rethrowing the unchecked exception it failed with as is.
+     */
+    private static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
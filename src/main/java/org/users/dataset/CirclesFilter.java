@@ -0,0 +1,41 @@
+package org.users.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.users.client.model.User;
+import org.users.geo.GeoCircle;
+
+/**
+ * Sorts the users of a single pass into the circles containing them, for datasets that have to visit every user.
+ */
+final class CirclesFilter implements Consumer<User> {
+
+    private final GeoCircle[] circles;
+    private final List<List<User>> within;
+
+    CirclesFilter(final List<GeoCircle> circles) {
+        this.circles = circles.toArray(new GeoCircle[0]);
+        this.within = new ArrayList<>(circles.size());
+        for (int i = 0; i < this.circles.length; i++) {
+            within.add(new ArrayList<>());
+        }
+    }
+
+    @Override
+    public void accept(final User user) {
+        if (!user.hasLocation()) {
+            return;
+        }
+        for (int i = 0; i < circles.length; i++) {
+            if (circles[i].contains(user.getLatitude(), user.getLongitude())) {
+                within.get(i).add(user);
+            }
+        }
+    }
+
+    List<List<User>> getWithin() {
+        return within;
+    }
+}
@@ -0,0 +1,211 @@
+package org.users.dataset;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import org.users.client.UsersClient;
+import org.users.client.model.User;
+import org.users.geo.GeoCircle;
+import org.users.geo.GeoGridIndex;
+import org.users.trace.Stage;
+import org.users.trace.StageSpan;
+import org.users.trace.Tracing;
+
+/**
+ * An immutable set of users held as primitive id, latitude and longitude columns behind a {@link GeoGridIndex}.
+ * Unlike {@link IndexedUsersDataset} it keeps no {@link User} objects: a query works on positions in the columns
+ * and only the users it returns are created. The columns are held in the cell order of the index, which shares
+ * them, so the coordinates are kept once; the positions of the users are not the order they were added in.
+ */
+public class ColumnarUsersDataset implements UsersDataset {
+
+    private final long[] ids;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final GeoGridIndex index;
+    private final int nearestParallelism;
+
+    /**
+     * Takes columns in the cell order of the index.
+     */
+    private ColumnarUsersDataset(final long[] ids, final double[] latitudes, final double[] longitudes,
+                                 final double cellDegrees, final int nearestParallelism) {
+        this.ids = ids;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.index = GeoGridIndex.ofCellOrdered(latitudes, longitudes, ids.length, cellDegrees);
+        this.nearestParallelism = nearestParallelism;
+    }
+
+    /**
+     * Streams the "/users/" endpoint into the columns, no user being kept past its parsing.
+     */
+    public static ColumnarUsersDataset load(final UsersClient usersClient) {
+        final Builder builder = builder();
+        usersClient.streamAllUsers(builder);
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Shares columns already in the {@link GeoGridIndex#cellOrder(double[], double[], int, double)} of the cell
+     * size, such as those saved by a {@link org.users.cache.UsersSnapshotFile}, without copying or sorting them.
+     *
+     * @throws IllegalArgumentException when the columns differ in length or are not in cell order
+     */
+    public static ColumnarUsersDataset ofCellOrdered(final long[] ids, final double[] latitudes,
+                                                     final double[] longitudes, final double cellDegrees) {
+        if (latitudes.length != ids.length || longitudes.length != ids.length) {
+            throw new IllegalArgumentException("Columns of " + ids.length + " ids, " + latitudes.length
+                    + " latitudes and " + longitudes.length + " longitudes");
+        }
+        return new ColumnarUsersDataset(ids, latitudes, longitudes, cellDegrees, 1);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long getId(final int position) {
+        return ids[position];
+    }
+
+    public double getLatitude(final int position) {
+        return latitudes[position];
+    }
+
+    public double getLongitude(final int position) {
+        return longitudes[position];
+    }
+
+    /**
+     * The users in the order of the columns, each one created when it is read.
+     */
+    public List<User> getUsers() {
+        return new AbstractList<User>() {
+            @Override
+            public User get(final int position) {
+                return new User(ids[position], latitudes[position], longitudes[position]);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    /**
+     * Passes the position of every user inside the circle to the consumer, in no particular order.
+     */
+    public void forEachWithin(final GeoCircle circle, final IntConsumer consumer) {
+        index.forEachWithin(circle, consumer);
+    }
+
+    public int countWithin(final GeoCircle circle) {
+        final int[] count = new int[1];
+        index.forEachWithin(circle, position -> count[0]++);
+        return count[0];
+    }
+
+    @Override
+    public List<User> findWithin(final GeoCircle circle) {
+        final StageSpan filter = Tracing.start(Stage.VICINITY_FILTER);
+        final List<User> within = new ArrayList<>();
+        index.forEachWithin(circle, position -> within.add(new User(ids[position], latitudes[position],
+                longitudes[position])));
+        filter.end(null, within.size());
+        return within;
+    }
+
+    /**
+     * Selects positions in the columns, only the k users returned being created.
+     */
+    @Override
+    public List<User> findNearest(final GeoCircle circle, final int k) {
+        final int[] positions = index.findNearest(circle, k, nearestParallelism);
+        final List<User> nearest = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            nearest.add(new User(ids[position], latitudes[position], longitudes[position]));
+        }
+        return nearest;
+    }
+
+    /**
+     * Appends users to growing columns. As a {@link Consumer} it can be passed straight to
+     * {@link UsersClient#streamAllUsers(Consumer)}.
+     */
+    public static final class Builder implements Consumer<User> {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private double[] latitudes = new double[INITIAL_CAPACITY];
+        private double[] longitudes = new double[INITIAL_CAPACITY];
+        private int size;
+        private int nearestParallelism = 1;
+
+        private Builder() {
+        }
+
+        /**
+         * Splits each {@link #findNearest(GeoCircle, int)} into this many fork join tasks, by default 1. Worth it
+         * when a circle holds hundreds of thousands of users.
+         */
+        public Builder nearestParallelism(final int nearestParallelism) {
+            if (nearestParallelism < 1) {
+                throw new IllegalArgumentException("Invalid parallelism " + nearestParallelism);
+            }
+            this.nearestParallelism = nearestParallelism;
+            return this;
+        }
+
+        @Override
+        public void accept(final User user) {
+            add(user.getId(), user.getLatitude(), user.getLongitude());
+        }
+
+        public Builder add(final long id, final double latitude, final double longitude) {
+            if (size == ids.length) {
+                final int capacity = ids.length + (ids.length >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+            }
+            ids[size] = id;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+            return this;
+        }
+
+        public ColumnarUsersDataset build() {
+            return build(GeoGridIndex.DEFAULT_CELL_DEGREES);
+        }
+
+        /**
+         * Copies the columns once, in the cell order of the index.
+         */
+        public ColumnarUsersDataset build(final double cellDegrees) {
+            final int[] order = GeoGridIndex.cellOrder(latitudes, longitudes, size, cellDegrees);
+            final long[] orderedIds = new long[size];
+            final double[] orderedLatitudes = new double[size];
+            final double[] orderedLongitudes = new double[size];
+            for (int i = 0; i < size; i++) {
+                final int position = order[i];
+                orderedIds[i] = ids[position];
+                orderedLatitudes[i] = latitudes[position];
+                orderedLongitudes[i] = longitudes[position];
+            }
+            return new ColumnarUsersDataset(orderedIds, orderedLatitudes, orderedLongitudes, cellDegrees,
+                    nearestParallelism);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package org.users.dataset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.users.client.model.User;
+import org.users.geo.GeoCircle;
+import org.users.geo.GeoGridIndex;
+import org.users.trace.Stage;
+import org.users.trace.StageSpan;
+import org.users.trace.Tracing;
+
+/**
+ * An in-memory dataset kept up to date by diffing each new "/users/" snapshot against the current one by id.
+ * Users are split into coarse latitude/longitude segments, each immutable behind its own {@link GeoGridIndex}.
+ * A sync only rebuilds the segments its inserts, updates and deletes touch. It then publishes a new version
+ * sharing the untouched segments, so readers always query one consistent version without locking.
+ */
+public class DeltaSyncedUsersDataset implements UsersDataset {
+
+    public static final double DEFAULT_SEGMENT_DEGREES = 10;
+
+    private final double segmentDegrees;
+    private final int segmentColumns;
+    private final int segmentRows;
+
+    private volatile Version version = new Version(Collections.emptyMap(), 0);
+
+    //guarded by this, the users of the current version by id
+    private UserIdSet current = new UserIdSet();
+    private long syncs;
+    private long inserted;
+    private long updated;
+    private long deleted;
+    private long applyNanos;
+    private UsersDelta lastDelta = new UsersDelta(0, 0, 0, 0, 0);
+
+    public DeltaSyncedUsersDataset() {
+        this(DEFAULT_SEGMENT_DEGREES);
+    }
+
+    /**
+     * @param segmentDegrees edge length of a segment in degrees, smaller segments make a sync rebuild less
+     */
+    public DeltaSyncedUsersDataset(final double segmentDegrees) {
+        if (!(segmentDegrees > 0 && segmentDegrees <= 90)) {
+            throw new IllegalArgumentException("Invalid segment size " + segmentDegrees);
+        }
+        this.segmentDegrees = segmentDegrees;
+        this.segmentRows = (int) Math.ceil(180 / segmentDegrees);
+        this.segmentColumns = (int) Math.ceil(360 / segmentDegrees);
+    }
+
+    /**
+     * Makes the dataset hold the given users, the first one winning for a repeated id.
+     *
+     * @return what the snapshot changed
+     */
+    public synchronized UsersDelta sync(final List<User> users) {
+        final long start = System.nanoTime();
+        final UserIdSet next = new UserIdSet(users.size());
+        final Map<Integer, UserIdSet> removed = new HashMap<>();
+        final Map<Integer, List<User>> added = new HashMap<>();
+        int insertedNow = 0;
+        int updatedNow = 0;
+        int deletedNow = 0;
+        for (User user : users) {
+            if (next.containsId(user.getId())) {
+                continue;
+            }
+            final User previous = current.get(user.getId());
+            if (previous == null) {
+                next.add(user);
+                add(added, user);
+                insertedNow++;
+            } else if (sameLocation(previous, user)) {
+                next.add(previous);
+            } else {
+                next.add(user);
+                remove(removed, previous);
+                add(added, user);
+                updatedNow++;
+            }
+        }
+        for (User previous : current.asSet()) {
+            if (!next.containsId(previous.getId())) {
+                remove(removed, previous);
+                deletedNow++;
+            }
+        }
+
+        final Map<Integer, Segment> segments = new HashMap<>(version.segments);
+        final List<Integer> touched = new ArrayList<>(removed.keySet());
+        added.keySet().stream().filter(key -> !removed.containsKey(key)).forEach(touched::add);
+        for (Integer key : touched) {
+            final Segment segment = rebuild(segments.get(key), removed.get(key), added.get(key));
+            if (segment == null) {
+                segments.remove(key);
+            } else {
+                segments.put(key, segment);
+            }
+        }
+        if (!touched.isEmpty() || next.size() != current.size()) {
+            version = new Version(segments, next.size());
+        }
+        current = next;
+
+        final long nanos = System.nanoTime() - start;
+        syncs++;
+        inserted += insertedNow;
+        updated += updatedNow;
+        deleted += deletedNow;
+        applyNanos += nanos;
+        lastDelta = new UsersDelta(insertedNow, updatedNow, deletedNow, touched.size(), nanos);
+        return lastDelta;
+    }
+
+    /**
+     * The number of users, including those without a location.
+     */
+    public int size() {
+        return version.size;
+    }
+
+    @Override
+    public List<User> findWithin(final GeoCircle circle) {
+        final StageSpan filter = Tracing.start(Stage.VICINITY_FILTER);
+        final List<User> within = new ArrayList<>();
+        for (Segment segment : version.segments.values()) {
+            if (segment.intersects(circle)) {
+                segment.index.forEachWithin(circle, position -> within.add(segment.users[position]));
+            }
+        }
+        filter.end(null, within.size());
+        return within;
+    }
+
+    /**
+     * Selects over the segments the circle intersects, holding only the k nearest users.
+     */
+    @Override
+    public List<User> findNearest(final GeoCircle circle, final int k) {
+        final NearestUsers nearest = new NearestUsers(circle, k);
+        for (Segment segment : version.segments.values()) {
+            if (segment.intersects(circle)) {
+                segment.index.forEachWithin(circle, position -> nearest.accept(segment.users[position]));
+            }
+        }
+        return nearest.getNearest();
+    }
+
+    public synchronized SyncStats getStats() {
+        return new SyncStats(syncs, inserted, updated, deleted, applyNanos, lastDelta);
+    }
+
+    private void add(final Map<Integer, List<User>> added, final User user) {
+        if (user.hasLocation()) {
+            added.computeIfAbsent(segmentOf(user), key -> new ArrayList<>()).add(user);
+        }
+    }
+
+    private void remove(final Map<Integer, UserIdSet> removed, final User user) {
+        if (user.hasLocation()) {
+            removed.computeIfAbsent(segmentOf(user), key -> new UserIdSet()).add(user);
+        }
+    }
+
+    private Segment rebuild(final Segment segment, final UserIdSet removed, final List<User> added) {
+        final List<User> users = new ArrayList<>();
+        if (segment != null) {
+            for (User user : segment.users) {
+                if (removed == null || !removed.containsId(user.getId())) {
+                    users.add(user);
+                }
+            }
+        }
+        if (added != null) {
+            users.addAll(added);
+        }
+        if (users.isEmpty()) {
+            return null;
+        }
+        final User first = users.get(0);
+        final int row = rowOf(first.getLatitude());
+        final int column = columnOf(first.getLongitude());
+        return new Segment(users, row * segmentDegrees - 90, column * segmentDegrees - 180, segmentDegrees);
+    }
+
+    private int segmentOf(final User user) {
+        return rowOf(user.getLatitude()) * segmentColumns + columnOf(user.getLongitude());
+    }
+
+    private int rowOf(final double latitude) {
+        return Math.min(segmentRows - 1, Math.max(0, (int) ((latitude + 90) / segmentDegrees)));
+    }
+
+    private int columnOf(final double longitude) {
+        return Math.min(segmentColumns - 1, Math.max(0, (int) ((longitude + 180) / segmentDegrees)));
+    }
+
+    private static boolean sameLocation(final User previous, final User user) {
+        return Double.compare(previous.getLatitude(), user.getLatitude()) == 0
+                && Double.compare(previous.getLongitude(), user.getLongitude()) == 0;
+    }
+
+    private static final class Version {
+
+        private final Map<Integer, Segment> segments;
+        private final int size;
+
+        private Version(final Map<Integer, Segment> segments, final int size) {
+            this.segments = segments;
+            this.size = size;
+        }
+    }
+
+    private static final class Segment {
+
+        private final User[] users;
+        private final GeoGridIndex index;
+        private final double minLatitude;
+        private final double maxLatitude;
+        private final double minLongitude;
+        private final double maxLongitude;
+
+        private Segment(final List<User> users, final double minLatitude, final double minLongitude,
+                        final double degrees) {
+            this.users = users.toArray(new User[0]);
+            final double[] latitudes = new double[this.users.length];
+            final double[] longitudes = new double[this.users.length];
+            for (int i = 0; i < this.users.length; i++) {
+                latitudes[i] = this.users[i].getLatitude();
+                longitudes[i] = this.users[i].getLongitude();
+            }
+            this.index = new GeoGridIndex(latitudes, longitudes);
+            this.minLatitude = minLatitude;
+            this.maxLatitude = minLatitude + degrees;
+            this.minLongitude = minLongitude;
+            this.maxLongitude = minLongitude + degrees;
+        }
+
+        private boolean intersects(final GeoCircle circle) {
+            if (maxLatitude < circle.getMinLatitude() || minLatitude > circle.getMaxLatitude()) {
+                return false;
+            }
+            if (circle.isAllLongitudes()) {
+                return true;
+            }
+            if (circle.isCrossingAntimeridian()) {
+                return maxLongitude >= circle.getMinLongitude() || minLongitude <= circle.getMaxLongitude();
+            }
+            return maxLongitude >= circle.getMinLongitude() && minLongitude <= circle.getMaxLongitude();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.users.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.users.client.model.User;
+import org.users.geo.GeoCircle;
+import org.users.geo.GeoGridIndex;
+import org.users.trace.Stage;
+import org.users.trace.StageSpan;
+import org.users.trace.Tracing;
+
+/**
+ * An immutable, in-memory set of users behind a {@link GeoGridIndex}, so that a query only visits the
+ * users of the grid cells overlapping the searched circle.
+ */
+public class IndexedUsersDataset implements UsersDataset {
+
+    private final User[] users;
+    private final GeoGridIndex index;
+
+    public IndexedUsersDataset(final List<User> users) {
+        this(users, GeoGridIndex.DEFAULT_CELL_DEGREES);
+    }
+
+    public IndexedUsersDataset(final List<User> users, final double cellDegrees) {
+        this.users = users.toArray(new User[0]);
+        final double[] latitudes = new double[this.users.length];
+        final double[] longitudes = new double[this.users.length];
+        for (int i = 0; i < this.users.length; i++) {
+            latitudes[i] = this.users[i].getLatitude();
+            longitudes[i] = this.users[i].getLongitude();
+        }
+        this.index = new GeoGridIndex(latitudes, longitudes, this.users.length, cellDegrees);
+    }
+
+    public int size() {
+        return users.length;
+    }
+
+    @Override
+    public List<User> findWithin(final GeoCircle circle) {
+        final StageSpan filter = Tracing.start(Stage.VICINITY_FILTER);
+        final List<User> within = new ArrayList<>();
+        index.forEachWithin(circle, position -> within.add(users[position]));
+        filter.end(null, within.size());
+        return within;
+    }
+
+    @Override
+    public List<User> findNearest(final GeoCircle circle, final int k) {
+        final int[] positions = index.findNearest(circle, k, 1);
+        final List<User> nearest = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            nearest.add(users[position]);
+        }
+        return nearest;
+    }
+}
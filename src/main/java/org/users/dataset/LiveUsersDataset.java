@@ -0,0 +1,112 @@
+package org.users.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.users.client.PausingConsumer;
+import org.users.client.UsersClient;
+import org.users.client.model.User;
+import org.users.concurrent.Deadline;
+import org.users.geo.GeoCircle;
+
+/**
+ * Queries the "/users/" endpoint on every call, filtering users while the response streams in.
+ */
+public class LiveUsersDataset implements UsersDataset {
+
+    private final UsersClient usersClient;
+    private final Executor executor;
+
+    public LiveUsersDataset(final UsersClient usersClient) {
+        this(usersClient, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor runs the blocking download of {@link #findWithinAsync(GeoCircle)}
+     */
+    public LiveUsersDataset(final UsersClient usersClient, final Executor executor) {
+        this.usersClient = usersClient;
+        this.executor = executor;
+    }
+
+    @Override
+    public List<User> findWithin(final GeoCircle circle) {
+        final List<User> within = new ArrayList<>();
+        usersClient.streamAllUsers(user -> {
+            if (circle.contains(user.getLatitude(), user.getLongitude())) {
+                within.add(user);
+            }
+        });
+        return within;
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findWithinAsync(final GeoCircle circle) {
+        return CompletableFuture.supplyAsync(() -> findWithin(circle), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> streamWithinAsync(final GeoCircle circle, final Consumer<? super User> consumer) {
+        final Consumer<User> within = PausingConsumer.filtering(consumer,
+                user -> circle.contains(user.getLatitude(), user.getLongitude()));
+        //the download blocks its thread already, a paused consumer blocks it until it has room
+        return usersClient.streamAllUsersAsync(PausingConsumer.blocking(within), null, executor);
+    }
+
+    /**
+     * Keeps only the k nearest users while the response streams in.
+     */
+    @Override
+    public List<User> findNearest(final GeoCircle circle, final int k) {
+        final NearestUsers nearest = new NearestUsers(circle, k);
+        usersClient.streamAllUsers(nearest);
+        return nearest.getNearest();
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findNearestAsync(final GeoCircle circle, final int k) {
+        return CompletableFuture.supplyAsync(() -> findNearest(circle, k), executor);
+    }
+
+    /**
+     * Downloads the users once for all the circles.
+     */
+    @Override
+    public List<List<User>> findWithinEach(final List<GeoCircle> circles) {
+        final CirclesFilter filter = new CirclesFilter(circles);
+        usersClient.streamAllUsers(filter);
+        return filter.getWithin();
+    }
+
+    @Override
+    public CompletableFuture<List<List<User>>> findWithinEachAsync(final List<GeoCircle> circles) {
+        return CompletableFuture.supplyAsync(() -> findWithinEach(circles), executor);
+    }
+
+    /**
+     * Aborts the download as soon as a user is parsed after the deadline or the query is cancelled, dropping
+     * the connection rather than reading the rest of the response, so that the thread is free again. Only a
+     * template of {@link org.users.client.UsersRestTemplates#pooled()} also stops waiting for data at the
+     * deadline.
+     */
+    @Override
+    public CompletableFuture<List<User>> findWithinAsync(final GeoCircle circle, final Deadline deadline) {
+        final List<User> within = new ArrayList<>();
+        final CompletableFuture<Void> download = usersClient.streamAllUsersAsync(user -> {
+            if (circle.contains(user.getLatitude(), user.getLongitude())) {
+                within.add(user);
+            }
+        }, deadline, executor);
+        final CompletableFuture<List<User>> result = download.thenApply(done -> within);
+        result.whenComplete((done, failure) -> {
+            if (result.isCancelled()) {
+                download.cancel(true);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+package org.users.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.users.client.model.User;
+import org.users.geo.GeoCircle;
+import org.users.geo.NearestHeap;
+
+/**
+ * Selects the k users nearest to the centre of a circle from users passed one at a time, holding no more than k
+ * of them. A kept user has a slot in the heap, which a nearer user takes over when the heap is full.
+ */
+final class NearestUsers implements Consumer<User> {
+
+    private final GeoCircle circle;
+    private final NearestHeap heap;
+    private final User[] users;
+
+    NearestUsers(final GeoCircle circle, final int k) {
+        this.circle = circle;
+        this.heap = new NearestHeap(k);
+        this.users = new User[k];
+    }
+
+    @Override
+    public void accept(final User user) {
+        if (!user.hasLocation() || users.length == 0) {
+            return;
+        }
+        final double distance = circle.distanceMiles(user.getLatitude(), user.getLongitude());
+        if (distance > circle.getRadiusMiles()) {
+            return;
+        }
+        final int slot = heap.isFull() ? heap.farthestItem() : heap.size();
+        if (heap.offer(distance, slot)) {
+            users[slot] = user;
+        }
+    }
+
+    /**
+     * The users kept, nearest first.
+     */
+    List<User> getNearest() {
+        final int[] slots = heap.sortedItems();
+        final List<User> nearest = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            nearest.add(users[slot]);
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,55 @@
+package org.users.dataset;
+
+/**
+ * A point in time copy of the counters of {@link DeltaSyncedUsersDataset}.
+ */
+public class SyncStats {
+
+    private final long syncs;
+    private final long inserted;
+    private final long updated;
+    private final long deleted;
+    private final long applyNanos;
+    private final UsersDelta lastDelta;
+
+    public SyncStats(final long syncs, final long inserted, final long updated, final long deleted,
+                     final long applyNanos, final UsersDelta lastDelta) {
+        this.syncs = syncs;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.deleted = deleted;
+        this.applyNanos = applyNanos;
+        this.lastDelta = lastDelta;
+    }
+
+    public long getSyncs() {
+        return syncs;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public long getDeleted() {
+        return deleted;
+    }
+
+    /** Total time spent applying snapshots. */
+    public long getApplyNanos() {
+        return applyNanos;
+    }
+
+    public UsersDelta getLastDelta() {
+        return lastDelta;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncStats{syncs=" + syncs + ", inserted=" + inserted + ", updated=" + updated + ", deleted="
+                + deleted + ", applyNanos=" + applyNanos + ", lastDelta=" + lastDelta + "}";
+    }
+}
@@ -0,0 +1,172 @@
+package org.users.dataset;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.users.client.model.User;
+
+/**
+ * Users deduplicated by id in an open addressing table with linear probing, keeping the first user added for an
+ * id like a {@link java.util.HashSet} does. Adding allocates nothing but the table and compares primitive ids,
+ * never calling {@link User#hashCode()} or {@link User#equals(Object)}.
+ */
+public final class UserIdSet {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private User[] users;
+    //64 minus the bits of the table length, the slot being the top bits of the mixed id
+    private int shift;
+    private int size;
+
+    public UserIdSet() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize the number of distinct ids to hold without resizing
+     */
+    public UserIdSet(final int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @return whether the id was not already present
+     */
+    public boolean add(final User user) {
+        final long id = user.getId();
+        int slot = slot(id);
+        User existing;
+        while ((existing = users[slot]) != null) {
+            if (existing.getId() == id) {
+                return false;
+            }
+            slot = (slot + 1) & (users.length - 1);
+        }
+        users[slot] = user;
+        if (++size * 2 > users.length) {
+            rehash(users.length * 2);
+        }
+        return true;
+    }
+
+    public void addAll(final Collection<? extends User> toAdd) {
+        if ((size + toAdd.size()) * 2 > users.length) {
+            rehash(capacityFor(size + toAdd.size()));
+        }
+        for (User user : toAdd) {
+            add(user);
+        }
+    }
+
+    public boolean containsId(final long id) {
+        return get(id) != null;
+    }
+
+    /**
+     * @return the user with the id or null
+     */
+    public User get(final long id) {
+        int slot = slot(id);
+        User existing;
+        while ((existing = users[slot]) != null) {
+            if (existing.getId() == id) {
+                return existing;
+            }
+            slot = (slot + 1) & (users.length - 1);
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A read-only view, following later additions.
+     */
+    public Set<User> asSet() {
+        return new View();
+    }
+
+    /**
+     * Fibonacci hashing: the multiply scatters runs of ids, sequential or offset from one another by a power of
+     * two, over the whole table so that linear probing does not build clusters.
+     */
+    private int slot(final long id) {
+        return (int) ((id * GOLDEN_RATIO) >>> shift);
+    }
+
+    private void rehash(final int capacity) {
+        final User[] previous = users;
+        allocate(capacity);
+        size = 0;
+        for (User user : previous) {
+            if (user != null) {
+                add(user);
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        users = new User[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        if (expectedSize > 1 << 29) {
+            throw new IllegalArgumentException("Too many users: " + expectedSize);
+        }
+        return Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2) - 1) << 1;
+    }
+
+    private final class View extends AbstractSet<User> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return o instanceof User && containsId(((User) o).getId());
+        }
+
+        @Override
+        public Iterator<User> iterator() {
+            final User[] table = users;
+            return new Iterator<>() {
+                private int next = advance(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next < table.length;
+                }
+
+                @Override
+                public User next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final User user = table[next];
+                    next = advance(next + 1);
+                    return user;
+                }
+
+                private int advance(int from) {
+                    while (from < table.length && table[from] == null) {
+                        from++;
+                    }
+                    return from;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.users.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.users.client.model.User;
+import org.users.concurrent.Deadline;
+import org.users.geo.GeoCircle;
+
+/**
+ * A source of users that can be queried by location.
+ */
+public interface UsersDataset {
+
+    List<User> findWithin(GeoCircle circle);
+
+    /**
+     * Queries without blocking the caller on I/O. In-memory datasets answer on the calling thread, which is
+     * what this default does; datasets backed by the network override it.
+     */
+    default CompletableFuture<List<User>> findWithinAsync(GeoCircle circle) {
+        try {
+            return CompletableFuture.completedFuture(findWithin(circle));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Queries within the deadline, stopping the work once it has passed. By default the deadline is only
+     * enforced by the caller giving up on the future.
+     */
+    default CompletableFuture<List<User>> findWithinAsync(GeoCircle circle, Deadline deadline) {
+        return findWithinAsync(circle);
+    }
+
+    /**
+     * Passes the users within the circle to the consumer as they are found, which may abort the query by
+     * throwing. By default they are passed once the query has completed.
+     */
+    default CompletableFuture<Void> streamWithinAsync(GeoCircle circle, Consumer<? super User> consumer) {
+        return findWithinAsync(circle).thenAccept(within -> within.forEach(consumer));
+    }
+
+    /**
+     * The at most k users within the circle nearest to its centre, nearest first. By default the users within
+     * the circle are found first; in-memory datasets select over their columns instead, holding only k of them.
+     */
+    default List<User> findNearest(GeoCircle circle, int k) {
+        final NearestUsers nearest = new NearestUsers(circle, k);
+        findWithin(circle).forEach(nearest);
+        return nearest.getNearest();
+    }
+
+    /**
+     * Queries the nearest without blocking the caller on I/O, like {@link #findWithinAsync(GeoCircle)}.
+     */
+    default CompletableFuture<List<User>> findNearestAsync(GeoCircle circle, int k) {
+        try {
+            return CompletableFuture.completedFuture(findNearest(circle, k));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Queries several circles at once, returning the users within each circle in the order of the circles.
+     * Datasets that have to visit every user override it to do so once for all the circles.
+     */
+    default List<List<User>> findWithinEach(List<GeoCircle> circles) {
+        final List<List<User>> within = new ArrayList<>(circles.size());
+        for (GeoCircle circle : circles) {
+            within.add(findWithin(circle));
+        }
+        return within;
+    }
+
+    default CompletableFuture<List<List<User>>> findWithinEachAsync(List<GeoCircle> circles) {
+        try {
+            return CompletableFuture.completedFuture(findWithinEach(circles));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
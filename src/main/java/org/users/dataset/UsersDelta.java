@@ -0,0 +1,54 @@
+package org.users.dataset;
+
+/**
+ * What one sync of a {@link DeltaSyncedUsersDataset} changed.
+ */
+public class UsersDelta {
+
+    private final int inserted;
+    private final int updated;
+    private final int deleted;
+    private final int segmentsRebuilt;
+    private final long applyNanos;
+
+    public UsersDelta(final int inserted, final int updated, final int deleted, final int segmentsRebuilt,
+                      final long applyNanos) {
+        this.inserted = inserted;
+        this.updated = updated;
+        this.deleted = deleted;
+        this.segmentsRebuilt = segmentsRebuilt;
+        this.applyNanos = applyNanos;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    /** Users whose location changed. */
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public int getSegmentsRebuilt() {
+        return segmentsRebuilt;
+    }
+
+    /** Time taken to diff the snapshot and publish the new version. */
+    public long getApplyNanos() {
+        return applyNanos;
+    }
+
+    public boolean isEmpty() {
+        return inserted == 0 && updated == 0 && deleted == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "UsersDelta{inserted=" + inserted + ", updated=" + updated + ", deleted=" + deleted
+                + ", segmentsRebuilt=" + segmentsRebuilt + ", applyNanos=" + applyNanos + "}";
+    }
+}
@@ -0,0 +1,11 @@
+package org.users.geo;
+
+import java.util.Optional;
+
+/**
+ * Resolves a city name to the coordinates of its centre.
+ */
+public interface CityLocator {
+
+    Optional<GeoPoint> locate(String cityName);
+}
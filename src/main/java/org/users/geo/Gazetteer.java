@@ -0,0 +1,258 @@
+package org.users.geo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An offline city lookup, by default loaded from the bundled "gazetteer.csv". Names are folded to lower case
+ * words without accents, so that "Zurich" with or without its umlaut, "zurich" and "ZURICH " resolve alike,
+ * and "Saint-Etienne" matches "saint etienne". The folded names are sorted and packed into a single char array next to primitive
+ * coordinate columns. A lookup or a prefix match is therefore a binary search with no per-city objects.
+ * When names collide after folding the first city listed wins; the bundled file lists the UK first, then the
+ * rest of Europe, then the world.
+ */
+public final class Gazetteer implements CityLocator {
+
+    private static final String DEFAULT_GAZETTEER = "/gazetteer.csv";
+
+    private final char[] keys;
+    private final int[] keyOffsets;
+    private final char[] names;
+    private final int[] nameOffsets;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    private Gazetteer(final List<Entry> entries) {
+        final List<Entry> sorted = new ArrayList<>(entries);
+        //stable, so the first listed of the entries folding alike comes first
+        sorted.sort(Comparator.comparing(entry -> entry.key));
+        final List<Entry> unique = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted) {
+            if (!entry.key.isEmpty() && (unique.isEmpty() || !unique.get(unique.size() - 1).key.equals(entry.key))) {
+                unique.add(entry);
+            }
+        }
+        final int size = unique.size();
+        this.keyOffsets = new int[size + 1];
+        this.nameOffsets = new int[size + 1];
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        final StringBuilder keyChars = new StringBuilder();
+        final StringBuilder nameChars = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            final Entry entry = unique.get(i);
+            keyChars.append(entry.key);
+            nameChars.append(entry.name);
+            keyOffsets[i + 1] = keyChars.length();
+            nameOffsets[i + 1] = nameChars.length();
+            latitudes[i] = entry.point.getLatitude();
+            longitudes[i] = entry.point.getLongitude();
+        }
+        this.keys = keyChars.toString().toCharArray();
+        this.names = nameChars.toString().toCharArray();
+    }
+
+    public static Gazetteer defaults() {
+        try (InputStream in = Gazetteer.class.getResourceAsStream(DEFAULT_GAZETTEER)) {
+            return load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load " + DEFAULT_GAZETTEER, e);
+        }
+    }
+
+    /**
+     * Reads a CSV with a header line and name, country, latitude and longitude columns.
+     */
+    public static Gazetteer load(final Reader csv) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(csv);
+        reader.readLine();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            final String[] columns = line.split(",");
+            entries.add(new Entry(columns[0], new GeoPoint(Double.parseDouble(columns[2]),
+                    Double.parseDouble(columns[3]))));
+        }
+        return new Gazetteer(entries);
+    }
+
+    public static Gazetteer of(final List<String> cityNames, final List<GeoPoint> points) {
+        if (cityNames.size() != points.size()) {
+            throw new IllegalArgumentException("One point is needed per city name");
+        }
+        final List<Entry> entries = new ArrayList<>(cityNames.size());
+        for (int i = 0; i < cityNames.size(); i++) {
+            entries.add(new Entry(cityNames.get(i), points.get(i)));
+        }
+        return new Gazetteer(entries);
+    }
+
+    public int size() {
+        return latitudes.length;
+    }
+
+    @Override
+    public Optional<GeoPoint> locate(final String cityName) {
+        final String key = fold(cityName);
+        final int position = lowerBound(key);
+        if (position == size() || compare(position, key, false) != 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new GeoPoint(latitudes[position], longitudes[position]));
+    }
+
+    /**
+     * The names of the cities whose folded name starts with the folded prefix, in alphabetical order.
+     */
+    public List<String> findByPrefix(final String prefix, final int limit) {
+        final String key = fold(prefix);
+        final List<String> matches = new ArrayList<>();
+        for (int i = lowerBound(key); i < size() && matches.size() < limit && compare(i, key, true) == 0; i++) {
+            matches.add(new String(names, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i]));
+        }
+        return matches;
+    }
+
+    private int lowerBound(final String key) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (compare(mid, key, false) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the folded name at the position with the key, or only its first key length chars for a prefix.
+     */
+    private int compare(final int position, final String key, final boolean prefix) {
+        final int start = keyOffsets[position];
+        final int length = keyOffsets[position + 1] - start;
+        final int common = Math.min(length, key.length());
+        for (int i = 0; i < common; i++) {
+            final int difference = keys[start + i] - key.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return prefix && length >= key.length() ? 0 : length - key.length();
+    }
+
+    /**
+     * Lower case letters and digits without accents, words separated by a single space. Only names with non-ASCII
+     * characters go through the slower Unicode decomposition.
+     */
+    static String fold(final String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) >= 0x80) {
+                return foldWords(stripAccents(name));
+            }
+        }
+        return foldWords(name);
+    }
+
+    private static String foldWords(final String name) {
+        final StringBuilder folded = new StringBuilder(name.length());
+        boolean separator = false;
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                separator = appendSeparator(folded, separator);
+                folded.append(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                separator = appendSeparator(folded, separator);
+                folded.append((char) (c + ('a' - 'A')));
+            } else if (c >= 0x80 && Character.isLetterOrDigit(c)) {
+                separator = appendSeparator(folded, separator);
+                folded.append(Character.toLowerCase(c));
+            } else {
+                separator = true;
+            }
+        }
+        return folded.toString();
+    }
+
+    private static String stripAccents(final String name) {
+        final String decomposed = Normalizer.normalize(name, Normalizer.Form.NFKD);
+        final StringBuilder stripped = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            final char c = decomposed.charAt(i);
+            if (c < 0x80) {
+                stripped.append(c);
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                stripped.append(foldLetter(c));
+            }
+        }
+        return stripped.toString();
+    }
+
+    /**
+     * Letters that do not decompose into a base letter and marks.
+     */
+    private static String foldLetter(final char c) {
+        switch (Character.toLowerCase(c)) {
+            case '\u00df': //sharp s
+                return "ss";
+            case '\u00e6': //ash
+                return "ae";
+            case '\u0153': //oe ligature
+                return "oe";
+            case '\u00f8': //o with stroke
+                return "o";
+            case '\u0142': //l with stroke
+                return "l";
+            case '\u0111': //d with stroke
+            case '\u00f0': //eth
+                return "d";
+            case '\u00fe': //thorn
+                return "th";
+            case '\u0131': //dotless i
+                return "i";
+            default:
+                return String.valueOf(c);
+        }
+    }
+
+    private static boolean appendSeparator(final StringBuilder folded, final boolean separator) {
+        if (separator && folded.length() > 0) {
+            folded.append(' ');
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Gazetteer{" + size() + " cities}";
+    }
+
+    private static final class Entry {
+
+        private final String name;
+        private final String key;
+        private final GeoPoint point;
+
+        private Entry(final String name, final GeoPoint point) {
+            this.name = name;
+            this.key = fold(name);
+            this.point = point;
+        }
+    }
+}
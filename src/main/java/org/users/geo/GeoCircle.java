@@ -0,0 +1,103 @@
+package org.users.geo;
+
+/**
+ * A radius around a point, with a precomputed bounding box so that most points outside the circle are
+ * rejected with a few comparisons before the haversine distance is computed.
+ * When the box crosses the antimeridian {@code minLongitude > maxLongitude}.
+ */
+public final class GeoCircle {
+
+    private final GeoPoint centre;
+    private final double radiusMiles;
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+    private final boolean allLongitudes;
+
+    public GeoCircle(final GeoPoint centre, final double radiusMiles) {
+        if (radiusMiles < 0 || Double.isNaN(radiusMiles)) {
+            throw new IllegalArgumentException("Invalid radius " + radiusMiles);
+        }
+        this.centre = centre;
+        this.radiusMiles = radiusMiles;
+        final double angular = radiusMiles / Haversine.EARTH_RADIUS_MILES;
+        final double latitude = Math.toRadians(centre.getLatitude());
+        final double minLat = Math.toDegrees(latitude - angular);
+        final double maxLat = Math.toDegrees(latitude + angular);
+        if (minLat <= -90 || maxLat >= 90) {
+            this.minLatitude = Math.max(-90, minLat);
+            this.maxLatitude = Math.min(90, maxLat);
+            this.minLongitude = -180;
+            this.maxLongitude = 180;
+            this.allLongitudes = true;
+        } else {
+            final double dLon = Math.toDegrees(Math.asin(Math.sin(angular) / Math.cos(latitude)));
+            this.minLatitude = minLat;
+            this.maxLatitude = maxLat;
+            if (dLon >= 180) {
+                this.minLongitude = -180;
+                this.maxLongitude = 180;
+                this.allLongitudes = true;
+            } else {
+                final double minLon = centre.getLongitude() - dLon;
+                final double maxLon = centre.getLongitude() + dLon;
+                this.minLongitude = minLon < -180 ? minLon + 360 : minLon;
+                this.maxLongitude = maxLon > 180 ? maxLon - 360 : maxLon;
+                this.allLongitudes = false;
+            }
+        }
+    }
+
+    public GeoPoint getCentre() {
+        return centre;
+    }
+
+    public double getRadiusMiles() {
+        return radiusMiles;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    public boolean isAllLongitudes() {
+        return allLongitudes;
+    }
+
+    public boolean isCrossingAntimeridian() {
+        return !allLongitudes && minLongitude > maxLongitude;
+    }
+
+    public boolean contains(final double latitude, final double longitude) {
+        return inBoundingBox(latitude, longitude) && distanceMiles(latitude, longitude) <= radiusMiles;
+    }
+
+    boolean inBoundingBox(final double latitude, final double longitude) {
+        if (!(latitude >= minLatitude && latitude <= maxLatitude)) {
+            return false;
+        }
+        if (allLongitudes) {
+            return true;
+        }
+        return minLongitude <= maxLongitude
+                ? longitude >= minLongitude && longitude <= maxLongitude
+                : longitude >= minLongitude || longitude <= maxLongitude;
+    }
+
+    public double distanceMiles(final double latitude, final double longitude) {
+        return Haversine.distanceMiles(centre.getLatitude(), centre.getLongitude(), latitude, longitude);
+    }
+}
@@ -0,0 +1,292 @@
+package org.users.geo;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable spatial index over primitive coordinate arrays. Points are bucketed into fixed size
+ * latitude/longitude cells and stored sorted by cell id (row major), so a radius query binary searches
+ * the start of each candidate row segment and only visits points of the cells overlapping the bounding
+ * box of the circle. Points with a {@code NaN} coordinate are not indexed. The index copies the coordinates
+ * in that order, unless its owner keeps its own columns in that order and has the index share them.
+ */
+public final class GeoGridIndex {
+
+    public static final double DEFAULT_CELL_DEGREES = 0.5;
+
+    private final Grid grid;
+    private final int[] cells;
+    //the position of each entry in the indexed arrays, null when the index shares arrays already in cell order
+    private final int[] positions;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    public GeoGridIndex(final double[] latitudes, final double[] longitudes) {
+        this(latitudes, longitudes, latitudes.length, DEFAULT_CELL_DEGREES);
+    }
+
+    /**
+     * Copies the coordinates to index in cell order.
+     *
+     * @param latitudes  latitudes of the points, the position in the array is the point's id
+     * @param longitudes longitudes of the points
+     * @param size       number of leading entries of the arrays to index
+     * @param cellDegrees edge length of a grid cell in degrees
+     */
+    public GeoGridIndex(final double[] latitudes, final double[] longitudes, final int size, final double cellDegrees) {
+        checkSize(latitudes, longitudes, size);
+        this.grid = new Grid(cellDegrees);
+        final int[] order = grid.order(latitudes, longitudes, size);
+        final int indexed = indexedPrefix(latitudes, longitudes, order, size);
+        this.cells = new int[indexed];
+        this.positions = Arrays.copyOf(order, indexed);
+        this.latitudes = new double[indexed];
+        this.longitudes = new double[indexed];
+        for (int i = 0; i < indexed; i++) {
+            final int position = positions[i];
+            this.latitudes[i] = latitudes[position];
+            this.longitudes[i] = longitudes[position];
+            cells[i] = grid.cellOf(this.latitudes[i], this.longitudes[i]);
+        }
+    }
+
+    private GeoGridIndex(final Grid grid, final double[] latitudes, final double[] longitudes, final int size) {
+        this.grid = grid;
+        final int indexed = indexedPrefix(latitudes, longitudes, null, size);
+        this.cells = new int[indexed];
+        this.positions = null;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        for (int i = 0; i < indexed; i++) {
+            cells[i] = grid.cellOf(latitudes[i], longitudes[i]);
+            if (i > 0 && cells[i] < cells[i - 1]) {
+                throw new IllegalArgumentException("Point " + i + " is not in cell order");
+            }
+        }
+        for (int i = indexed; i < size; i++) {
+            if (!Double.isNaN(latitudes[i]) && !Double.isNaN(longitudes[i])) {
+                throw new IllegalArgumentException("Point " + i + " follows the points with coordinates");
+            }
+        }
+    }
+
+    /**
+     * Indexes the leading entries of arrays already permuted in {@link #cellOrder(double[], double[], int, double)},
+     * sharing them instead of copying them. The positions of the points are their indices in the arrays.
+     *
+     * @throws IllegalArgumentException when the points are not in cell order
+     */
+    public static GeoGridIndex ofCellOrdered(final double[] latitudes, final double[] longitudes, final int size,
+                                             final double cellDegrees) {
+        checkSize(latitudes, longitudes, size);
+        return new GeoGridIndex(new Grid(cellDegrees), latitudes, longitudes, size);
+    }
+
+    /**
+     * The positions of the points sorted by cell, followed by those with a {@code NaN} coordinate, which are not
+     * indexed, in their original order.
+     */
+    public static int[] cellOrder(final double[] latitudes, final double[] longitudes, final int size,
+                                  final double cellDegrees) {
+        checkSize(latitudes, longitudes, size);
+        return new Grid(cellDegrees).order(latitudes, longitudes, size);
+    }
+
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * Passes the position of every indexed point inside the circle to the consumer, in no particular order.
+     */
+    public void forEachWithin(final GeoCircle circle, final IntConsumer consumer) {
+        forEachCellRange(circle, 0, 1, (from, lastCell) -> {
+            for (int i = from; i < cells.length && cells[i] <= lastCell; i++) {
+                if (circle.contains(latitudes[i], longitudes[i])) {
+                    consumer.accept(positions == null ? i : positions[i]);
+                }
+            }
+        });
+    }
+
+    /**
+     * The positions of the k indexed points inside the circle nearest to its centre, nearest first. The distance
+     * of each candidate is computed once and kept in a {@link NearestHeap}, so memory is O(k) whatever the number
+     * of points in the circle. With a parallelism above 1 the rows of the circle are dealt round robin to as many
+     * fork join tasks, which spreads the rows of a dense city, each task selecting its own k nearest before the
+     * heaps are merged.
+     */
+    public int[] findNearest(final GeoCircle circle, final int k, final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism " + parallelism);
+        }
+        if (parallelism == 1) {
+            return nearestOfRows(circle, k, 0, 1).sortedItems();
+        }
+        return IntStream.range(0, parallelism).parallel()
+                .mapToObj(part -> nearestOfRows(circle, k, part, parallelism))
+                .reduce((heap, other) -> {
+                    heap.addAll(other);
+                    return heap;
+                })
+                .map(NearestHeap::sortedItems)
+                .orElseGet(() -> new int[0]);
+    }
+
+    private NearestHeap nearestOfRows(final GeoCircle circle, final int k, final int part, final int parts) {
+        final NearestHeap heap = new NearestHeap(k);
+        if (k == 0) {
+            return heap;
+        }
+        final double radius = circle.getRadiusMiles();
+        forEachCellRange(circle, part, parts, (from, lastCell) -> {
+            for (int i = from; i < cells.length && cells[i] <= lastCell; i++) {
+                if (circle.inBoundingBox(latitudes[i], longitudes[i])) {
+                    final double distance = circle.distanceMiles(latitudes[i], longitudes[i]);
+                    if (distance <= radius) {
+                        heap.offer(distance, positions == null ? i : positions[i]);
+                    }
+                }
+            }
+        });
+        return heap;
+    }
+
+    /**
+     * Visits the cell ranges overlapping the bounding box of the circle, one or two per row, of every
+     * parts-th row from the part-th.
+     */
+    private void forEachCellRange(final GeoCircle circle, final int part, final int parts,
+                                  final CellRangeVisitor visitor) {
+        final int firstRow = grid.rowOf(circle.getMinLatitude());
+        final int lastRow = grid.rowOf(circle.getMaxLatitude());
+        for (int row = firstRow + part; row <= lastRow; row += parts) {
+            if (circle.isAllLongitudes() || wrapsAllColumns(circle)) {
+                visit(row, 0, grid.columns - 1, visitor);
+            } else if (circle.isCrossingAntimeridian()) {
+                visit(row, grid.columnOf(circle.getMinLongitude()), grid.columns - 1, visitor);
+                visit(row, 0, grid.columnOf(circle.getMaxLongitude()), visitor);
+            } else {
+                visit(row, grid.columnOf(circle.getMinLongitude()), grid.columnOf(circle.getMaxLongitude()), visitor);
+            }
+        }
+    }
+
+    private void visit(final int row, final int fromColumn, final int toColumn, final CellRangeVisitor visitor) {
+        visitor.visit(lowerBound(row * grid.columns + fromColumn), row * grid.columns + toColumn);
+    }
+
+    private boolean wrapsAllColumns(final GeoCircle circle) {
+        return circle.isCrossingAntimeridian()
+                && grid.columnOf(circle.getMinLongitude()) <= grid.columnOf(circle.getMaxLongitude());
+    }
+
+    private int lowerBound(final int cell) {
+        int low = 0;
+        int high = cells.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (cells[mid] < cell) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void checkSize(final double[] latitudes, final double[] longitudes, final int size) {
+        if (latitudes.length < size || longitudes.length < size) {
+            throw new IllegalArgumentException("Coordinate arrays are shorter than " + size);
+        }
+    }
+
+    /**
+     * The number of leading points in the order, or in the arrays when it is null, that have both coordinates.
+     */
+    private static int indexedPrefix(final double[] latitudes, final double[] longitudes, final int[] order,
+                                     final int size) {
+        int indexed = 0;
+        while (indexed < size) {
+            final int position = order == null ? indexed : order[indexed];
+            if (Double.isNaN(latitudes[position]) || Double.isNaN(longitudes[position])) {
+                break;
+            }
+            indexed++;
+        }
+        return indexed;
+    }
+
+    /**
+     * The fixed size cells, numbered row major from the south west corner.
+     */
+    private static final class Grid {
+
+        private final double cellDegrees;
+        private final int rows;
+        private final int columns;
+
+        private Grid(final double cellDegrees) {
+            if (!(cellDegrees > 0 && cellDegrees <= 90)) {
+                throw new IllegalArgumentException("Invalid cell size " + cellDegrees);
+            }
+            this.cellDegrees = cellDegrees;
+            this.rows = (int) Math.ceil(180 / cellDegrees);
+            this.columns = (int) Math.ceil(360 / cellDegrees);
+            if ((long) rows * columns > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Cell size " + cellDegrees + " is too small");
+            }
+        }
+
+        /**
+         * The positions sorted by cell, then those with a {@code NaN} coordinate.
+         */
+        private int[] order(final double[] latitudes, final double[] longitudes, final int size) {
+            final long[] keys = new long[size];
+            int indexed = 0;
+            for (int i = 0; i < size; i++) {
+                final double latitude = latitudes[i];
+                final double longitude = longitudes[i];
+                if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+                    continue;
+                }
+                keys[indexed++] = ((long) cellOf(latitude, longitude) << 32) | i;
+            }
+            Arrays.sort(keys, 0, indexed);
+            final int[] order = new int[size];
+            for (int i = 0; i < indexed; i++) {
+                order[i] = (int) keys[i];
+            }
+            int unindexed = indexed;
+            for (int i = 0; i < size; i++) {
+                if (Double.isNaN(latitudes[i]) || Double.isNaN(longitudes[i])) {
+                    order[unindexed++] = i;
+                }
+            }
+            return order;
+        }
+
+        private int cellOf(final double latitude, final double longitude) {
+            return rowOf(latitude) * columns + columnOf(longitude);
+        }
+
+        private int rowOf(final double latitude) {
+            return Math.min(rows - 1, Math.max(0, (int) ((latitude + 90) / cellDegrees)));
+        }
+
+        private int columnOf(final double longitude) {
+            return Math.min(columns - 1, Math.max(0, (int) ((longitude + 180) / cellDegrees)));
+        }
+    }
+
+    @FunctionalInterface
+    private interface CellRangeVisitor {
+
+        /**
+         * @param from     the first index entry of the range
+         * @param lastCell the last cell of the range, entries are visited while their cell is not past it
+         */
+        void visit(int from, int lastCell);
+    }
+}
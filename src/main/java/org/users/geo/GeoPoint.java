@@ -0,0 +1,31 @@
+package org.users.geo;
+
+import lombok.EqualsAndHashCode;
+
+@EqualsAndHashCode
+public final class GeoPoint {
+
+    private final double latitude;
+    private final double longitude;
+
+    public GeoPoint(final double latitude, final double longitude) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("Invalid coordinates " + latitude + "," + longitude);
+        }
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + latitude + "," + longitude + ")";
+    }
+}
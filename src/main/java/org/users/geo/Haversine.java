@@ -0,0 +1,24 @@
+package org.users.geo;
+
+public final class Haversine {
+
+    public static final double EARTH_RADIUS_MILES = 3958.8;
+
+    private Haversine() {
+    }
+
+    public static double distanceMiles(final double latitude1, final double longitude1,
+                                       final double latitude2, final double longitude2) {
+        final double dLat = Math.toRadians(latitude2 - latitude1);
+        final double dLon = Math.toRadians(longitude2 - longitude1);
+        final double sinLat = Math.sin(dLat / 2);
+        final double sinLon = Math.sin(dLon / 2);
+        final double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public static double distanceMiles(final GeoPoint from, final GeoPoint to) {
+        return distanceMiles(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+    }
+}
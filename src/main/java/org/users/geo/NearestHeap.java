@@ -0,0 +1,126 @@
+package org.users.geo;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Keeps the k nearest of the items offered to it in a max heap on primitive arrays. The farthest kept item is at
+ * the root, so a farther item is rejected with one comparison and a nearer one replaces it in O(log k). Memory is
+ * O(k) however many items are offered. Equal distances are ordered by item, which makes the selection the same
+ * whatever order the items come in.
+ */
+public final class NearestHeap {
+
+    private final double[] distances;
+    private final int[] items;
+    private int size;
+
+    public NearestHeap(final int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Invalid k " + k);
+        }
+        this.distances = new double[k];
+        this.items = new int[k];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == items.length;
+    }
+
+    /**
+     * @return whether an item at this distance would be kept
+     */
+    public boolean accepts(final double distance, final int item) {
+        return size < items.length || size > 0 && farther(distances[0], items[0], distance, item);
+    }
+
+    /**
+     * @return whether the item was kept, evicting the farthest one when the heap was full
+     */
+    public boolean offer(final double distance, final int item) {
+        if (size < items.length) {
+            siftUp(size++, distance, item);
+            return true;
+        }
+        if (!accepts(distance, item)) {
+            return false;
+        }
+        siftDown(0, distance, item);
+        return true;
+    }
+
+    public int farthestItem() {
+        if (size == 0) {
+            throw new NoSuchElementException("Empty heap");
+        }
+        return items[0];
+    }
+
+    /**
+     * Offers the items kept by another heap, to merge the selections of partitions.
+     */
+    public void addAll(final NearestHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.distances[i], other.items[i]);
+        }
+    }
+
+    /**
+     * The kept items nearest first, heap sorting a copy in O(k log k).
+     */
+    public int[] sortedItems() {
+        final NearestHeap copy = new NearestHeap(size);
+        System.arraycopy(distances, 0, copy.distances, 0, size);
+        System.arraycopy(items, 0, copy.items, 0, size);
+        copy.size = size;
+        final int[] sorted = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            sorted[i] = copy.items[0];
+            copy.size--;
+            copy.siftDown(0, copy.distances[copy.size], copy.items[copy.size]);
+        }
+        return sorted;
+    }
+
+    private void siftUp(final int from, final double distance, final int item) {
+        int hole = from;
+        while (hole > 0) {
+            final int parent = (hole - 1) >>> 1;
+            if (!farther(distance, item, distances[parent], items[parent])) {
+                break;
+            }
+            distances[hole] = distances[parent];
+            items[hole] = items[parent];
+            hole = parent;
+        }
+        distances[hole] = distance;
+        items[hole] = item;
+    }
+
+    private void siftDown(final int from, final double distance, final int item) {
+        int hole = from;
+        int child;
+        while ((child = 2 * hole + 1) < size) {
+            if (child + 1 < size && farther(distances[child + 1], items[child + 1], distances[child], items[child])) {
+                child++;
+            }
+            if (!farther(distances[child], items[child], distance, item)) {
+                break;
+            }
+            distances[hole] = distances[child];
+            items[hole] = items[child];
+            hole = child;
+        }
+        if (size > 0) {
+            distances[hole] = distance;
+            items[hole] = item;
+        }
+    }
+
+    private static boolean farther(final double distance1, final int item1, final double distance2, final int item2) {
+        return distance1 > distance2 || distance1 == distance2 && item1 > item2;
+    }
+}
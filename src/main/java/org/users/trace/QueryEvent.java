@@ -0,0 +1,26 @@
+package org.users.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.users.Query")
+@Label("Query")
+@Category({"Users API", "Area Queries"})
+@Description("An area query from its call until its result or failure")
+@StackTrace(false)
+final class QueryEvent extends Event {
+
+    @Label("Query")
+    String query;
+
+    @Label("Users")
+    @Description("The users found, -1 when the query failed")
+    int items;
+
+    @Label("Query Id")
+    long queryId;
+}
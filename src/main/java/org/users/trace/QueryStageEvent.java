@@ -0,0 +1,29 @@
+package org.users.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.users.QueryStage")
+@Label("Query Stage")
+@Category({"Users API", "Area Queries"})
+@Description("A timed stage of an area query or of a request to the Users API")
+@StackTrace(false)
+final class QueryStageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Detail")
+    String detail;
+
+    @Label("Users")
+    int items;
+
+    @Label("Query Id")
+    @Description("The id of the query trace, 0 for a stage run outside of a traced query")
+    long queryId;
+}
@@ -0,0 +1,90 @@
+package org.users.trace;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The stages one query went through and how long each took, recorded from whichever threads ran them. The
+ * stages of a query answered from a cache, or coalesced with a query already in flight, are those of the
+ * query that loaded the result, recorded in its trace only.
+ */
+public final class QueryTrace {
+
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final long id = IDS.incrementAndGet();
+    private final String query;
+    private final long startedNanos = System.nanoTime();
+    private final List<StageTiming> stages = new ArrayList<>();
+    private long elapsedNanos = -1;
+
+    QueryTrace(final String query) {
+        this.query = query;
+    }
+
+    /**
+     * Identifies the query in the JFR events of its stages.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * The stages in the order they ended. A stage that outlived the query, such as a leg cancelled on timeout,
+     * may still be added.
+     */
+    public synchronized List<StageTiming> getStages() {
+        return List.copyOf(stages);
+    }
+
+    public synchronized long getTotalNanos(final Stage stage) {
+        long total = 0;
+        for (StageTiming timing : stages) {
+            if (timing.getStage() == stage) {
+                total += timing.getDurationNanos();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * From the start of the query until it completed, or until now while it runs.
+     */
+    public synchronized long getElapsedNanos() {
+        return elapsedNanos < 0 ? System.nanoTime() - startedNanos : elapsedNanos;
+    }
+
+    long getStartedNanos() {
+        return startedNanos;
+    }
+
+    synchronized void add(final Stage stage, final String detail, final long started, final long duration,
+                          final int items) {
+        stages.add(new StageTiming(stage, detail, started - startedNanos, duration, items,
+                Thread.currentThread().getName()));
+    }
+
+    synchronized void complete() {
+        if (elapsedNanos < 0) {
+            elapsedNanos = System.nanoTime() - startedNanos;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        final Map<Stage, Long> totals = new EnumMap<>(Stage.class);
+        for (StageTiming timing : stages) {
+            totals.merge(timing.getStage(), timing.getDurationNanos(), Long::sum);
+        }
+        return "QueryTrace{" + id + " " + query + ", elapsed=" + TimeUnit.NANOSECONDS.toMicros(getElapsedNanos())
+                + "us, " + stages.size() + " stages " + totals + "}";
+    }
+}
@@ -0,0 +1,21 @@
+package org.users.trace;
+
+/**
+ * The timed stages of an area query, see {@link QueryTrace}. The legs of a query run concurrently, so the
+ * stages of different legs overlap rather than add up to the elapsed time.
+ */
+public enum Stage {
+    /** Waiting for an executor thread, from the submission of a blocking leg until it starts. */
+    QUEUE_WAIT,
+    /** Sending a request to the Users API until its status and headers are received. */
+    HTTP_FETCH,
+    /**
+     * Reading and binding a response body, its transfer included. Users streamed to a consumer are handed
+     * over within this stage, so a live dataset filtering them as they are parsed filters within it too.
+     */
+    JSON_PARSE,
+    /** Searching a dataset held in memory for the users within a circle. */
+    VICINITY_FILTER,
+    /** Merging the users of the city and of its vicinity by id. */
+    MERGE
+}
@@ -0,0 +1,58 @@
+package org.users.trace;
+
+/**
+ * A stage being timed, started by {@link Tracing#start(Stage)}. Ending it adds the stage to its trace and
+ * commits a JFR event while one is recorded. A span is ended once, by one thread; ending it again is a no-op.
+ */
+public final class StageSpan {
+
+    /** The span of a stage nobody observes, ending it costs nothing. */
+    static final StageSpan NONE = new StageSpan(null, null, false);
+
+    private final Stage stage;
+    private final QueryTrace trace;
+    private final QueryStageEvent event;
+    private final long startedNanos;
+    private boolean ended;
+
+    StageSpan(final Stage stage, final QueryTrace trace, final boolean recording) {
+        this.stage = stage;
+        this.trace = trace;
+        if (recording) {
+            this.event = new QueryStageEvent();
+            event.begin();
+        } else {
+            this.event = null;
+        }
+        this.startedNanos = System.nanoTime();
+        this.ended = stage == null;
+    }
+
+    public void end() {
+        end(null, 0);
+    }
+
+    /**
+     * @param detail what the stage worked on, such as the endpoint of a request, or null
+     * @param items  the users the stage parsed, found or merged
+     */
+    public void end(final String detail, final int items) {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        if (trace != null) {
+            trace.add(stage, detail, startedNanos, System.nanoTime() - startedNanos, items);
+        }
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage.name();
+                event.detail = detail;
+                event.items = items;
+                event.queryId = trace == null ? 0 : trace.getId();
+                event.commit();
+            }
+        }
+    }
+}
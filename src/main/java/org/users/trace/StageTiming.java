@@ -0,0 +1,68 @@
+package org.users.trace;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One timed stage of a {@link QueryTrace}.
+ */
+public final class StageTiming {
+
+    private final Stage stage;
+    private final String detail;
+    private final long offsetNanos;
+    private final long durationNanos;
+    private final int items;
+    private final String threadName;
+
+    StageTiming(final Stage stage, final String detail, final long offsetNanos, final long durationNanos,
+                final int items, final String threadName) {
+        this.stage = stage;
+        this.detail = detail;
+        this.offsetNanos = offsetNanos;
+        this.durationNanos = durationNanos;
+        this.items = items;
+        this.threadName = threadName;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * What the stage worked on, such as the endpoint of a request, or null.
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * When the stage started, relative to the start of the query.
+     */
+    public long getOffsetNanos() {
+        return offsetNanos;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * The users the stage parsed, found or merged, 0 for the stages handling none.
+     */
+    public int getItems() {
+        return items;
+    }
+
+    /**
+     * The thread that ended the stage.
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    @Override
+    public String toString() {
+        return stage + (detail == null ? "" : "(" + detail + ")") + " +" + TimeUnit.NANOSECONDS.toMicros(offsetNanos)
+                + "us " + TimeUnit.NANOSECONDS.toMicros(durationNanos) + "us " + items + " users on " + threadName;
+    }
+}
@@ -0,0 +1,28 @@
+package org.users.trace;
+
+/**
+ * The result of a query together with the trace of its stages.
+ */
+public final class TracedResult<T> {
+
+    private final T result;
+    private final QueryTrace trace;
+
+    TracedResult(final T result, final QueryTrace trace) {
+        this.result = result;
+        this.trace = trace;
+    }
+
+    public T getResult() {
+        return result;
+    }
+
+    public QueryTrace getTrace() {
+        return trace;
+    }
+
+    @Override
+    public String toString() {
+        return "TracedResult{" + trace + "}";
+    }
+}
@@ -0,0 +1,154 @@
+package org.users.trace;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Times the stages of area queries, for a {@link QueryTrace} requested with the query and as JDK Flight
+ * Recorder events: "org.users.QueryStage" for each stage and "org.users.Query" for each traced query. Any
+ * recording, such as one started with {@code -XX:StartFlightRecording}, records them next to the GC and thread
+ * events unless its settings disable them.
+ *
+ * <p>The trace of a query is the current one of the thread running it, and is handed to the tasks it submits
+ * through an executor wrapped by {@link #propagating(Executor)}. Work a query does on other threads, such as
+ * the callbacks of completed futures, passes its trace explicitly. When no trace is current and no recording
+ * enables the events, starting a stage only checks both and returns a span that does nothing.
+ */
+public final class Tracing {
+
+    private static final ThreadLocal<QueryTrace> CURRENT = new ThreadLocal<>();
+    //whether an event is enabled is a property of its type, shared by every instance
+    private static final QueryStageEvent STAGE_EVENTS = new QueryStageEvent();
+    private static final QueryEvent QUERY_EVENTS = new QueryEvent();
+
+    private Tracing() {
+    }
+
+    /**
+     * Whether a JFR recording enables the stage events.
+     */
+    public static boolean isRecording() {
+        return STAGE_EVENTS.isEnabled();
+    }
+
+    /**
+     * The trace of the query running on this thread, or null.
+     */
+    public static QueryTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts timing a stage of the query running on this thread.
+     */
+    public static StageSpan start(final Stage stage) {
+        return start(CURRENT.get(), stage);
+    }
+
+    /**
+     * Starts timing a stage of the query, which may be null when it is not traced.
+     */
+    public static StageSpan start(final QueryTrace trace, final Stage stage) {
+        final boolean recording = STAGE_EVENTS.isEnabled();
+        if (trace == null && !recording) {
+            return StageSpan.NONE;
+        }
+        return new StageSpan(stage, trace, recording);
+    }
+
+    /**
+     * Starts the query with a new trace as the current one of this thread, returning its result with the
+     * trace. A failed query fails the future, its stages being left to the JFR events.
+     *
+     * @param query describes the query in its trace and events
+     * @param items counts the users of the result
+     */
+    public static <T> CompletableFuture<TracedResult<T>> traceAsync(final String query,
+                                                                    final Supplier<CompletableFuture<T>> start,
+                                                                    final ToIntFunction<? super T> items) {
+        final QueryTrace trace = new QueryTrace(query);
+        final QueryEvent event = QUERY_EVENTS.isEnabled() ? new QueryEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        final CompletableFuture<T> result;
+        final QueryTrace previous = CURRENT.get();
+        CURRENT.set(trace);
+        try {
+            result = start.get();
+        } finally {
+            restore(previous);
+        }
+        return result.whenComplete((value, failure) -> {
+            trace.complete();
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.query = query;
+                    event.items = failure == null ? items.applyAsInt(value) : -1;
+                    event.queryId = trace.getId();
+                    event.commit();
+                }
+            }
+        }).thenApply(value -> new TracedResult<>(value, trace));
+    }
+
+    /**
+     * Hands the trace current when a task is submitted to the thread running it, timing its
+     * {@link Stage#QUEUE_WAIT}.
+     */
+    public static Executor propagating(final Executor executor) {
+        if (executor instanceof PropagatingExecutor) {
+            return executor;
+        }
+        //wrapped, the common pool would no longer be swapped for a thread per task when it has a single thread
+        return new PropagatingExecutor(executor == ForkJoinPool.commonPool()
+                ? new CompletableFuture<Void>().defaultExecutor()
+                : executor);
+    }
+
+    private static void restore(final QueryTrace previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    private static final class PropagatingExecutor implements Executor {
+
+        private final Executor delegate;
+
+        private PropagatingExecutor(final Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(final Runnable task) {
+            final QueryTrace trace = CURRENT.get();
+            final StageSpan queued = start(trace, Stage.QUEUE_WAIT);
+            if (queued == StageSpan.NONE) {
+                delegate.execute(task);
+                return;
+            }
+            delegate.execute(() -> {
+                queued.end();
+                final QueryTrace previous = CURRENT.get();
+                CURRENT.set(trace);
+                try {
+                    task.run();
+                } finally {
+                    restore(previous);
+                }
+            });
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
@@ -8,17 +8,28 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.time.Duration;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.springframework.web.client.RestTemplate;
+import org.users.client.AsyncUsersClient;
 import org.users.client.UsersClient;
+import org.users.client.UsersRestTemplates;
 import org.users.client.model.User;
+import org.users.concurrent.Deadline;
 
 public class PeopleInAreaIntTest {
 
@@ -48,13 +59,19 @@ public class PeopleInAreaIntTest {
                 .withHeader(CONTENT_TYPE, equalTo(APPLICATION_JSON))
                 .willReturn(okJson("[" +
                         "    {" +
-                        "        \"id\": 4" +
+                        "        \"id\": 4," +
+                        "        \"latitude\": 51.5074," +
+                        "        \"longitude\": -0.1278" +
                         "    }," +
                         "    {" +
-                        "        \"id\": 5" +
+                        "        \"id\": 5," +
+                        "        \"latitude\": 51.5500," +
+                        "        \"longitude\": -0.0800" +
                         "    }," +
                         "    {" +
-                        "        \"id\": 6" +
+                        "        \"id\": 6," +
+                        "        \"latitude\": 51.4000," +
+                        "        \"longitude\": -0.2000" +
                         "    }" +
                         "]"))
         );
@@ -83,6 +100,29 @@ public class PeopleInAreaIntTest {
         assertEquals(6, london.size());
     }
 
+    @Test
+    public void shouldReturnResultsWithAsyncClient() throws ExecutionException, InterruptedException {
+
+        stubFor(get(urlPathEqualTo("/users/"))
+                .withHeader(ACCEPT, equalTo(APPLICATION_JSON))
+                .willReturn(okJson("[" +
+                        "    {\"id\": 4, \"latitude\": 51.5074, \"longitude\": -0.1278}," +
+                        "    {\"id\": 5, \"latitude\": 48.8566, \"longitude\": 2.3522}" +
+                        "]"))
+        );
+        stubFor(get(urlPathMatching("/city/london/users/"))
+                .withHeader(ACCEPT, equalTo(APPLICATION_JSON))
+                .willReturn(okJson("[{\"id\": 11}, {\"id\": 4}]"))
+        );
+        final PeopleInArea asyncPeopleInArea = PeopleInArea.builder(new AsyncUsersClient(ROOT_CONTEXT)).build();
+
+        //when
+        final Set<User> london = asyncPeopleInArea.findPeopleInAreaAsync("london", 12).get();
+
+        //then
+        assertEquals(Set.of(new User(4), new User(11)), london);
+    }
+
     @Test(expected = ExecutionException.class)
     public void shouldThrowExecutionExceptionWhenTimeoutOccurs() throws ExecutionException, InterruptedException {
         stubFor(get(urlPathEqualTo("/users/"))
@@ -110,4 +150,99 @@ public class PeopleInAreaIntTest {
         //when
         peopleInArea.findPeopleInArea("london", 12);
     }
+
+    @Test
+    public void shouldReturnPartialResultWhenCityLegMissesDeadline() throws ExecutionException, InterruptedException {
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(okJson("[{\"id\": 4, \"latitude\": 51.5074, \"longitude\": -0.1278}]"))
+        );
+        stubFor(get(urlPathMatching("/city/london/users/"))
+                .willReturn(okJson("[{\"id\": 11}]").withFixedDelay(3000))
+        );
+        final PeopleInArea asyncPeopleInArea = PeopleInArea.builder(new AsyncUsersClient(ROOT_CONTEXT)).build();
+        final long start = System.nanoTime();
+
+        //when
+        final AreaResult london = asyncPeopleInArea.findPeopleInArea("london", 12, Deadline.after(Duration.ofMillis(500)));
+
+        //then
+        assertTrue(london.isPartial());
+        assertEquals(Set.of(AreaResult.Leg.CITY), london.getMissingLegs());
+        assertEquals(Set.of(new User(4)), london.getUsers());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(2000)) < 0);
+    }
+
+    @Test
+    public void shouldReturnCompleteResultWithinDeadline() throws ExecutionException, InterruptedException {
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(okJson("[{\"id\": 4, \"latitude\": 51.5074, \"longitude\": -0.1278}]"))
+        );
+        stubFor(get(urlPathMatching("/city/london/users/"))
+                .willReturn(okJson("[{\"id\": 11}]"))
+        );
+        final PeopleInArea asyncPeopleInArea = PeopleInArea.builder(new AsyncUsersClient(ROOT_CONTEXT)).build();
+
+        //when
+        final AreaResult london = asyncPeopleInArea.findPeopleInArea("london", 12, Deadline.after(Duration.ofSeconds(5)));
+
+        //then
+        assertFalse(london.isPartial());
+        assertEquals(Set.of(new User(4), new User(11)), london.getUsers());
+    }
+
+    @Test
+    public void shouldAbortBlockingDownloadsWhenSubscriptionCancelled() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(okJson("[{\"id\": 4, \"latitude\": 51.5074, \"longitude\": -0.1278}]").withFixedDelay(5000))
+        );
+        stubFor(get(urlPathMatching("/city/london/users/"))
+                .willReturn(okJson("[{\"id\": 11}]").withFixedDelay(5000))
+        );
+        final ExecutorService workers = Executors.newFixedThreadPool(2);
+        try {
+            final PeopleInArea pooledPeopleInArea = PeopleInArea.builder(
+                    new UsersClient(ROOT_CONTEXT, UsersRestTemplates.pooled())).executor(workers).build();
+            final Flow.Subscription[] subscription = new Flow.Subscription[1];
+            pooledPeopleInArea.publishPeopleInArea("london", 12).subscribe(new Flow.Subscriber<User>() {
+                @Override
+                public void onSubscribe(final Flow.Subscription s) {
+                    subscription[0] = s;
+                    s.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(final User user) {
+                }
+
+                @Override
+                public void onError(final Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            Thread.sleep(300);
+
+            //when
+            subscription[0].cancel();
+
+            //then
+            final CountDownLatch free = new CountDownLatch(2);
+            for (int worker = 0; worker < 2; worker++) {
+                workers.execute(() -> {
+                    free.countDown();
+                    try {
+                        free.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(free.await(1, TimeUnit.SECONDS));
+        } finally {
+            workers.shutdownNow();
+        }
+    }
 }
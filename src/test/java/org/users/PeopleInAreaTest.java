@@ -1,22 +1,56 @@
 package org.users;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.users.cache.CoalescingCache;
+import org.users.concurrent.Deadline;
+import org.users.concurrent.QueryExecutor;
 import org.users.client.UserClientException;
 import org.users.client.UsersClient;
 import org.users.client.model.User;
+import org.users.dataset.ColumnarUsersDataset;
+import org.users.trace.QueryTrace;
+import org.users.trace.Stage;
+import org.users.trace.StageTiming;
+import org.users.trace.TracedResult;
 
 public class PeopleInAreaTest {
 
@@ -28,6 +62,11 @@ public class PeopleInAreaTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        //the async calls run the mocked blocking ones on the executor
+        doCallRealMethod().when(usersClient).streamAllUsersAsync(any(Consumer.class), any(Deadline.class),
+                any(Executor.class));
+        doCallRealMethod().when(usersClient).getUsersByCityAsync(anyString(), any(Deadline.class),
+                any(Executor.class));
         peopleInArea = new PeopleInArea(usersClient);
     }
 
@@ -37,16 +76,70 @@ public class PeopleInAreaTest {
         List<User> userListByCity = List.of(new User(1), new User(2), new User(3));
         when(usersClient.getUsersByCity(anyString())).thenReturn(userListByCity);
 
-        List<User> userListByVicinity = List.of(new User(14), new User(15), new User(3), new User(2));
-        when(usersClient.getAllUsers()).thenReturn(userListByVicinity);
+        List<User> userListByVicinity = List.of(new User(14, 51.51, -0.12), new User(15, 51.45, -0.05),
+                new User(3, 51.52, -0.10), new User(2, 51.49, -0.20), new User(16, 52.48, -1.89), new User(17));
+        givenAllUsers(userListByVicinity);
 
         //when
         final Set<User> london = peopleInArea.findPeopleInArea("London", 12);
 
         //then
-        assertEquals(5, london.size());
+        assertEquals(Set.of(new User(1), new User(2), new User(3), new User(14), new User(15)), london);
         verify(usersClient,times(1)).getUsersByCity(anyString());
-        verify(usersClient,times(1)).getAllUsers();
+        verify(usersClient,times(1)).streamAllUsers(any(Consumer.class));
+    }
+
+    @Test
+    public void shouldShareUpstreamCallsBetweenConcurrentQueriesForTheSameArea() throws Exception {
+        //given
+        final CountDownLatch release = new CountDownLatch(1);
+        when(usersClient.getUsersByCity(anyString())).thenAnswer(invocation -> {
+            release.await();
+            return List.of(new User(1));
+        });
+        givenAllUsers(List.of(new User(14, 51.51, -0.12)));
+        final PeopleInArea cachedPeopleInArea = PeopleInArea.builder(usersClient)
+                .cityCache(new CoalescingCache<>(100, Duration.ofMinutes(1)))
+                .areaCache(new CoalescingCache<>(100, Duration.ofMinutes(1)))
+                .build();
+        final ExecutorService callers = Executors.newFixedThreadPool(8);
+        final List<Future<Set<User>>> results = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(() -> cachedPeopleInArea.findPeopleInArea("London", 50)));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        //then
+        for (Future<Set<User>> result : results) {
+            assertEquals(Set.of(new User(1), new User(14)), result.get());
+        }
+        callers.shutdown();
+        verify(usersClient, times(1)).getUsersByCity("London");
+        verify(usersClient, times(1)).streamAllUsers(any(Consumer.class));
+    }
+
+    @Test
+    public void shouldRunBlockingCallsOnConfiguredExecutor() throws ExecutionException, InterruptedException {
+        //given
+        final List<String> threads = new ArrayList<>();
+        when(usersClient.getUsersByCity(anyString())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return List.of(new User(1));
+        });
+        givenAllUsers(List.of(new User(14, 51.51, -0.12)));
+        try (QueryExecutor executor = QueryExecutor.bounded("area-query", 2, 10, QueryExecutor.RejectionPolicy.ABORT)) {
+            final PeopleInArea isolatedPeopleInArea = PeopleInArea.builder(usersClient).executor(executor).build();
+
+            //when
+            final Set<User> london = isolatedPeopleInArea.findPeopleInArea("London", 12);
+
+            //then
+            assertEquals(Set.of(new User(1), new User(14)), london);
+            assertTrue(threads.get(0).startsWith("area-query-"));
+        }
     }
 
     @Test(expected = ExecutionException.class)
@@ -55,7 +148,7 @@ public class PeopleInAreaTest {
         //given
         when(usersClient.getUsersByCity(anyString())).thenThrow(UserClientException.class);
         List<User> userListByVicinity = List.of(new User(14), new User(15), new User(3), new User(2));
-        when(usersClient.getAllUsers()).thenReturn(userListByVicinity);
+        givenAllUsers(userListByVicinity);
 
         //when and then
         peopleInArea.findPeopleInArea("Munich", 12);
@@ -67,9 +160,374 @@ public class PeopleInAreaTest {
         //given
         List<User> userListByCity = List.of(new User(1), new User(2), new User(3));
         when(usersClient.getUsersByCity(anyString())).thenReturn(userListByCity);
-        when(usersClient.getAllUsers()).thenThrow(UserClientException.class);
+        doThrow(UserClientException.class).when(usersClient).streamAllUsers(any(Consumer.class));
 
         //when and then
         peopleInArea.findPeopleInArea("Zurich", 12);
     }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldQueryAllAreasWithOneDownloadOfAllUsers() throws ExecutionException, InterruptedException {
+        //given
+        when(usersClient.getUsersByCity("London")).thenReturn(List.of(new User(1)));
+        when(usersClient.getUsersByCity("Paris")).thenReturn(List.of(new User(2)));
+        when(usersClient.getUsersByCity("Atlantis")).thenReturn(List.of(new User(3)));
+        givenAllUsers(List.of(new User(14, 51.51, -0.12), new User(15, 48.85, 2.35), new User(16, 52.48, -1.89),
+                new User(17)));
+        final Map<String, Integer> cityToMiles = new LinkedHashMap<>();
+        cityToMiles.put("London", 12);
+        cityToMiles.put("Paris", 10);
+        cityToMiles.put("Atlantis", 50);
+
+        //when
+        final Map<String, Set<User>> areas = peopleInArea.findPeopleInAreas(cityToMiles);
+
+        //then
+        assertEquals(List.of("London", "Paris", "Atlantis"), new ArrayList<>(areas.keySet()));
+        assertEquals(Set.of(new User(1), new User(14)), areas.get("London"));
+        assertEquals(Set.of(new User(2), new User(15)), areas.get("Paris"));
+        assertEquals(Set.of(new User(3)), areas.get("Atlantis"));
+        verify(usersClient, times(1)).streamAllUsers(any(Consumer.class));
+        verify(usersClient, times(3)).getUsersByCity(anyString());
+    }
+
+    @Test
+    public void shouldReturnNearestPeopleSortedByDistance() throws ExecutionException, InterruptedException {
+        //given
+        givenAllUsers(List.of(new User(14, 51.60, -0.12), new User(15, 51.51, -0.12), new User(16, 52.48, -1.89),
+                new User(17), new User(18, 51.55, -0.12), new User(19, 51.50, -0.13)));
+
+        //when
+        final List<User> nearest = peopleInArea.findNearestPeople("London", 3, 50);
+
+        //then
+        assertEquals(List.of(new User(15), new User(19), new User(18)), nearest);
+        verify(usersClient, times(0)).getUsersByCity(anyString());
+    }
+
+    @Test
+    public void shouldSelectNearestPeopleFromColumnarDataset() throws ExecutionException, InterruptedException {
+        //given
+        final ColumnarUsersDataset.Builder builder = ColumnarUsersDataset.builder().nearestParallelism(3);
+        for (int i = 0; i < 1000; i++) {
+            builder.add(i, 51.5 + i * 0.001, -0.12);
+        }
+        final PeopleInArea columnarPeopleInArea = new PeopleInArea(usersClient, builder.build());
+
+        //when
+        final List<User> nearest = columnarPeopleInArea.findNearestPeople("London", 5, 50);
+        final List<User> nobody = columnarPeopleInArea.findNearestPeople("Atlantis", 5, 50);
+
+        //then
+        assertEquals(List.of(new User(7), new User(8), new User(6), new User(9), new User(5)), nearest);
+        assertEquals(List.of(), nobody);
+    }
+
+    @Test
+    public void shouldTraceStagesOfQuery() throws ExecutionException, InterruptedException {
+        //given
+        when(usersClient.getUsersByCity(anyString())).thenReturn(List.of(new User(1), new User(2)));
+        final ColumnarUsersDataset.Builder builder = ColumnarUsersDataset.builder();
+        for (int i = 0; i < 100; i++) {
+            builder.add(i, 51.5 + i * 0.001, -0.12);
+        }
+        try (QueryExecutor executor = QueryExecutor.bounded("area-query", 2, 10, QueryExecutor.RejectionPolicy.ABORT)) {
+            final PeopleInArea tracedPeopleInArea = PeopleInArea.builder(usersClient)
+                    .usersDataset(builder.build())
+                    .executor(executor)
+                    .build();
+
+            //when
+            final TracedResult<Set<User>> london = tracedPeopleInArea.findPeopleInAreaTraced("London", 20);
+
+            //then
+            final QueryTrace trace = london.getTrace();
+            final Map<Stage, StageTiming> stages = new EnumMap<>(Stage.class);
+            trace.getStages().forEach(timing -> stages.put(timing.getStage(), timing));
+            assertEquals(Set.of(Stage.QUEUE_WAIT, Stage.VICINITY_FILTER, Stage.MERGE), stages.keySet());
+            assertTrue(stages.get(Stage.QUEUE_WAIT).getThreadName().startsWith("area-query-"));
+            assertEquals(100, stages.get(Stage.VICINITY_FILTER).getItems());
+            assertEquals(100, stages.get(Stage.MERGE).getItems());
+            assertEquals(100, london.getResult().size());
+            assertTrue(trace.getElapsedNanos() >= trace.getTotalNanos(Stage.MERGE));
+        }
+    }
+
+    @Test
+    public void shouldReturnVicinityOnlyWhenBlockingCityCallMissesDeadline() throws ExecutionException, InterruptedException {
+        //given
+        final CountDownLatch release = new CountDownLatch(1);
+        when(usersClient.getUsersByCity(anyString())).thenAnswer(invocation -> {
+            release.await();
+            return List.of(new User(1));
+        });
+        givenAllUsers(List.of(new User(14, 51.51, -0.12), new User(16, 52.48, -1.89)));
+
+        //when
+        final AreaResult london = peopleInArea.findPeopleInArea("London", 12, Deadline.after(Duration.ofMillis(200)));
+        release.countDown();
+
+        //then
+        assertTrue(london.isPartial());
+        assertEquals(Set.of(AreaResult.Leg.CITY), london.getMissingLegs());
+        assertEquals(Set.of(new User(14)), london.getUsers());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void shouldFailDeadlineQueryWhenLegFailsInTime() throws ExecutionException, InterruptedException {
+        //given
+        when(usersClient.getUsersByCity(anyString())).thenThrow(UserClientException.class);
+        givenAllUsers(List.of(new User(14, 51.51, -0.12)));
+
+        //when
+        peopleInArea.findPeopleInArea("London", 12, Deadline.after(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void shouldPublishEachUserOnceAndComplete() throws InterruptedException {
+        //given
+        when(usersClient.getUsersByCity(anyString())).thenReturn(List.of(new User(1), new User(14)));
+        givenAllUsers(List.of(new User(14, 51.51, -0.12), new User(15, 51.45, -0.05), new User(16, 52.48, -1.89)));
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        //when
+        peopleInArea.publishPeopleInArea("London", 12).subscribe(subscriber);
+
+        //then
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(3, subscriber.users.size());
+        assertEquals(Set.of(new User(1), new User(14), new User(15)), new HashSet<>(subscriber.users));
+    }
+
+    @Test
+    public void shouldPublishNoMoreUsersThanRequested() throws InterruptedException {
+        //given
+        when(usersClient.getUsersByCity(anyString())).thenReturn(List.of(new User(1), new User(2), new User(3)));
+        givenAllUsers(List.of());
+        final RecordingSubscriber subscriber = new RecordingSubscriber(1);
+
+        //when
+        peopleInArea.publishPeopleInArea("London", 12).subscribe(subscriber);
+        Thread.sleep(200);
+        final int beforeRequest = subscriber.users.size();
+        subscriber.subscription.request(2);
+
+        //then
+        assertEquals(1, beforeRequest);
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(3, subscriber.users.size());
+    }
+
+    @Test
+    public void shouldPublishVicinityUsersBeforeCityLegCompletes() throws InterruptedException {
+        //given
+        final CountDownLatch release = new CountDownLatch(1);
+        when(usersClient.getUsersByCity(anyString())).thenAnswer(invocation -> {
+            release.await();
+            return List.of(new User(1));
+        });
+        givenAllUsers(List.of(new User(14, 51.51, -0.12)));
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        //when
+        peopleInArea.publishPeopleInArea("London", 12).subscribe(subscriber);
+
+        //then
+        assertEquals(new User(14), subscriber.received.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, subscriber.completed.getCount());
+        release.countDown();
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldPauseVicinityDownloadWhileSubscriberLagsBehind() throws InterruptedException {
+        //given
+        when(usersClient.getUsersByCity(anyString())).thenReturn(List.of());
+        final List<User> all = new ArrayList<>();
+        for (int id = 0; id < 10_000; id++) {
+            all.add(new User(id, 51.51, -0.12));
+        }
+        final AtomicInteger streamed = new AtomicInteger();
+        doAnswer(invocation -> {
+            final Consumer<User> consumer = (Consumer<User>) invocation.getArguments()[0];
+            for (User user : all) {
+                consumer.accept(user);
+                streamed.incrementAndGet();
+            }
+            return null;
+        }).when(usersClient).streamAllUsers(any(Consumer.class));
+        final RecordingSubscriber subscriber = new RecordingSubscriber(1);
+
+        //when
+        peopleInArea.publishPeopleInArea("London", 12).subscribe(subscriber);
+        Thread.sleep(300);
+        final int streamedBeforeRequest = streamed.get();
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        //then
+        assertTrue(streamedBeforeRequest + " users streamed ahead of demand",
+                streamedBeforeRequest <= UsersSubscription.CAPACITY + 1);
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(all.size(), subscriber.users.size());
+    }
+
+    @Test
+    public void shouldNotQueryWhenCancelledOnSubscribe() throws InterruptedException {
+        //given
+        final CountDownLatch subscribed = new CountDownLatch(1);
+
+        //when
+        peopleInArea.publishPeopleInArea("London", 12).subscribe(new Flow.Subscriber<User>() {
+            @Override
+            public void onSubscribe(final Flow.Subscription subscription) {
+                subscription.cancel();
+                subscribed.countDown();
+            }
+
+            @Override
+            public void onNext(final User user) {
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        //then
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        verify(usersClient, never()).getUsersByCity(anyString());
+        verify(usersClient, never()).streamAllUsers(any(Consumer.class));
+    }
+
+    @Test
+    public void shouldAbortVicinityDownloadWhenCancelled() throws InterruptedException {
+        //given
+        when(usersClient.getUsersByCity(anyString())).thenReturn(List.of());
+        final List<User> all = new ArrayList<>();
+        for (int id = 0; id < 10_000; id++) {
+            all.add(new User(id, 51.51, -0.12));
+        }
+        final AtomicInteger streamed = new AtomicInteger();
+        final CountDownLatch aborted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            final Consumer<User> consumer = (Consumer<User>) invocation.getArguments()[0];
+            try {
+                for (User user : all) {
+                    consumer.accept(user);
+                    streamed.incrementAndGet();
+                    Thread.sleep(1);
+                }
+            } finally {
+                aborted.countDown();
+            }
+            return null;
+        }).when(usersClient).streamAllUsers(any(Consumer.class));
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        //when
+        peopleInArea.publishPeopleInArea("London", 12).subscribe(subscriber);
+        subscriber.received.poll(5, TimeUnit.SECONDS);
+        subscriber.subscription.cancel();
+
+        //then
+        assertTrue(aborted.await(5, TimeUnit.SECONDS));
+        assertTrue(streamed.get() < all.size());
+        assertEquals(1, subscriber.completed.getCount());
+    }
+
+    @Test
+    public void shouldCompleteSlowSubscriberHoldingBackDownloadLongerThanTimeout() throws InterruptedException {
+        //given
+        when(usersClient.getUsersByCity(anyString())).thenReturn(List.of());
+        final List<User> all = new ArrayList<>();
+        for (int id = 0; id < 5_000; id++) {
+            all.add(new User(id, 51.51, -0.12));
+        }
+        givenAllUsers(all);
+        final RecordingSubscriber subscriber = new RecordingSubscriber(200);
+
+        //when
+        peopleInArea.publishPeopleInArea("London", 12).subscribe(subscriber);
+        for (int batch = 0; batch < 40 && subscriber.completed.getCount() > 0; batch++) {
+            Thread.sleep(200);
+            subscriber.subscription.request(200);
+        }
+
+        //then
+        assertNull(subscriber.errors.poll());
+        assertEquals(0, subscriber.completed.getCount());
+        assertEquals(all.size(), subscriber.users.size());
+    }
+
+    @Test
+    public void shouldFailSubscriberWhenLegsFindNoUsersForTimeout() throws InterruptedException {
+        //given
+        final CountDownLatch release = new CountDownLatch(1);
+        when(usersClient.getUsersByCity(anyString())).thenAnswer(invocation -> {
+            release.await();
+            return List.of(new User(1));
+        });
+        givenAllUsers(List.of(new User(14, 51.51, -0.12)));
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        //when
+        peopleInArea.publishPeopleInArea("London", 12).subscribe(subscriber);
+
+        //then
+        try {
+            assertTrue(subscriber.errors.poll(PeopleInArea.TIMEOUT + 2, TimeUnit.SECONDS) instanceof TimeoutException);
+            assertEquals(List.of(new User(14)), subscriber.users);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<User> {
+
+        private final long initialDemand;
+        private final List<User> users = new CopyOnWriteArrayList<>();
+        private final BlockingQueue<User> received = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+
+        private RecordingSubscriber(final long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(final User user) {
+            users.add(user);
+            received.add(user);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            errors.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+    private void givenAllUsers(final List<User> users) {
+        doAnswer(invocation -> {
+            users.forEach((Consumer<User>) invocation.getArguments()[0]);
+            return null;
+        }).when(usersClient).streamAllUsers(any(Consumer.class));
+    }
 }
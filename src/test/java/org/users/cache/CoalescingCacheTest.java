@@ -0,0 +1,157 @@
+package org.users.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class CoalescingCacheTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final ExecutorService executor = Executors.newFixedThreadPool(32);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldServeLoadedValueUntilItExpires() {
+        //given
+        final CoalescingCache<String, String> cache = new CoalescingCache<>(10, Duration.ofSeconds(5), nanoTime::get);
+
+        //when
+        cache.get("London", this::load);
+        nanoTime.addAndGet(Duration.ofSeconds(4).toNanos());
+        final String cached = cache.get("London", this::load);
+        nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+        final String reloaded = cache.get("London", this::load);
+
+        //then
+        assertEquals("London-1", cached);
+        assertEquals("London-2", reloaded);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntryWhenFull() {
+        //given
+        final CoalescingCache<String, String> cache = new CoalescingCache<>(2, Duration.ofMinutes(1), nanoTime::get);
+        cache.get("London", this::load);
+        cache.get("Paris", this::load);
+        cache.get("London", this::load);
+
+        //when
+        cache.get("Rome", this::load);
+
+        //then
+        assertEquals(2, cache.size());
+        assertNull(cache.getIfPresent("Paris"));
+        assertEquals("London-1", cache.getIfPresent("London"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void shouldShareOneLoadBetweenConcurrentCallers() throws Exception {
+        //given
+        final CoalescingCache<String, String> cache = new CoalescingCache<>(10, Duration.ofMinutes(1));
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Future<String>> results = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 32; i++) {
+            results.add(executor.submit(() -> cache.get("London", key -> {
+                await(release);
+                return load(key);
+            })));
+        }
+        while (cache.getMissCount() + cache.getCoalescedCount() < 32) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        //then
+        for (Future<String> result : results) {
+            assertEquals("London-1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(31, cache.getCoalescedCount());
+    }
+
+    @Test
+    public void shouldPropagateFailureToAllCallersWithoutCachingIt() throws Exception {
+        //given
+        final CoalescingCache<String, String> cache = new CoalescingCache<>(10, Duration.ofMinutes(1));
+        final CompletableFuture<String> upstream = new CompletableFuture<>();
+        final CompletableFuture<String> first = cache.getAsync("London", key -> upstream);
+        final CompletableFuture<String> second = cache.getAsync("London", key -> unexpectedLoad());
+
+        //when
+        upstream.completeExceptionally(new IllegalStateException("boom"));
+
+        //then
+        assertFailed(first);
+        assertFailed(second);
+        assertEquals("London-1", cache.get("London", this::load));
+    }
+
+    @Test
+    public void shouldNotCancelSharedLoadWhenOneCallerCancels() {
+        //given
+        final CoalescingCache<String, String> cache = new CoalescingCache<>(10, Duration.ofMinutes(1));
+        final CompletableFuture<String> upstream = new CompletableFuture<>();
+        final CompletableFuture<String> first = cache.getAsync("London", key -> upstream);
+        final CompletableFuture<String> second = cache.getAsync("London", key -> unexpectedLoad());
+
+        //when
+        first.cancel(true);
+        upstream.complete("London-0");
+
+        //then
+        assertEquals("London-0", second.join());
+        assertEquals("London-0", cache.getIfPresent("London"));
+    }
+
+    private String load(final String key) {
+        return key + "-" + loads.incrementAndGet();
+    }
+
+    private static <T> T unexpectedLoad() {
+        throw new AssertionError("loader must not be called");
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void assertFailed(final CompletableFuture<String> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
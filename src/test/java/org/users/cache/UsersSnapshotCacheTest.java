@@ -0,0 +1,233 @@
+package org.users.cache;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.absent;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.web.client.RestTemplate;
+import org.users.client.UserClientException;
+import org.users.client.UsersClient;
+import org.users.client.model.User;
+import org.users.geo.GeoCircle;
+import org.users.geo.GeoPoint;
+
+public class UsersSnapshotCacheTest {
+
+    public static final String ROOT_CONTEXT = "http://127.0.0.1:8090";
+    public static final String IF_NONE_MATCH = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    public static final String ETAG = "\"v1\"";
+    public static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+    private static final GeoCircle AROUND_LONDON = new GeoCircle(new GeoPoint(51.5074, -0.1278), 50);
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(wireMockConfig().port(8090).gzipDisabled(true));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private UsersSnapshotCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new UsersSnapshotCache(new UsersClient(ROOT_CONTEXT, new RestTemplate()), Duration.ofMinutes(10));
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    public void shouldDownloadOnceAndServeFromSnapshot() {
+        //given
+        givenUsers("[{\"id\": 1, \"latitude\": 51.5, \"longitude\": -0.1}, {\"id\": 2, \"latitude\": 48.8, \"longitude\": 2.3}]");
+
+        //when
+        final List<User> first = cache.findWithin(AROUND_LONDON);
+        final List<User> second = cache.findWithin(AROUND_LONDON);
+
+        //then
+        assertEquals(List.of(new User(1)), first);
+        assertEquals(List.of(new User(1)), second);
+        verify(1, getRequestedFor(urlPathEqualTo("/users/")));
+        assertEquals(1, cache.getStats().getMisses());
+        assertEquals(1, cache.getStats().getHits());
+    }
+
+    @Test
+    public void shouldRevalidateWithValidatorsAndKeepSnapshotWhenNotModified() {
+        //given
+        givenUsers("[{\"id\": 1, \"latitude\": 51.5, \"longitude\": -0.1}]");
+        cache.refresh();
+        stubFor(get(urlPathEqualTo("/users/"))
+                .withHeader(IF_NONE_MATCH, equalTo(ETAG))
+                .withHeader(IF_MODIFIED_SINCE, equalTo(LAST_MODIFIED))
+                .willReturn(aResponse().withStatus(304)));
+
+        //when
+        cache.refresh();
+
+        //then
+        assertEquals(List.of(new User(1)), cache.findWithin(AROUND_LONDON));
+        verify(getRequestedFor(urlPathEqualTo("/users/")).withHeader(IF_NONE_MATCH, absent()));
+        verify(getRequestedFor(urlPathEqualTo("/users/")).withHeader(IF_NONE_MATCH, equalTo(ETAG)));
+        assertEquals(2, cache.getStats().getRefreshes());
+        assertEquals(1, cache.getStats().getNotModified());
+        assertEquals(0, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void shouldReplaceSnapshotWhenModified() {
+        //given
+        givenUsers("[{\"id\": 1, \"latitude\": 51.5, \"longitude\": -0.1}]");
+        cache.refresh();
+        givenUsers("[{\"id\": 3, \"latitude\": 51.6, \"longitude\": -0.1}]");
+
+        //when
+        cache.refresh();
+
+        //then
+        assertEquals(List.of(new User(3)), cache.findWithin(AROUND_LONDON));
+        assertEquals(1, cache.getSyncStats().getLastDelta().getInserted());
+        assertEquals(1, cache.getSyncStats().getLastDelta().getDeleted());
+    }
+
+    @Test
+    public void shouldServeStaleSnapshotWhenRefreshFails() {
+        //given
+        givenUsers("[{\"id\": 1, \"latitude\": 51.5, \"longitude\": -0.1}]");
+        cache.refresh();
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(aResponse().withStatus(500)));
+
+        //when
+        try {
+            cache.refresh();
+        } catch (UserClientException expected) {
+            //stale data is kept
+        }
+
+        //then
+        assertEquals(List.of(new User(1)), cache.findWithin(AROUND_LONDON));
+        assertEquals(1, cache.getStats().getRefreshFailures());
+    }
+
+    @Test
+    public void shouldShareRefreshInFlightWithConcurrentCallers() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(okJson("[{\"id\": 1, \"latitude\": 51.5, \"longitude\": -0.1}]")
+                        .withFixedDelay(500)));
+        final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+        try {
+            //when
+            final CompletableFuture<Void> first = CompletableFuture.runAsync(cache::refresh, callers);
+            final CompletableFuture<Void> second = CompletableFuture.runAsync(cache::refresh, callers);
+            CompletableFuture.allOf(first, second).get();
+        } finally {
+            callers.shutdown();
+        }
+
+        //then
+        verify(1, getRequestedFor(urlPathEqualTo("/users/")));
+        assertEquals(1, cache.getStats().getRefreshes());
+        assertEquals(List.of(new User(1)), cache.getUsers());
+    }
+
+    @Test
+    public void shouldRefreshInBackground() throws InterruptedException {
+        //given
+        givenUsers("[{\"id\": 1, \"latitude\": 51.5, \"longitude\": -0.1}]");
+
+        //when
+        cache.start();
+        for (int i = 0; i < 100 && !cache.getLoadedAt().isPresent(); i++) {
+            Thread.sleep(50);
+        }
+
+        //then
+        assertTrue(cache.getLoadedAt().isPresent());
+        assertEquals(List.of(new User(1)), cache.findWithin(AROUND_LONDON));
+        assertEquals(0, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void shouldServeSavedSnapshotAfterRestartWhileRevalidating() throws InterruptedException {
+        //given
+        final UsersSnapshotFile snapshotFile = new UsersSnapshotFile(folder.getRoot().toPath().resolve("users.snapshot"));
+        givenUsers("[{\"id\": 1, \"latitude\": 51.5, \"longitude\": -0.1}]");
+        try (UsersSnapshotCache previous = newCache(snapshotFile)) {
+            previous.refresh();
+        }
+        stubFor(get(urlPathEqualTo("/users/"))
+                .withHeader(IF_NONE_MATCH, equalTo(ETAG))
+                .willReturn(aResponse().withStatus(304).withFixedDelay(500)));
+
+        try (UsersSnapshotCache restarted = newCache(snapshotFile)) {
+            //when
+            final List<User> users = restarted.findWithin(AROUND_LONDON);
+            for (int i = 0; i < 100 && restarted.getStats().getNotModified() == 0; i++) {
+                Thread.sleep(50);
+            }
+
+            //then
+            assertEquals(List.of(new User(1)), users);
+            assertEquals(1, restarted.getStats().getNotModified());
+            verify(1, getRequestedFor(urlPathEqualTo("/users/")).withHeader(IF_NONE_MATCH, equalTo(ETAG)));
+        }
+    }
+
+    @Test
+    public void shouldDownloadWhenSnapshotFileIsCorrupt() throws IOException {
+        //given
+        final UsersSnapshotFile snapshotFile = new UsersSnapshotFile(folder.getRoot().toPath().resolve("users.snapshot"));
+        Files.write(snapshotFile.getPath(), new byte[]{1, 2, 3});
+        givenUsers("[{\"id\": 1, \"latitude\": 51.5, \"longitude\": -0.1}]");
+
+        try (UsersSnapshotCache restarted = newCache(snapshotFile)) {
+            //when
+            final List<User> users = restarted.start().findWithin(AROUND_LONDON);
+
+            //then
+            assertEquals(List.of(new User(1)), users);
+            assertEquals(1, restarted.getStats().getSnapshotFileFailures());
+            assertEquals(List.of(new User(1)), snapshotFile.read().get().getUsers().getUsers());
+        }
+    }
+
+    private UsersSnapshotCache newCache(final UsersSnapshotFile snapshotFile) {
+        return new UsersSnapshotCache(new UsersClient(ROOT_CONTEXT, new RestTemplate()), Duration.ofMinutes(10),
+                snapshotFile);
+    }
+
+    private void givenUsers(final String json) {
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(okJson(json)
+                        .withHeader("ETag", ETAG)
+                        .withHeader("Last-Modified", LAST_MODIFIED)));
+    }
+}
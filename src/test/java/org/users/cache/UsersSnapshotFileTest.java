@@ -0,0 +1,145 @@
+package org.users.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.users.client.VersionedUsers;
+import org.users.client.model.User;
+import org.users.geo.GeoCircle;
+import org.users.geo.GeoPoint;
+
+public class UsersSnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private UsersSnapshotFile snapshotFile;
+
+    @Before
+    public void setUp() {
+        snapshotFile = new UsersSnapshotFile(folder.getRoot().toPath().resolve("users.snapshot"));
+    }
+
+    @Test
+    public void shouldReadBackWrittenUsersAndValidators() throws IOException {
+        //given
+        final Instant before = Instant.now().minusSeconds(1);
+        snapshotFile.write(new VersionedUsers(List.of(new User(1, 51.5, -0.1), new User(2)), "\"v1\"", null));
+
+        //when
+        final UsersSnapshotFile.Contents contents = snapshotFile.read().get();
+
+        //then
+        final List<User> users = contents.getUsers().getUsers();
+        assertEquals(List.of(new User(1), new User(2)), users);
+        assertEquals(51.5, users.get(0).getLatitude(), 0);
+        assertEquals(-0.1, users.get(0).getLongitude(), 0);
+        assertFalse(users.get(1).hasLocation());
+        assertEquals("\"v1\"", contents.getUsers().getETag());
+        assertNull(contents.getUsers().getLastModified());
+        assertTrue(contents.getSavedAt().isAfter(before));
+    }
+
+    @Test
+    public void shouldQuerySavedColumnsWithoutSortingThem() throws IOException {
+        //given
+        snapshotFile.write(new VersionedUsers(List.of(new User(1, 48.8, 2.3), new User(2, 51.5, -0.1),
+                new User(3), new User(4, 51.6, -0.1)), null, null));
+
+        //when
+        final UsersSnapshotFile.Contents contents = snapshotFile.read().get();
+
+        //then
+        final GeoCircle aroundLondon = new GeoCircle(new GeoPoint(51.5074, -0.1278), 50);
+        assertEquals(Set.of(new User(2), new User(4)), Set.copyOf(contents.getDataset().findWithin(aroundLondon)));
+        final List<User> users = contents.getUsers().getUsers();
+        assertEquals(Set.of(new User(1), new User(2), new User(3), new User(4)), Set.copyOf(users));
+        assertFalse(users.get(3).hasLocation());
+    }
+
+    @Test
+    public void shouldReadNothingWithoutFile() throws IOException {
+        //when
+        final boolean present = snapshotFile.read().isPresent();
+
+        //then
+        assertFalse(present);
+    }
+
+    @Test(expected = UsersSnapshotFile.CorruptSnapshotException.class)
+    public void shouldRejectFileFailingChecksum() throws IOException {
+        //given
+        snapshotFile.write(new VersionedUsers(List.of(new User(1, 51.5, -0.1)), null, null));
+        final byte[] bytes = Files.readAllBytes(snapshotFile.getPath());
+        bytes[bytes.length - 12] ^= 1;
+        Files.write(snapshotFile.getPath(), bytes);
+
+        //when
+        snapshotFile.read();
+    }
+
+    @Test(expected = UsersSnapshotFile.CorruptSnapshotException.class)
+    public void shouldRejectTruncatedFile() throws IOException {
+        //given
+        snapshotFile.write(new VersionedUsers(List.of(new User(1, 51.5, -0.1)), null, null));
+        final byte[] bytes = Files.readAllBytes(snapshotFile.getPath());
+        Files.write(snapshotFile.getPath(), Arrays.copyOf(bytes, 10));
+
+        //when
+        snapshotFile.read();
+    }
+
+    @Test(expected = UsersSnapshotFile.CorruptSnapshotException.class)
+    public void shouldRejectColumnsOutOfCellOrder() throws IOException {
+        //given
+        final Path path = snapshotFile.getPath();
+        snapshotFile.write(new VersionedUsers(List.of(new User(1, -33.9, 151.2), new User(2, 51.5, -0.1)), null,
+                null));
+        final ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+        final int latitudes = bytes.capacity() - Long.BYTES - 4 * Double.BYTES;
+        for (int column = latitudes; column < latitudes + 4 * Double.BYTES; column += 2 * Double.BYTES) {
+            final double first = bytes.getDouble(column);
+            bytes.putDouble(column, bytes.getDouble(column + Double.BYTES));
+            bytes.putDouble(column + Double.BYTES, first);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bytes.array(), 0, bytes.capacity() - Long.BYTES);
+        bytes.putLong(bytes.capacity() - Long.BYTES, crc.getValue());
+        Files.write(path, bytes.array());
+
+        //when
+        snapshotFile.read();
+    }
+
+    @Test(expected = UsersSnapshotFile.CorruptSnapshotException.class)
+    public void shouldRejectOtherVersion() throws IOException {
+        //given
+        final Path path = snapshotFile.getPath();
+        snapshotFile.write(new VersionedUsers(List.of(), null, null));
+        final ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+        bytes.putInt(Integer.BYTES, UsersSnapshotFile.VERSION + 1);
+        final CRC32 crc = new CRC32();
+        crc.update(bytes.array(), 0, bytes.capacity() - Long.BYTES);
+        bytes.putLong(bytes.capacity() - Long.BYTES, crc.getValue());
+        Files.write(path, bytes.array());
+
+        //when
+        snapshotFile.read();
+    }
+}
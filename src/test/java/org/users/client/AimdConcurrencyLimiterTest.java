@@ -0,0 +1,57 @@
+package org.users.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+public class AimdConcurrencyLimiterTest {
+
+    @Test
+    public void shouldGrowLimitOnlyWhileItIsUsed() {
+        //given
+        final AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(2, 1, 10, Duration.ofSeconds(1));
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(System.nanoTime(), 0);
+        }
+        final int limitWhenHalfUsed = limiter.getLimit();
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.tryAcquire();
+            limiter.onSuccess(System.nanoTime(), 0);
+            limiter.onSuccess(System.nanoTime(), 0);
+        }
+
+        //then
+        assertEquals(2, limitWhenHalfUsed);
+        assertTrue(limiter.getLimit() > 2);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void shouldRejectAtLimitAndDecreaseOncePerCongestionEpisode() {
+        //given
+        final AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(3, 1, 10, Duration.ofSeconds(1));
+        final long started = System.nanoTime();
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+
+        //when
+        final boolean fourth = limiter.tryAcquire();
+        limiter.onDropped(started);
+        limiter.onDropped(started);
+        limiter.onIgnored();
+
+        //then
+        assertFalse(fourth);
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
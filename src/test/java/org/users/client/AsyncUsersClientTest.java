@@ -0,0 +1,245 @@
+package org.users.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.web.client.RestClientResponseException;
+import org.users.client.model.User;
+
+public class AsyncUsersClientTest {
+
+    public static final String ACCEPT = "Accept";
+    public static final String CONTENT_TYPE = "Content-Type";
+    public static final String APPLICATION_JSON = "application/json";
+    public static final String ROOT_CONTEXT = "http://127.0.0.1:8091";
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(wireMockConfig().port(8091));
+
+    private AsyncUsersClient asyncUsersClient;
+
+    @Before
+    public void setUp() {
+        asyncUsersClient = new AsyncUsersClient(ROOT_CONTEXT);
+    }
+
+    @Test
+    public void shouldReturnUsersGivenCallToGetAllUsersAsync() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/users/"))
+                .withHeader(ACCEPT, equalTo(APPLICATION_JSON))
+                .withHeader(CONTENT_TYPE, equalTo(APPLICATION_JSON))
+                .willReturn(okJson("[" +
+                        "    {\"id\": 4, \"latitude\": 51.5, \"longitude\": -0.1, \"nested\": {\"a\": [1, {\"b\": []}]}}," +
+                        "    {\"id\": 5, \"first_name\": \"Mechelle\"}" +
+                        "]"))
+        );
+
+        //when
+        final List<User> allUsers = asyncUsersClient.getAllUsersAsync().get();
+
+        //then
+        assertEquals(List.of(new User(4), new User(5)), allUsers);
+        assertEquals(51.5, allUsers.get(0).getLatitude(), 0);
+    }
+
+    @Test
+    public void shouldParseLargeResponsesArrivingInManyChunks() throws Exception {
+        //given
+        final String body = IntStream.range(0, 20_000)
+                .mapToObj(id -> "{\"id\": " + id + ", \"email\": \"user" + id + "@example.com\"}")
+                .collect(Collectors.joining(",", "[", "]"));
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(okJson(body).withChunkedDribbleDelay(50, 200)));
+
+        //when
+        final List<User> allUsers = asyncUsersClient.getAllUsersAsync().get();
+
+        //then
+        assertEquals(20_000, allUsers.size());
+        assertEquals(19_999L, allUsers.get(19_999).getId());
+    }
+
+    @Test
+    public void shouldReadNoFurtherWhilePausingConsumerHoldsStreamBack() throws Exception {
+        //given
+        final String body = IntStream.range(0, 20_000)
+                .mapToObj(id -> "{\"id\": " + id + ", \"email\": \"user" + id + "@example.com\"}")
+                .collect(Collectors.joining(",", "[", "]"));
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(okJson(body)));
+        final AtomicInteger consumed = new AtomicInteger();
+        final AtomicReference<Runnable> pausedAt = new AtomicReference<>();
+
+        //when
+        final CompletableFuture<Void> streamed = asyncUsersClient.streamAllUsersAsync(new PausingConsumer<User>() {
+            @Override
+            public void accept(final User user) {
+                consumed.incrementAndGet();
+            }
+
+            @Override
+            public boolean proceed(final Runnable resume) {
+                return !pausedAt.compareAndSet(null, resume);
+            }
+        });
+        Thread.sleep(300);
+        final int consumedWhilePaused = consumed.get();
+        final boolean doneWhilePaused = streamed.isDone();
+        pausedAt.get().run();
+        streamed.get();
+
+        //then
+        assertTrue(consumedWhilePaused > 0 && consumedWhilePaused < 20_000);
+        assertFalse(doneWhilePaused);
+        assertEquals(20_000, consumed.get());
+    }
+
+    @Test
+    public void shouldStopReadingResponseWhenCancelled() throws Exception {
+        //given
+        final String body = IntStream.range(0, 20_000)
+                .mapToObj(id -> "{\"id\": " + id + "}")
+                .collect(Collectors.joining(",", "[", "]"));
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(okJson(body).withChunkedDribbleDelay(100, 5_000)));
+        final AtomicInteger consumed = new AtomicInteger();
+        final CompletableFuture<Void> streamed = asyncUsersClient.streamAllUsersAsync(user -> consumed.incrementAndGet());
+        Thread.sleep(300);
+
+        //when
+        streamed.cancel(true);
+        final int consumedWhenCancelled = consumed.get();
+        Thread.sleep(500);
+
+        //then
+        assertTrue(consumedWhenCancelled > 0);
+        assertTrue(consumed.get() - consumedWhenCancelled < 1_000);
+    }
+
+    @Test
+    public void shouldReturnUserGivenCallToGetUserAsync() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/user/7"))
+                .withHeader(ACCEPT, equalTo(APPLICATION_JSON))
+                .willReturn(okJson("{\"id\": 7}")));
+
+        //when
+        final User user = asyncUsersClient.getUserAsync(7).get();
+
+        //then
+        assertEquals(7L, user.getId());
+    }
+
+    @Test
+    public void shouldFetchDistinctIdsInOrderWithPerIdFailuresGivenCallToGetUsersAsync() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/user/7")).willReturn(okJson("{\"id\": 7}")));
+        stubFor(get(urlPathEqualTo("/user/8")).willReturn(aResponse().withStatus(404)));
+        stubFor(get(urlPathEqualTo("/user/9")).willReturn(okJson("{\"id\": 9}").withFixedDelay(100)));
+
+        //when
+        final Map<Long, UserResult> users = asyncUsersClient.getUsersAsync(List.of(9L, 7L, 8L, 7L, 9L), 2).get();
+
+        //then
+        assertEquals(List.of(9L, 7L, 8L), List.copyOf(users.keySet()));
+        assertEquals(9L, users.get(9L).getUser().getId());
+        assertEquals(7L, users.get(7L).getUser().getId());
+        assertEquals(404, ((RestClientResponseException) users.get(8L).getError().getCause()).getRawStatusCode());
+        verify(1, getRequestedFor(urlPathEqualTo("/user/7")));
+        verify(1, getRequestedFor(urlPathEqualTo("/user/9")));
+    }
+
+    @Test
+    public void shouldReturnUsersGivenCallToGetUsersByCityAsync() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/city/london/users/"))
+                .withHeader(ACCEPT, equalTo(APPLICATION_JSON))
+                .willReturn(okJson("[{\"id\": 11}, {\"id\": 12}]")));
+
+        //when
+        final List<User> users = asyncUsersClient.getUsersByCityAsync("london").get();
+
+        //then
+        assertEquals(List.of(new User(11), new User(12)), users);
+    }
+
+    @Test
+    public void shouldFailWithStatusGivenClientFault() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/user/8")).willReturn(aResponse().withStatus(404)));
+
+        //when
+        final UserClientException exception = failure(asyncUsersClient.getUserAsync(8));
+
+        //then
+        assertEquals(404, ((RestClientResponseException) exception.getCause()).getRawStatusCode());
+    }
+
+    @Test
+    public void shouldFailWithStatusGivenServerFault() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(aResponse().withStatus(500)));
+
+        //when
+        final UserClientException exception = failure(asyncUsersClient.getAllUsersAsync());
+
+        //then
+        assertEquals(500, ((RestClientResponseException) exception.getCause()).getRawStatusCode());
+    }
+
+    @Test
+    public void shouldFailGivenMalformedBody() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(okJson("[{\"id\": 4}, {\"id\": ")));
+
+        //when and then
+        failure(asyncUsersClient.getAllUsersAsync());
+    }
+
+    @Test
+    public void shouldFailGivenConnectionReset() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/city/london/users/")).willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+        final AsyncUsersClient impatientClient = new AsyncUsersClient(ROOT_CONTEXT, HttpClient.newHttpClient(), Duration.ofSeconds(1));
+
+        //when and then
+        failure(impatientClient.getUsersByCityAsync("london"));
+    }
+
+    private static UserClientException failure(final CompletableFuture<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UserClientException);
+            return (UserClientException) e.getCause();
+        }
+        fail("expected failure");
+        return null;
+    }
+}
@@ -0,0 +1,116 @@
+package org.users.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.users.client.model.User;
+
+public class BatchFetchTest {
+
+    private final Map<Long, CompletableFuture<User>> inFlight = new HashMap<>();
+    private final List<UserResult> results = new ArrayList<>();
+
+    @Test
+    public void shouldKeepAtMostConcurrencyRequestsInFlight() {
+        //given
+        final CompletableFuture<Void> done = new BatchFetch(new long[]{1, 2, 3, 4, 5}, 2, this::fetch, results::add).start();
+
+        //then
+        assertEquals(2, inFlight.size());
+
+        //when
+        inFlight.remove(2L).complete(new User(2));
+
+        //then
+        assertEquals(2, inFlight.size());
+        assertTrue(inFlight.containsKey(3L));
+        assertEquals(2L, results.get(0).getUser().getId());
+        assertFalse(done.isDone());
+    }
+
+    @Test
+    public void shouldReportFailuresPerIdAndCompleteTheBatch() {
+        //given
+        final CompletableFuture<Void> done = new BatchFetch(new long[]{1, 2, 3}, 3, this::fetch, results::add).start();
+
+        //when
+        inFlight.remove(1L).complete(new User(1));
+        inFlight.remove(2L).completeExceptionally(new UserClientException("not found"));
+        inFlight.remove(3L).completeExceptionally(new IllegalStateException("reset"));
+
+        //then
+        assertTrue(done.isDone());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("not found", results.get(1).getError().getMessage());
+        assertTrue(results.get(2).getError().getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void shouldCompleteEmptyBatchImmediately() {
+        assertTrue(new BatchFetch(new long[0], 4, this::fetch, results::add).start().isDone());
+    }
+
+    @Test
+    public void shouldNotNestRequestsThatCompleteImmediately() {
+        //given
+        final long[] ids = new long[200_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+
+        //when
+        final CompletableFuture<Void> done = new BatchFetch(ids, 4,
+                id -> CompletableFuture.failedFuture(new UserClientException("no time left")), results::add).start();
+
+        //then
+        assertTrue(done.isDone());
+        assertEquals(ids.length, results.size());
+    }
+
+    @Test
+    public void shouldStopFetchingOnceListenerThrows() {
+        //given
+        final AtomicInteger fetched = new AtomicInteger();
+
+        //when
+        final CompletableFuture<Void> done = new BatchFetch(new long[]{1, 2, 3, 4, 5}, 2, id -> {
+            fetched.incrementAndGet();
+            return CompletableFuture.completedFuture(new User(id));
+        }, result -> {
+            throw new IllegalStateException("listener failed");
+        }).start();
+
+        //then
+        assertTrue(done.isCompletedExceptionally());
+        assertEquals(1, fetched.get());
+    }
+
+    @Test
+    public void shouldStopFetchingOnceCancelled() {
+        //given
+        final CompletableFuture<Void> done = new BatchFetch(new long[]{1, 2, 3, 4, 5}, 2, this::fetch, results::add).start();
+
+        //when
+        done.cancel(true);
+        inFlight.remove(1L).complete(new User(1));
+
+        //then
+        assertEquals(1, inFlight.size());
+        assertTrue(results.isEmpty());
+    }
+
+    private CompletableFuture<User> fetch(final long id) {
+        final CompletableFuture<User> request = new CompletableFuture<>();
+        inFlight.put(id, request);
+        return request;
+    }
+}
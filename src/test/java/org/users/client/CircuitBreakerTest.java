@@ -0,0 +1,67 @@
+package org.users.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void shouldOpenOnceFailureRateReachedOverMinimumCalls() {
+        //given
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(10, 4, 0.5, Duration.ofHours(1), Duration.ofHours(1));
+
+        //when
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess(0);
+        final CircuitBreaker.State belowMinimumCalls = circuitBreaker.getState();
+        circuitBreaker.onSuccess(0);
+
+        //then
+        assertEquals(CircuitBreaker.State.CLOSED, belowMinimumCalls);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    public void shouldCountSlowCallsAsFailuresAndForgetCallsOutsideWindow() {
+        //given
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(2, 2, 1, Duration.ofHours(1), Duration.ofMillis(10));
+
+        //when
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess(0);
+        circuitBreaker.onSuccess(Duration.ofMillis(20).toNanos());
+        final CircuitBreaker.State oneFailureInWindow = circuitBreaker.getState();
+        circuitBreaker.onFailure();
+
+        //then
+        assertEquals(CircuitBreaker.State.CLOSED, oneFailureInWindow);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void shouldLetOneProbeThroughWhenHalfOpenAndReopenWhenItFails() {
+        //given
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(1, 1, 1, Duration.ZERO, Duration.ofHours(1));
+        circuitBreaker.onFailure();
+
+        //when
+        final boolean probe = circuitBreaker.tryAcquire();
+        final boolean secondProbe = circuitBreaker.tryAcquire();
+        circuitBreaker.onIgnored();
+        final boolean probeAfterIgnored = circuitBreaker.tryAcquire();
+        circuitBreaker.onFailure();
+
+        //then
+        assertTrue(probe);
+        assertFalse(secondProbe);
+        assertTrue(probeAfterIgnored);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+}
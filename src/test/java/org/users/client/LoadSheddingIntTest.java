@@ -0,0 +1,170 @@
+package org.users.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.web.client.RestTemplate;
+import org.users.client.metrics.ClientMetrics;
+import org.users.client.metrics.Endpoint;
+
+public class LoadSheddingIntTest {
+
+    private static final String ROOT_CONTEXT = "http://127.0.0.1:8092";
+    private static final String USERS = "[{\"id\": 1}]";
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(wireMockConfig().port(8092));
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(5);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldShedRequestsBeyondConcurrencyLimitWithoutWaiting() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(okJson(USERS).withFixedDelay(500)));
+        final ClientMetrics metrics = new ClientMetrics();
+        final UsersClient usersClient = new UsersClient(ROOT_CONTEXT, new RestTemplate(), metrics,
+                LoadShedder.builder()
+                        .concurrencyLimiter(new AimdConcurrencyLimiter(2, 1, 2, Duration.ofSeconds(5)))
+                        .build());
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Long>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(executor.submit(() -> {
+                start.await();
+                final long started = System.nanoTime();
+                try {
+                    usersClient.getAllUsers();
+                    return -1L;
+                } catch (RequestRejectedException e) {
+                    assertEquals(RequestRejectedException.Reason.CONCURRENCY_LIMIT, e.getReason());
+                    return System.nanoTime() - started;
+                }
+            }));
+        }
+
+        //when
+        start.countDown();
+        final List<Long> rejectedNanos = new ArrayList<>();
+        for (Future<Long> call : calls) {
+            final long nanos = call.get(5, TimeUnit.SECONDS);
+            if (nanos >= 0) {
+                rejectedNanos.add(nanos);
+            }
+        }
+
+        //then
+        assertEquals(3, rejectedNanos.size());
+        rejectedNanos.forEach(nanos -> assertTrue(nanos < TimeUnit.MILLISECONDS.toNanos(250)));
+        verify(2, getRequestedFor(urlPathEqualTo("/users/")));
+        assertEquals(3, metrics.get(Endpoint.ALL_USERS).getRejected());
+        assertEquals(2, metrics.get(Endpoint.ALL_USERS).getSucceeded());
+    }
+
+    @Test
+    public void shouldDecreaseLimitOncePerSlowResponse() {
+        //given
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(okJson(USERS).withFixedDelay(150)));
+        final AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter(10, 1, 20, Duration.ofMillis(50));
+        final UsersClient usersClient = new UsersClient(ROOT_CONTEXT, new RestTemplate(), new ClientMetrics(),
+                LoadShedder.builder().concurrencyLimiter(limiter).build());
+
+        //when
+        for (int i = 0; i < 3; i++) {
+            usersClient.getAllUsers();
+        }
+
+        //then
+        assertEquals(7, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void shouldOpenCircuitOnServerErrorsAndCloseAfterSuccessfulProbe() throws InterruptedException {
+        //given
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(aResponse().withStatus(503)));
+        final LoadShedder loadShedder = LoadShedder.builder()
+                .circuitBreakers(() -> new CircuitBreaker(4, 4, 0.5, Duration.ofMillis(300), Duration.ofSeconds(5)))
+                .build();
+        final UsersClient usersClient = new UsersClient(ROOT_CONTEXT, new RestTemplate(), new ClientMetrics(),
+                loadShedder);
+        for (int i = 0; i < 4; i++) {
+            try {
+                usersClient.getAllUsers();
+                fail("Expected a server error");
+            } catch (RequestRejectedException e) {
+                throw e;
+            } catch (UserClientException expected) {
+                //counted as a failure
+            }
+        }
+
+        //when
+        try {
+            usersClient.getAllUsers();
+            fail("Expected the circuit to be open");
+        } catch (RequestRejectedException e) {
+            assertEquals(RequestRejectedException.Reason.CIRCUIT_OPEN, e.getReason());
+            assertEquals(Endpoint.ALL_USERS, e.getEndpoint());
+        }
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(okJson(USERS)));
+        Thread.sleep(350);
+        usersClient.getAllUsers();
+
+        //then
+        verify(5, getRequestedFor(urlPathEqualTo("/users/")));
+        assertEquals(CircuitBreaker.State.CLOSED, loadShedder.getCircuitBreaker(Endpoint.ALL_USERS).get().getState());
+        assertEquals(CircuitBreaker.State.CLOSED, loadShedder.getCircuitBreaker(Endpoint.USER).get().getState());
+    }
+
+    @Test
+    public void shouldKeepCircuitClosedOnClientErrors() {
+        //given
+        stubFor(get(urlPathEqualTo("/user/8")).willReturn(aResponse().withStatus(404)));
+        final LoadShedder loadShedder = LoadShedder.defaults();
+        final UsersClient usersClient = new UsersClient(ROOT_CONTEXT, new RestTemplate(), new ClientMetrics(),
+                loadShedder);
+
+        //when
+        for (int i = 0; i < CircuitBreaker.DEFAULT_WINDOW_SIZE; i++) {
+            try {
+                usersClient.getUser(8);
+            } catch (RequestRejectedException e) {
+                throw e;
+            } catch (UserClientException expected) {
+                //answered in time
+            }
+        }
+
+        //then
+        assertEquals(CircuitBreaker.State.CLOSED, loadShedder.getCircuitBreaker(Endpoint.USER).get().getState());
+        assertEquals(0, loadShedder.getConcurrencyLimiter().get().getInFlight());
+    }
+}
@@ -1,6 +1,7 @@
 package org.users.client;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
 import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
@@ -9,9 +10,27 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.junit.Assert.assertEquals;
-
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import com.github.tomakehurst.wiremock.http.Fault;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
@@ -19,20 +38,32 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
+import org.users.client.metrics.ClientMetrics;
+import org.users.client.metrics.Endpoint;
+import org.users.client.metrics.EndpointMetrics;
 import org.users.client.model.User;
+import org.users.concurrent.Deadline;
+import org.users.concurrent.DeadlineExceededException;
+import org.users.trace.Stage;
+import org.users.trace.StageTiming;
+import org.users.trace.TracedResult;
+import org.users.trace.Tracing;
 
 public class UsersClientTest {
 
     public static final String ACCEPT = "Accept";
     public static final String CONTENT_TYPE = "Content-Type";
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String CONTENT_ENCODING = "Content-Encoding";
     public static final String APPLICATION_JSON = "application/json";
     public static final String ROOT_CONTEXT = "http://127.0.0.1:8089";
     public static final int STATUS_CODE_FOR_CLIENT_FAULT = 404;
     public static final int STATUS_CODE_FOR_SERVER_FAULT = 500;
 
     @Rule
-    public WireMockRule wireMockRule = new WireMockRule(wireMockConfig().port(8089));
+    public WireMockRule wireMockRule = new WireMockRule(wireMockConfig().port(8089).gzipDisabled(true));
 
     private UsersClient usersClient;
 
@@ -70,6 +101,45 @@ public class UsersClientTest {
         assertEquals(Optional.empty(), getActual(allUsers, 3L));
     }
 
+    @Test
+    public void shouldTimeFetchAndParsingOfTracedRequest() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/city/London/users/")).willReturn(okJson("[{\"id\": 1}, {\"id\": 2}]")));
+
+        //when
+        final TracedResult<List<User>> london = Tracing.traceAsync("London",
+                () -> CompletableFuture.completedFuture(usersClient.getUsersByCity("London")), List::size).get();
+
+        //then
+        final List<StageTiming> stages = london.getTrace().getStages();
+        assertEquals(List.of(Stage.HTTP_FETCH, Stage.JSON_PARSE),
+                stages.stream().map(StageTiming::getStage).collect(Collectors.toList()));
+        assertEquals("CITY_USERS", stages.get(0).getDetail());
+        assertEquals(2, stages.get(1).getItems());
+        assertTrue(stages.get(1).getOffsetNanos() >= stages.get(0).getDurationNanos());
+    }
+
+    @Test
+    public void shouldEndParsingStageOfTracedRequestWhenBodyIsMalformed() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/city/London/users/")).willReturn(okJson("[{\"id\": 1}, {\"id\": ")));
+
+        //when
+        final TracedResult<RuntimeException> london = Tracing.traceAsync("London", () -> {
+            try {
+                usersClient.getUsersByCity("London");
+                return CompletableFuture.completedFuture(null);
+            } catch (RuntimeException e) {
+                return CompletableFuture.completedFuture(e);
+            }
+        }, failure -> 0).get();
+
+        //then
+        assertTrue(london.getResult() instanceof RestClientException);
+        assertEquals(List.of(Stage.HTTP_FETCH, Stage.JSON_PARSE), london.getTrace().getStages().stream()
+                .map(StageTiming::getStage).collect(Collectors.toList()));
+    }
+
     @Test(expected = UserClientException.class)
     public void shouldThrowExceptionOnClientFaultsGivenCallToGetAllUsers() {
 
@@ -116,6 +186,61 @@ public class UsersClientTest {
         usersClient.getAllUsers();
     }
 
+    @Test
+    public void shouldStreamUsersGivenCallToStreamAllUsers() {
+
+        //given
+        stubFor(get(urlPathEqualTo("/users/"))
+                .withHeader(ACCEPT, equalTo(APPLICATION_JSON))
+                .withHeader(CONTENT_TYPE, equalTo(APPLICATION_JSON))
+                .willReturn(okJson("[" +
+                        "    {" +
+                        "        \"id\": 4," +
+                        "        \"first_name\": \"Maurise\"," +
+                        "        \"tags\": [\"a\", {\"b\": 1}]" +
+                        "    }," +
+                        "    {" +
+                        "        \"id\": 5" +
+                        "    }" +
+                        "]"))
+        );
+        final List<User> streamed = new ArrayList<>();
+
+        //when
+        usersClient.streamAllUsers(streamed::add);
+
+        //then
+        assertEquals(2, streamed.size());
+        assertEquals(4L, streamed.get(0).getId());
+        assertEquals(5L, streamed.get(1).getId());
+    }
+
+    @Test(expected = UserClientException.class)
+    public void shouldThrowExceptionOnServerFaultsGivenCallToStreamAllUsers() {
+
+        //given
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(aResponse()
+                        .withStatus(STATUS_CODE_FOR_SERVER_FAULT)
+                        .withHeader(CONTENT_TYPE, APPLICATION_JSON))
+        );
+
+        //when and then
+        usersClient.streamAllUsers(user -> { });
+    }
+
+    @Test(expected = UserClientException.class)
+    public void shouldThrowExceptionOnMalformedBodyGivenCallToStreamAllUsers() {
+
+        //given
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(okJson("[ { \"id\": 4 }, { \"id\": "))
+        );
+
+        //when and then
+        usersClient.streamAllUsers(user -> { });
+    }
+
     @Test
     public void shouldReturnUserGivenCallToGetUser() {
         //given
@@ -259,6 +384,234 @@ public class UsersClientTest {
         usersClient.getUsersByCity("london");
     }
 
+    @Test
+    public void shouldRecordMetricsPerEndpoint() {
+
+        //given
+        final String body = "[{\"id\": 11}, {\"id\": 12}, {\"id\": 13}]";
+        stubFor(get(urlPathMatching("/city/london/users/")).willReturn(okJson(body)));
+        stubFor(get(urlPathMatching("/user/8")).willReturn(aResponse().withStatus(STATUS_CODE_FOR_CLIENT_FAULT)));
+        stubFor(get(urlPathEqualTo("/users/")).willReturn(aResponse().withStatus(STATUS_CODE_FOR_SERVER_FAULT)));
+        final ClientMetrics metrics = new ClientMetrics();
+        final UsersClient instrumentedClient = new UsersClient(ROOT_CONTEXT, new RestTemplate(), metrics);
+
+        //when
+        instrumentedClient.getUsersByCity("london");
+        try {
+            instrumentedClient.getUser(8);
+        } catch (UserClientException expected) {
+            //counted as client error
+        }
+        try {
+            instrumentedClient.streamAllUsers(user -> { });
+        } catch (UserClientException expected) {
+            //counted as server error
+        }
+
+        //then
+        final EndpointMetrics city = metrics.get(Endpoint.CITY_USERS);
+        assertEquals(1, city.getSucceeded());
+        assertEquals(3, city.getItems());
+        assertEquals(body.length(), city.getResponseBytes());
+        assertEquals(1, city.getLatency().getCount());
+        assertTrue(city.getLatency().getMax() > 0);
+        assertEquals(0, city.getInFlight());
+        assertEquals(1, metrics.get(Endpoint.USER).getClientErrors());
+        assertEquals(1, metrics.get(Endpoint.ALL_USERS).getServerErrors());
+        assertEquals(0, metrics.get(Endpoint.ALL_USERS).getInFlight());
+    }
+
+    @Test
+    public void shouldDecodeGzipResponseAndRecordCompressedBytes() throws IOException {
+
+        //given
+        final byte[] body = compress("[{\"id\": 11}, {\"id\": 12}, {\"id\": 13}]", GZIPOutputStream::new);
+        stubFor(get(urlPathEqualTo("/users/"))
+                .withHeader(ACCEPT_ENCODING, containing("gzip"))
+                .willReturn(aResponse()
+                        .withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withHeader(CONTENT_ENCODING, "gzip")
+                        .withBody(body))
+        );
+        final ClientMetrics metrics = new ClientMetrics();
+        final UsersClient instrumentedClient = new UsersClient(ROOT_CONTEXT, new RestTemplate(), metrics);
+
+        //when
+        final List<User> allUsers = instrumentedClient.getAllUsers();
+
+        //then
+        assertEquals(3, allUsers.size());
+        assertEquals(13L, getActual(allUsers, 13L).get().getId());
+        assertEquals(body.length, metrics.get(Endpoint.ALL_USERS).getResponseBytes());
+    }
+
+    @Test
+    public void shouldDecodeZlibAndRawDeflateResponsesGivenCallToStreamAllUsers() throws IOException {
+
+        //given
+        final String json = "[{\"id\": 4}, {\"id\": 5}]";
+        stubFor(get(urlPathEqualTo("/users/"))
+                .withHeader(ACCEPT_ENCODING, containing("deflate"))
+                .willReturn(aResponse()
+                        .withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withHeader(CONTENT_ENCODING, "deflate")
+                        .withBody(compress(json, DeflaterOutputStream::new)))
+        );
+        final List<User> zlib = new ArrayList<>();
+        usersClient.streamAllUsers(zlib::add);
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(aResponse()
+                        .withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withHeader(CONTENT_ENCODING, "deflate")
+                        .withBody(compress(json,
+                                out -> new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, true)))))
+        );
+        final List<User> raw = new ArrayList<>();
+
+        //when
+        usersClient.streamAllUsers(raw::add);
+
+        //then
+        assertEquals(List.of(new User(4), new User(5)), zlib);
+        assertEquals(List.of(new User(4), new User(5)), raw);
+    }
+
+    @Test
+    public void shouldReturnUsersGivenPooledRestTemplate() throws IOException {
+
+        //given
+        stubFor(get(urlPathEqualTo("/city/new%20york/users/"))
+                .withHeader(ACCEPT, equalTo(APPLICATION_JSON))
+                .withHeader(ACCEPT_ENCODING, containing("gzip"))
+                .willReturn(aResponse()
+                        .withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withHeader(CONTENT_ENCODING, "gzip")
+                        .withBody(compress("[{\"id\": 11}]", GZIPOutputStream::new)))
+        );
+        final UsersClient pooledClient = new UsersClient(ROOT_CONTEXT, UsersRestTemplates.pooled());
+
+        //when
+        final List<User> first = pooledClient.getUsersByCity("new york");
+        final List<User> second = pooledClient.getUsersByCity("new york");
+
+        //then
+        assertEquals(List.of(new User(11)), first);
+        assertEquals(List.of(new User(11)), second);
+    }
+
+    @Test
+    public void shouldFreeWorkerSoonAfterDeadlineGivenSlowlyStreamedBody() throws Exception {
+        //given
+        final StringBuilder body = new StringBuilder("[");
+        for (int id = 0; id < 20_000; id++) {
+            body.append(id == 0 ? "" : ",").append("{\"id\": ").append(id).append('}');
+        }
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(okJson(body.append(']').toString()).withChunkedDribbleDelay(200, 10_000)));
+        final ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            for (RestTemplate restTemplate : List.of(new RestTemplate(), UsersRestTemplates.pooled())) {
+                final UsersClient client = new UsersClient(ROOT_CONTEXT, restTemplate);
+                final AtomicInteger streamed = new AtomicInteger();
+
+                //when
+                final CompletableFuture<Void> download = client.streamAllUsersAsync(user -> streamed.incrementAndGet(),
+                        Deadline.after(Duration.ofMillis(300)), worker);
+
+                //then
+                assertDeadlineExceeded(download);
+                final long freed = System.nanoTime();
+                worker.submit(() -> { }).get(1, TimeUnit.SECONDS);
+                assertTrue(System.nanoTime() - freed < TimeUnit.SECONDS.toNanos(1));
+                assertTrue(streamed.get() < 20_000);
+            }
+        } finally {
+            worker.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldStopWaitingForResponseAtDeadlineGivenPooledRestTemplate() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/city/London/users/")).willReturn(okJson("[{\"id\": 1}]").withFixedDelay(5_000)));
+        final UsersClient pooledClient = new UsersClient(ROOT_CONTEXT, UsersRestTemplates.pooled());
+        final ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            //when
+            final long started = System.nanoTime();
+            final CompletableFuture<List<User>> london = pooledClient.getUsersByCityAsync("London",
+                    Deadline.after(Duration.ofMillis(300)), worker);
+
+            //then
+            assertDeadlineExceeded(london);
+            assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+        } finally {
+            worker.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldAbortPooledRequestWhenCancelled() throws Exception {
+        //given
+        stubFor(get(urlPathEqualTo("/city/London/users/")).willReturn(okJson("[{\"id\": 1}]").withFixedDelay(5_000)));
+        final UsersClient pooledClient = new UsersClient(ROOT_CONTEXT, UsersRestTemplates.pooled());
+        final ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            final CompletableFuture<List<User>> london = pooledClient.getUsersByCityAsync("London", null, worker);
+            Thread.sleep(200);
+
+            //when
+            london.cancel(true);
+
+            //then
+            worker.submit(() -> { }).get(1, TimeUnit.SECONDS);
+            assertTrue(london.isCancelled());
+        } finally {
+            worker.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldDecodeUsersWithCodecGivenRegisteredConverter() {
+
+        //given
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(okJson("[{\"id\": 4, \"name\": {\"first\": \"Ann\"}, \"latitude\": 51.5," +
+                        " \"longitude\": -0.12}, {\"id\": 5}]"))
+        );
+        stubFor(get(urlPathEqualTo("/user/4"))
+                .willReturn(okJson("{\"id\": 4, \"latitude\": 51.5, \"longitude\": -0.12}"))
+        );
+        final UsersClient codecClient = new UsersClient(ROOT_CONTEXT,
+                UsersRestTemplates.withUserCodec(new RestTemplate()));
+        final List<User> streamed = new ArrayList<>();
+
+        //when
+        final List<User> allUsers = codecClient.getAllUsers();
+        codecClient.streamAllUsers(streamed::add);
+        final User user = codecClient.getUser(4);
+
+        //then
+        assertEquals(List.of(new User(4), new User(5)), allUsers);
+        assertEquals(allUsers, streamed);
+        assertEquals(51.5, streamed.get(0).getLatitude(), 0);
+        assertEquals(-0.12, user.getLongitude(), 0);
+    }
+
+    @Test(expected = RestClientException.class)
+    public void shouldThrowExceptionOnMalformedUsersGivenRegisteredConverter() {
+
+        //given
+        stubFor(get(urlPathEqualTo("/users/"))
+                .willReturn(okJson("[{\"id\": 4}, 5]"))
+        );
+        final UsersClient codecClient = new UsersClient(ROOT_CONTEXT,
+                UsersRestTemplates.withUserCodec(new RestTemplate()));
+
+        //when and then
+        codecClient.getAllUsers();
+    }
+
     @After
     public void resetAllWireMockRules() {
         wireMockRule.resetAll();
@@ -272,4 +625,27 @@ public class UsersClientTest {
             return Optional.empty();
         }
     }
+
+    private static byte[] compress(final String json, final Compressor compressor) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = compressor.wrap(bytes)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void assertDeadlineExceeded(final CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            fail("Completed after the deadline");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), e.getCause() instanceof DeadlineExceededException);
+        }
+    }
+
+    private interface Compressor {
+
+        OutputStream wrap(OutputStream out) throws IOException;
+    }
+
 }
@@ -0,0 +1,164 @@
+package org.users.client.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.users.client.model.User;
+
+public class UserJsonDecoderTest {
+
+    private static final String USERS = "[" +
+            "  {\"id\": 1, \"first_name\": \"Maurise\", \"latitude\": 34.003135, \"longitude\": -117.7228641}," +
+            "  {\"address\": {\"city\": \"London\", \"lines\": [\"1\", {\"nested\": [[]]}]}, \"id\": 2," +
+            "   \"longitude\": -0.1277, \"latitude\": 51.5073, \"active\": true, \"email\": null}," +
+            "  {\"id\": \"3\", \"latitude\": \"48.8566\", \"longitude\": 2}," +
+            "  {\"id\": 4}" +
+            "]";
+
+    private final UserJsonDecoder decoder = new UserJsonDecoder();
+
+    @Test
+    public void shouldDecodeLikeObjectMapperSkippingUnknownFields() throws IOException {
+
+        //given
+        final User[] expected = new ObjectMapper().readValue(USERS, User[].class);
+
+        //when
+        final User[] users = decoder.readArray(json(USERS));
+
+        //then
+        assertEquals(expected.length, users.length);
+        for (int i = 0; i < users.length; i++) {
+            assertEquals(expected[i].getId(), users[i].getId());
+            assertEquals(expected[i].getLatitude(), users[i].getLatitude(), 0);
+            assertEquals(expected[i].getLongitude(), users[i].getLongitude(), 0);
+        }
+        assertFalse(users[3].hasLocation());
+    }
+
+    @Test
+    public void shouldDecodeStraightIntoPrimitiveColumns() throws IOException {
+
+        //given
+        final long[] ids = new long[4];
+        final double[] latitudes = new double[4];
+        final int[] size = new int[1];
+
+        //when
+        decoder.read(json(USERS), (id, latitude, longitude) -> {
+            ids[size[0]] = id;
+            latitudes[size[0]++] = latitude;
+        });
+
+        //then
+        assertEquals(4, size[0]);
+        assertEquals(3L, ids[2]);
+        assertEquals(51.5073, latitudes[1], 0);
+    }
+
+    @Test
+    public void shouldReadNullCoordinatesAsNoLocation() throws IOException {
+
+        //when
+        final User user = decoder.readUser(json("{\"id\": 7, \"latitude\": null, \"longitude\": null}"));
+
+        //then
+        assertEquals(7L, user.getId());
+        assertFalse(user.hasLocation());
+    }
+
+    @Test
+    public void shouldDecodeEmptyArray() throws IOException {
+
+        //when
+        final List<Long> ids = new ArrayList<>();
+        decoder.read(json(" [ ] "), (id, latitude, longitude) -> ids.add(id));
+
+        //then
+        assertEquals(List.of(), ids);
+    }
+
+    @Test
+    public void shouldParseDecimalsExactlyLikeDouble() {
+
+        //given
+        final Random random = new Random(42);
+        final List<String> decimals = new ArrayList<>(List.of("0.0", "-0.0", "0.003135", "-117.7228641",
+                "100.50", "12345678901234.5", "0.0000000000000000000001"));
+        for (int i = 0; i < 100_000; i++) {
+            final BigDecimal coordinate = BigDecimal.valueOf(random.nextDouble() * 360 - 180);
+            decimals.add(coordinate.setScale(random.nextInt(13), RoundingMode.HALF_EVEN).toPlainString());
+        }
+
+        //when and then
+        for (String decimal : decimals) {
+            final double parsed = UserJsonDecoder.parseDecimal(decimal.toCharArray(), 0, decimal.length());
+            assertEquals(decimal, Double.doubleToLongBits(Double.parseDouble(decimal)),
+                    Double.doubleToLongBits(parsed));
+        }
+    }
+
+    @Test
+    public void shouldLeaveDecimalsOutOfExactRangeToDouble() {
+
+        //when and then
+        assertTrue(Double.isNaN(parse("51.507341234123412")));
+        assertTrue(Double.isNaN(parse("1.5e3")));
+        assertTrue(Double.isNaN(parse("0.00000000000000000000001")));
+    }
+
+    @Test
+    public void shouldDecodeFullPrecisionCoordinates() throws IOException {
+
+        //when
+        final User user = decoder.readUser(
+                json("{\"id\": 1, \"latitude\": 51.507341234123412, \"longitude\": 1.5e-3}"));
+
+        //then
+        assertEquals(51.507341234123412, user.getLatitude(), 0);
+        assertEquals(0.0015, user.getLongitude(), 0);
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldRejectBodyWhichIsNotAnArray() throws IOException {
+
+        //when and then
+        decoder.readArray(json("{\"id\": 1}"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldRejectNonObjectInArray() throws IOException {
+
+        //when and then
+        decoder.readArray(json("[{\"id\": 1}, 2]"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldRejectInvalidCoordinate() throws IOException {
+
+        //when and then
+        decoder.readArray(json("[{\"id\": 1, \"latitude\": true}]"));
+    }
+
+    private static double parse(final String decimal) {
+        return UserJsonDecoder.parseDecimal(decimal.toCharArray(), 0, decimal.length());
+    }
+
+    private static InputStream json(final String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,69 @@
+package org.users.client.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldReportPercentilesWithinBucketPrecision() {
+        //given
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        //when
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        //then
+        assertEquals(100_000, snapshot.getCount());
+        assertWithin(50_000_000, snapshot.getValueAtPercentile(50));
+        assertWithin(99_000_000, snapshot.getValueAtPercentile(99));
+        assertWithin(99_900_000, snapshot.getValueAtPercentile(99.9));
+        assertEquals(100_000_000, snapshot.getValueAtPercentile(100));
+        assertEquals(100_000_000, snapshot.getMax());
+        assertEquals(50_000_500, snapshot.getMean(), 1);
+    }
+
+    @Test
+    public void shouldMapEveryValueToABucketContainingIt() {
+        for (long value = 0; value < 1L << 41; value = value * 3 / 2 + 1) {
+            final int index = LatencyHistogram.indexOf(value);
+            assertTrue(value <= LatencyHistogram.highestValueOf(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highestValueOf(index - 1));
+        }
+    }
+
+    @Test
+    public void shouldRecordConcurrentlyWithoutLosingCounts() throws InterruptedException {
+        //given
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        //then
+        assertEquals(80_000, histogram.snapshot().getCount());
+        assertEquals(9_999, histogram.snapshot().getMax());
+    }
+
+    private static void assertWithin(final long expected, final long actual) {
+        assertTrue("expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected * 0.04);
+    }
+}
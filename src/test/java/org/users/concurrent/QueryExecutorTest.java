@@ -0,0 +1,120 @@
+package org.users.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class QueryExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private QueryExecutor executor;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void shouldReportSaturationOfBoundedPool() throws InterruptedException {
+        //given
+        executor = QueryExecutor.bounded("query", 2, 3, QueryExecutor.RejectionPolicy.ABORT);
+
+        //when
+        for (int i = 0; i < 5; i++) {
+            executor.execute(this::awaitRelease);
+        }
+        waitUntil(() -> executor.getActiveTasks() == 2);
+
+        //then
+        assertEquals(2, executor.getActiveTasks());
+        assertEquals(3, executor.getQueueDepth());
+        assertEquals(2, executor.getPoolSize());
+    }
+
+    @Test
+    public void shouldRejectWhenQueueIsFullWithAbortPolicy() throws InterruptedException {
+        //given
+        executor = QueryExecutor.bounded("query", 1, 1, QueryExecutor.RejectionPolicy.ABORT);
+        executor.execute(this::awaitRelease);
+        executor.execute(this::awaitRelease);
+
+        //when
+        try {
+            executor.execute(this::awaitRelease);
+            fail("expected rejection");
+        } catch (RejectedExecutionException expected) {
+            //then
+            assertEquals(1, executor.getRejectedTasks());
+        }
+        release.countDown();
+        waitUntil(() -> executor.getCompletedTasks() == 2);
+        assertEquals(0, executor.getActiveTasks());
+    }
+
+    @Test
+    public void shouldRunOnCallerWhenQueueIsFullWithCallerRunsPolicy() throws InterruptedException {
+        //given
+        executor = QueryExecutor.bounded("query", 1, 1, QueryExecutor.RejectionPolicy.CALLER_RUNS);
+        executor.execute(this::awaitRelease);
+        executor.execute(this::awaitRelease);
+        final Thread caller = Thread.currentThread();
+        final Thread[] ranOn = new Thread[1];
+
+        //when
+        executor.execute(() -> ranOn[0] = Thread.currentThread());
+
+        //then
+        assertEquals(caller, ranOn[0]);
+        assertEquals(1, executor.getRejectedTasks());
+    }
+
+    @Test
+    public void shouldRunTasksOnVirtualThreadsWhenSupported() throws Exception {
+        assumeTrue(QueryExecutor.isVirtualThreadsSupported());
+        //given
+        executor = QueryExecutor.virtualThreads();
+
+        //when
+        final String threadName = CompletableFuture.supplyAsync(() -> Thread.currentThread().toString(), executor)
+                .get(5, TimeUnit.SECONDS);
+
+        //then
+        assertTrue(threadName.startsWith("VirtualThread"));
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldFailToCreateVirtualThreadsWhenUnsupported() {
+        assumeFalse(QueryExecutor.isVirtualThreadsSupported());
+
+        QueryExecutor.virtualThreads();
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(final BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+    }
+}
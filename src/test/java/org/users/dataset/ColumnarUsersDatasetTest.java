@@ -0,0 +1,60 @@
+package org.users.dataset;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.users.client.model.User;
+import org.users.geo.GeoCircle;
+import org.users.geo.GeoPoint;
+
+public class ColumnarUsersDatasetTest {
+
+    @Test
+    public void shouldFindSameUsersAsIndexedDataset() {
+        //given
+        final Random random = new Random(7);
+        final List<User> users = new ArrayList<>();
+        final ColumnarUsersDataset.Builder builder = ColumnarUsersDataset.builder();
+        for (int id = 0; id < 5_000; id++) {
+            final User user = id % 100 == 0
+                    ? new User(id)
+                    : new User(id, 50 + random.nextDouble() * 4, -3 + random.nextDouble() * 4);
+            users.add(user);
+            builder.accept(user);
+        }
+        final ColumnarUsersDataset columnar = builder.build();
+        final IndexedUsersDataset indexed = new IndexedUsersDataset(users);
+        final GeoCircle circle = new GeoCircle(new GeoPoint(51.5074, -0.1278), 40);
+
+        //when
+        final List<User> within = columnar.findWithin(circle);
+
+        //then
+        assertEquals(5_000, columnar.size());
+        assertEquals(new HashSet<>(indexed.findWithin(circle)), new HashSet<>(within));
+        assertEquals(within.size(), columnar.countWithin(circle));
+    }
+
+    @Test
+    public void shouldMaterialiseCoordinatesOfFoundUsers() {
+        //given
+        final ColumnarUsersDataset columnar = ColumnarUsersDataset.builder()
+                .add(1, 51.5, -0.1)
+                .add(2, 48.8, 2.3)
+                .build();
+
+        //when
+        final List<User> within = columnar.findWithin(new GeoCircle(new GeoPoint(51.5074, -0.1278), 10));
+
+        //then
+        assertEquals(Set.of(new User(1)), new HashSet<>(within));
+        assertEquals(51.5, within.get(0).getLatitude(), 0);
+        assertEquals(-0.1, within.get(0).getLongitude(), 0);
+    }
+}
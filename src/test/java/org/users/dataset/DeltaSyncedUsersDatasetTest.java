@@ -0,0 +1,110 @@
+package org.users.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.users.client.model.User;
+import org.users.geo.GeoCircle;
+import org.users.geo.GeoPoint;
+
+public class DeltaSyncedUsersDatasetTest {
+
+    private static final GeoCircle AROUND_LONDON = new GeoCircle(new GeoPoint(51.5074, -0.1278), 50);
+
+    @Test
+    public void shouldApplyInsertsUpdatesAndDeletesById() {
+        //given
+        final DeltaSyncedUsersDataset dataset = new DeltaSyncedUsersDataset();
+        dataset.sync(List.of(new User(1, 51.5, -0.1), new User(2, 48.8, 2.3), new User(3, 51.6, -0.2)));
+
+        //when
+        final UsersDelta delta = dataset.sync(List.of(new User(1, 51.5, -0.1), new User(2, 51.4, -0.1),
+                new User(4, 51.5, 0.0), new User(5)));
+
+        //then
+        assertEquals(2, delta.getInserted());
+        assertEquals(1, delta.getUpdated());
+        assertEquals(1, delta.getDeleted());
+        assertEquals(4, dataset.size());
+        assertEquals(new HashSet<>(List.of(new User(1), new User(2), new User(4))),
+                new HashSet<>(dataset.findWithin(AROUND_LONDON)));
+        assertEquals(2, dataset.getStats().getSyncs());
+        assertEquals(5, dataset.getStats().getInserted());
+    }
+
+    @Test
+    public void shouldOnlyRebuildSegmentsTouchedByDelta() {
+        //given
+        final DeltaSyncedUsersDataset dataset = new DeltaSyncedUsersDataset();
+        final List<User> users = new ArrayList<>(List.of(new User(1, 51.5, -0.1), new User(2, 48.8, 2.3),
+                new User(3, 40.4, -3.7), new User(4, 52.5, 13.4)));
+        dataset.sync(users);
+        users.set(0, new User(1, 51.6, -0.1));
+
+        //when
+        final UsersDelta moved = dataset.sync(users);
+        final UsersDelta unchanged = dataset.sync(users);
+
+        //then
+        assertEquals(1, moved.getUpdated());
+        assertEquals(1, moved.getSegmentsRebuilt());
+        assertTrue(unchanged.isEmpty());
+        assertEquals(0, unchanged.getSegmentsRebuilt());
+    }
+
+    @Test(timeout = 5000)
+    public void shouldSyncSnapshotsOfNonContiguousIds() {
+        //given
+        final Random random = new Random(7);
+        final DeltaSyncedUsersDataset dataset = new DeltaSyncedUsersDataset();
+        final List<User> users = new ArrayList<>();
+        for (int i = 0; i < 60_000; i++) {
+            users.add(new User(i, 51.5 + random.nextGaussian(), -0.1 + random.nextGaussian()));
+            users.add(new User((1L << 18) + i, 48.8 + random.nextGaussian(), 2.3 + random.nextGaussian()));
+        }
+        dataset.sync(users);
+        final List<User> next = new ArrayList<>(users.subList(0, 100_000));
+        for (int i = 0; i < 20_000; i++) {
+            next.add(new User(random.nextLong() & Long.MAX_VALUE, 40.4, -3.7));
+        }
+
+        //when
+        final UsersDelta delta = dataset.sync(next);
+
+        //then
+        assertEquals(20_000, delta.getInserted());
+        assertEquals(20_000, delta.getDeleted());
+        assertEquals(120_000, dataset.size());
+    }
+
+    @Test
+    public void shouldMatchFullRebuildAfterRandomDeltas() {
+        //given
+        final Random random = new Random(11);
+        final DeltaSyncedUsersDataset dataset = new DeltaSyncedUsersDataset(2);
+        final GeoCircle circle = new GeoCircle(new GeoPoint(51.5, -0.1), 150);
+
+        for (int round = 0; round < 20; round++) {
+            final List<User> users = new ArrayList<>();
+            for (int id = 0; id < 2_000; id++) {
+                if (random.nextInt(10) > 0) {
+                    users.add(new User(id, 49 + random.nextInt(50) / 10.0, -3 + random.nextInt(50) / 10.0));
+                }
+            }
+
+            //when
+            dataset.sync(users);
+
+            //then
+            assertEquals(new HashSet<>(new IndexedUsersDataset(users).findWithin(circle)),
+                    new HashSet<>(dataset.findWithin(circle)));
+            assertEquals(users.size(), dataset.size());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.users.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.users.client.model.User;
+
+public class UserIdSetTest {
+
+    @Test
+    public void shouldKeepFirstUserAddedForAnId() {
+        //given
+        final User first = new User(7, 51.5, -0.1);
+        final UserIdSet set = new UserIdSet();
+
+        //when
+        final boolean added = set.add(first);
+        final boolean addedAgain = set.add(new User(7));
+
+        //then
+        assertTrue(added);
+        assertFalse(addedAgain);
+        assertEquals(1, set.size());
+        assertSame(first, set.get(7));
+        assertNull(set.get(8));
+    }
+
+    @Test(timeout = 5000)
+    public void shouldAddRunsOfIdsFarApartWithoutClustering() {
+        //given
+        final UserIdSet set = new UserIdSet();
+        final Random random = new Random(42);
+
+        //when
+        for (int i = 0; i < 60_000; i++) {
+            set.add(new User(i));
+            set.add(new User((1L << 18) + i));
+            set.add(new User(random.nextLong() & Long.MAX_VALUE));
+        }
+
+        //then
+        assertEquals(180_000, set.size());
+        assertTrue(set.containsId(1L << 18));
+        assertTrue(set.containsId(59_999));
+    }
+
+    @Test
+    public void shouldMatchHashSetAcrossResizes() {
+        //given
+        final Random random = new Random(42);
+        final Set<User> expected = new HashSet<>();
+        final UserIdSet set = new UserIdSet(0);
+
+        //when
+        for (int i = 0; i < 10_000; i++) {
+            final User user = new User(random.nextInt(5_000) - 2_500L);
+            assertEquals(expected.add(user), set.add(user));
+        }
+
+        //then
+        assertEquals(expected, set.asSet());
+        assertEquals(expected.hashCode(), set.asSet().hashCode());
+        assertEquals(expected, new HashSet<>(set.asSet()));
+    }
+
+    @Test
+    public void shouldViewUsersReadOnly() {
+        //given
+        final UserIdSet set = new UserIdSet(2);
+        set.addAll(List.of(new User(1), new User(2), new User(Long.MIN_VALUE)));
+
+        //when
+        final Set<User> view = set.asSet();
+
+        //then
+        assertEquals(Set.of(new User(1), new User(2), new User(Long.MIN_VALUE)), view);
+        assertTrue(view.contains(new User(Long.MIN_VALUE)));
+        assertFalse(view.contains("1"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldRejectChangesThroughView() {
+        //when
+        new UserIdSet().asSet().add(new User(1));
+    }
+}
@@ -0,0 +1,68 @@
+package org.users.geo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class GazetteerTest {
+
+    private final Gazetteer gazetteer = Gazetteer.defaults();
+
+    @Test
+    public void shouldLocateIgnoringCaseAccentsAndPunctuation() {
+        //when
+        final Optional<GeoPoint> zurich = gazetteer.locate("ZURICH ");
+        final Optional<GeoPoint> lodz = gazetteer.locate("lodz");
+        final Optional<GeoPoint> saintEtienne = gazetteer.locate("saint etienne");
+        final Optional<GeoPoint> stoke = gazetteer.locate("Stoke on Trent");
+
+        //then
+        assertEquals(Optional.of(new GeoPoint(47.3769, 8.5417)), zurich);
+        assertEquals(Optional.of(new GeoPoint(51.7592, 19.4560)), lodz);
+        assertEquals(Optional.of(new GeoPoint(45.4397, 4.3872)), saintEtienne);
+        assertEquals(Optional.of(new GeoPoint(53.0027, -2.1794)), stoke);
+        assertFalse(gazetteer.locate("Atlantis").isPresent());
+        assertFalse(gazetteer.locate("Lond").isPresent());
+    }
+
+    @Test
+    public void shouldMatchPrefixInAlphabeticalOrder() {
+        //when
+        final List<String> matches = gazetteer.findByPrefix("MAN", 10);
+        final List<String> limited = gazetteer.findByPrefix("b", 3);
+
+        //then
+        assertEquals(List.of("Manchester", "Manila"), matches);
+        assertEquals(3, limited.size());
+        assertTrue(limited.stream().allMatch(name -> name.toLowerCase().startsWith("b")));
+    }
+
+    @Test
+    public void shouldKeepFirstListedCityWhenNamesFoldAlike() {
+        //given
+        final Gazetteer custom = Gazetteer.of(List.of("Perth", "PERTH", "\u041c\u043e\u0441\u043a\u0432\u0430"),
+                List.of(new GeoPoint(56.3950, -3.4308), new GeoPoint(-31.9505, 115.8605), new GeoPoint(55.7558, 37.6173)));
+
+        //when
+        final Optional<GeoPoint> perth = custom.locate("perth");
+
+        //then
+        assertEquals(2, custom.size());
+        assertEquals(Optional.of(new GeoPoint(56.3950, -3.4308)), perth);
+        assertEquals(Optional.of(new GeoPoint(55.7558, 37.6173)), custom.locate("\u041c\u041e\u0421\u041a\u0412\u0410"));
+    }
+
+    @Test
+    public void shouldFoldNamesToWordsWithoutAccents() {
+        assertEquals("sao paulo", Gazetteer.fold(" S\u00e3o-Paulo "));
+        assertEquals("koln", Gazetteer.fold("K\u00f6ln"));
+        assertEquals("st albans", Gazetteer.fold("St. Albans"));
+        assertEquals("munchen", Gazetteer.fold("M\u00dcNCHEN"));
+        assertEquals("strasse", Gazetteer.fold("Stra\u00dfe"));
+    }
+}
@@ -0,0 +1,152 @@
+package org.users.geo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GeoGridIndexTest {
+
+    private static final int POINTS = 200_000;
+    private static final double[] RADII = {0, 1, 12, 50, 250, 1000, 5000};
+
+    private final Random random = new Random(42);
+    private double[] latitudes;
+    private double[] longitudes;
+
+    @Before
+    public void setUp() {
+        latitudes = new double[POINTS];
+        longitudes = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            if (i % 2 == 0) {
+                //uniform over the globe
+                latitudes[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+                longitudes[i] = random.nextDouble() * 360 - 180;
+            } else {
+                //clustered around London
+                latitudes[i] = 51.5 + random.nextGaussian() * 0.5;
+                longitudes[i] = -0.12 + random.nextGaussian() * 0.5;
+            }
+        }
+        latitudes[7] = Double.NaN;
+    }
+
+    @Test
+    public void shouldCalculateHaversineDistance() {
+        final double londonToParis = Haversine.distanceMiles(new GeoPoint(51.5074, -0.1278), new GeoPoint(48.8566, 2.3522));
+
+        assertEquals(213.5, londonToParis, 0.5);
+    }
+
+    @Test
+    public void shouldMatchBruteForceForRandomQueries() {
+        final GeoGridIndex index = new GeoGridIndex(latitudes, longitudes);
+        for (int query = 0; query < 30; query++) {
+            final GeoPoint centre = query % 2 == 0
+                    ? new GeoPoint(51.5 + random.nextGaussian(), -0.12 + random.nextGaussian())
+                    : new GeoPoint(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            for (double radius : RADII) {
+                assertSameAsBruteForce(index, new GeoCircle(centre, radius));
+            }
+        }
+    }
+
+    @Test
+    public void shouldMatchBruteForceAcrossAntimeridianAndPoles() {
+        final GeoGridIndex index = new GeoGridIndex(latitudes, longitudes, POINTS, 2.0);
+        final GeoPoint[] centres = {
+                new GeoPoint(0, 179.9), new GeoPoint(-10, -179.5), new GeoPoint(65, 180),
+                new GeoPoint(89.9, 0), new GeoPoint(-89, 45), new GeoPoint(90, -180)};
+        for (GeoPoint centre : centres) {
+            for (double radius : RADII) {
+                assertSameAsBruteForce(index, new GeoCircle(centre, radius));
+            }
+        }
+    }
+
+    @Test
+    public void shouldFindNearestLikeSortingAllPointsWithin() {
+        final GeoGridIndex index = new GeoGridIndex(latitudes, longitudes);
+        final GeoPoint[] centres = {new GeoPoint(51.5, -0.12), new GeoPoint(52.2, 0.5), new GeoPoint(0, 179.9)};
+        for (GeoPoint centre : centres) {
+            for (double radius : new double[]{12, 250, 5000}) {
+                final GeoCircle circle = new GeoCircle(centre, radius);
+                final int[] expected = IntStream.range(0, POINTS)
+                        .filter(i -> circle.contains(latitudes[i], longitudes[i]))
+                        .boxed()
+                        .sorted(Comparator.<Integer>comparingDouble(i -> circle.distanceMiles(latitudes[i], longitudes[i]))
+                                .thenComparing(Comparator.naturalOrder()))
+                        .limit(100)
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+
+                assertArrayEquals(expected, index.findNearest(circle, 100, 1));
+                assertArrayEquals(expected, index.findNearest(circle, 100, 4));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotIndexPointsWithoutCoordinates() {
+        final GeoGridIndex index = new GeoGridIndex(latitudes, longitudes);
+
+        assertEquals(POINTS - 1, index.size());
+    }
+
+    @Test
+    public void shouldShareCoordinatesPermutedInCellOrder() {
+        final int[] order = GeoGridIndex.cellOrder(latitudes, longitudes, POINTS, GeoGridIndex.DEFAULT_CELL_DEGREES);
+        final double[] orderedLatitudes = new double[POINTS];
+        final double[] orderedLongitudes = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            orderedLatitudes[i] = latitudes[order[i]];
+            orderedLongitudes[i] = longitudes[order[i]];
+        }
+        final GeoGridIndex index = GeoGridIndex.ofCellOrdered(orderedLatitudes, orderedLongitudes, POINTS,
+                GeoGridIndex.DEFAULT_CELL_DEGREES);
+
+        assertEquals(POINTS - 1, index.size());
+        assertEquals(7, order[POINTS - 1]);
+        for (double radius : RADII) {
+            final GeoCircle circle = new GeoCircle(new GeoPoint(51.5, -0.12), radius);
+            final int[] expected = IntStream.range(0, POINTS)
+                    .filter(i -> circle.contains(latitudes[i], longitudes[i]))
+                    .toArray();
+            final int[] actual = Arrays.stream(collect(index, circle)).map(position -> order[position]).toArray();
+            Arrays.sort(actual);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseToShareCoordinatesOutOfCellOrder() {
+        GeoGridIndex.ofCellOrdered(latitudes, longitudes, POINTS, GeoGridIndex.DEFAULT_CELL_DEGREES);
+    }
+
+    private void assertSameAsBruteForce(final GeoGridIndex index, final GeoCircle circle) {
+        final int[] expected = IntStream.range(0, POINTS)
+                .filter(i -> circle.contains(latitudes[i], longitudes[i]))
+                .toArray();
+        final int[] actual = collect(index, circle);
+        Arrays.sort(actual);
+
+        assertArrayEquals("Mismatch for " + circle.getCentre() + " within " + circle.getRadiusMiles(), expected, actual);
+        for (int position : actual) {
+            assertTrue(circle.distanceMiles(latitudes[position], longitudes[position]) <= circle.getRadiusMiles());
+        }
+    }
+
+    private int[] collect(final GeoGridIndex index, final GeoCircle circle) {
+        final IntStream.Builder found = IntStream.builder();
+        index.forEachWithin(circle, found::add);
+        return found.build().toArray();
+    }
+}
@@ -0,0 +1,95 @@
+package org.users.geo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class NearestHeapTest {
+
+    @Test
+    public void shouldKeepNearestItemsSortedByDistance() {
+        //given
+        final Random random = new Random(42);
+        final double[] distances = random.doubles(10_000, 0, 100).toArray();
+        final NearestHeap heap = new NearestHeap(25);
+
+        //when
+        for (int i = 0; i < distances.length; i++) {
+            heap.offer(distances[i], i);
+        }
+
+        //then
+        final int[] expected = IntStream.range(0, distances.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> distances[i]))
+                .limit(25)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        assertArrayEquals(expected, heap.sortedItems());
+        assertTrue(heap.isFull());
+    }
+
+    @Test
+    public void shouldBreakTiesByItemWhateverTheOrder() {
+        //given
+        final NearestHeap forward = new NearestHeap(3);
+        final NearestHeap backward = new NearestHeap(3);
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            forward.offer(1.0, i);
+            backward.offer(1.0, 9 - i);
+        }
+
+        //then
+        assertArrayEquals(new int[]{0, 1, 2}, forward.sortedItems());
+        assertArrayEquals(new int[]{0, 1, 2}, backward.sortedItems());
+    }
+
+    @Test
+    public void shouldMergePartialHeaps() {
+        //given
+        final NearestHeap evens = new NearestHeap(3);
+        final NearestHeap odds = new NearestHeap(3);
+        for (int i = 0; i < 20; i++) {
+            (i % 2 == 0 ? evens : odds).offer(20 - i, i);
+        }
+
+        //when
+        evens.addAll(odds);
+
+        //then
+        assertArrayEquals(new int[]{19, 18, 17}, evens.sortedItems());
+    }
+
+    @Test
+    public void shouldKeepFewerItemsThanK() {
+        //given
+        final NearestHeap heap = new NearestHeap(10);
+
+        //when
+        heap.offer(3, 3);
+        heap.offer(1, 1);
+
+        //then
+        assertArrayEquals(new int[]{1, 3}, heap.sortedItems());
+        assertEquals(2, heap.size());
+        assertArrayEquals(new int[]{1, 3}, heap.sortedItems());
+    }
+
+    @Test
+    public void shouldKeepNothingForZeroK() {
+        //given
+        final NearestHeap heap = new NearestHeap(0);
+
+        //when and then
+        assertFalse(heap.offer(1, 1));
+        assertArrayEquals(new int[0], heap.sortedItems());
+    }
+}
@@ -0,0 +1,112 @@
+package org.users.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TracingTest {
+
+    private ExecutorService threads;
+
+    @Before
+    public void setUp() {
+        threads = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        threads.shutdown();
+    }
+
+    @Test
+    public void shouldNotTimeStagesOutsideOfTracedQueries() {
+        //when
+        final StageSpan span = Tracing.start(Stage.MERGE);
+        span.end(null, 1);
+
+        //then
+        assertSame(StageSpan.NONE, span);
+        assertNull(Tracing.current());
+    }
+
+    @Test
+    public void shouldHandTraceToTasksOfPropagatingExecutor() throws Exception {
+        //given
+        final Executor executor = Tracing.propagating(threads);
+
+        //when
+        final TracedResult<QueryTrace> traced = Tracing.traceAsync("query", () -> CompletableFuture.supplyAsync(() -> {
+            Tracing.start(Stage.VICINITY_FILTER).end(null, 3);
+            return Tracing.current();
+        }, executor), trace -> 3).get();
+        final QueryTrace afterwards = CompletableFuture.supplyAsync(Tracing::current, executor).get();
+
+        //then
+        assertSame(traced.getTrace(), traced.getResult());
+        assertEquals(List.of(Stage.QUEUE_WAIT, Stage.VICINITY_FILTER), stages(traced.getTrace()));
+        assertEquals(3, traced.getTrace().getStages().get(1).getItems());
+        assertNull(afterwards);
+        assertNull(Tracing.current());
+    }
+
+    @Test
+    public void shouldEmitFlightRecorderEventsOfTracedQuery() throws Exception {
+        //given
+        final Path file = Files.createTempFile("query-trace", ".jfr");
+        final TracedResult<Integer> traced;
+        try (Recording recording = new Recording()) {
+            recording.enable("org.users.QueryStage");
+            recording.enable("org.users.Query");
+            recording.start();
+
+            //when
+            traced = Tracing.traceAsync("people in area London", () -> {
+                Tracing.start(Stage.MERGE).end("merged", 2);
+                return CompletableFuture.completedFuture(2);
+            }, Integer::intValue).get();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        //then
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        final RecordedEvent stage = event(events, "org.users.QueryStage");
+        assertEquals("MERGE", stage.getString("stage"));
+        assertEquals("merged", stage.getString("detail"));
+        assertEquals(2, stage.getInt("items"));
+        assertEquals(traced.getTrace().getId(), stage.getLong("queryId"));
+        final RecordedEvent query = event(events, "org.users.Query");
+        assertEquals("people in area London", query.getString("query"));
+        assertEquals(2, query.getInt("items"));
+        assertEquals(traced.getTrace().getId(), query.getLong("queryId"));
+    }
+
+    private static List<Stage> stages(final QueryTrace trace) {
+        return trace.getStages().stream().map(StageTiming::getStage).collect(Collectors.toList());
+    }
+
+    private static RecordedEvent event(final List<RecordedEvent> events, final String name) {
+        final List<RecordedEvent> named = events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+        assertEquals(1, named.size());
+        return named.get(0);
+    }
+}
@@ -0,0 +1,237 @@
+package org.users.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.users.client.UsersClient;
+import org.users.client.model.User;
+
+/**
+ * An in-process stand-in for the Users API on an ephemeral local port, for running and measuring the client
+ * without the real one. "/users/" returns every user and "/city/{city}/users/" the users listed under the city,
+ * matched ignoring case. Each response can be delayed by a latency plus a uniform random jitter and answered
+ * 503 Service Unavailable at an error rate. The bodies are serialized once up front, and gzipped too when built
+ * to compress, for the clients accepting gzip.
+ */
+public final class StubUsersApi implements AutoCloseable {
+
+    private static final byte[] EMPTY = "[]".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] UNAVAILABLE = "{\"error\":\"unavailable\"}".getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Body allUsers;
+    private final Map<String, Body> cityUsers = new HashMap<>();
+    private final Body otherCityUsers;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double errorRate;
+
+    private StubUsersApi(final Builder builder) throws IOException {
+        this.allUsers = new Body(builder.users, builder.compress);
+        builder.cities.forEach((city, users) -> cityUsers.put(city, new Body(users, builder.compress)));
+        this.otherCityUsers = new Body(builder.otherCities, builder.compress);
+        this.latencyNanos = builder.latency.toNanos();
+        this.jitterNanos = builder.jitter.toNanos();
+        this.errorRate = builder.errorRate;
+        //an injected latency parks a thread per request in flight
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext(UsersClient.USERS, exchange -> respond(exchange, allUsers));
+        server.createContext(UsersClient.CITY, exchange -> respond(exchange, cityUsers.getOrDefault(
+                cityOf(exchange.getRequestURI().getPath()).toLowerCase(Locale.ROOT), otherCityUsers)));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @param users returned by "/users/"
+     */
+    public static Builder builder(final List<User> users) {
+        return new Builder(users);
+    }
+
+    public String getRootContext() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * The users as a JSON array of the Users API, each with every field it sends.
+     */
+    public static byte[] json(final List<User> users) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(users.size() * 180 + 2);
+        final StringBuilder user = new StringBuilder(256);
+        out.write('[');
+        for (int i = 0; i < users.size(); i++) {
+            final User next = users.get(i);
+            user.setLength(0);
+            if (i > 0) {
+                user.append(',');
+            }
+            user.append("{\"id\":").append(next.getId())
+                    .append(",\"first_name\":\"First").append(next.getId())
+                    .append("\",\"last_name\":\"Last").append(next.getId())
+                    .append("\",\"email\":\"user").append(next.getId()).append("@example.com")
+                    .append("\",\"ip_address\":\"10.").append(next.getId() % 256).append(".0.1")
+                    .append("\",\"latitude\":").append(next.getLatitude())
+                    .append(",\"longitude\":").append(next.getLongitude())
+                    .append('}');
+            out.writeBytes(user.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    /**
+     * The decoded city of a "/city/{city}/users/" path.
+     */
+    private static String cityOf(final String path) {
+        final int start = UsersClient.CITY.length();
+        final int end = path.indexOf('/', start);
+        return end < 0 ? path.substring(start) : path.substring(start, end);
+    }
+
+    private void respond(final HttpExchange exchange, final Body body) throws IOException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long delay = latencyNanos + (jitterNanos > 0 ? random.nextLong(jitterNanos + 1) : 0);
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.close();
+                return;
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            send(exchange, 503, UNAVAILABLE);
+            return;
+        }
+        final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (body.gzipped != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            send(exchange, 200, body.gzipped);
+        } else {
+            send(exchange, 200, body.plain);
+        }
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static final class Body {
+
+        private final byte[] plain;
+        private final byte[] gzipped;
+
+        private Body(final List<User> users, final boolean compress) {
+            this.plain = users.isEmpty() ? EMPTY : json(users);
+            this.gzipped = compress ? gzip(plain) : null;
+        }
+
+        private static byte[] gzip(final byte[] body) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4);
+            try (OutputStream out = new GZIPOutputStream(bytes)) {
+                out.write(body);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to gzip in memory", e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    public static final class Builder {
+
+        private final List<User> users;
+        private final Map<String, List<User>> cities = new HashMap<>();
+        private List<User> otherCities = List.of();
+        private Duration latency = Duration.ZERO;
+        private Duration jitter = Duration.ZERO;
+        private double errorRate;
+        private boolean compress;
+
+        private Builder(final List<User> users) {
+            this.users = users;
+        }
+
+        /**
+         * Lists the users under the city, replacing those it had.
+         */
+        public Builder city(final String city, final List<User> users) {
+            cities.put(city.toLowerCase(Locale.ROOT), users);
+            return this;
+        }
+
+        /**
+         * The users of the cities not listed, none by default.
+         */
+        public Builder otherCities(final List<User> users) {
+            this.otherCities = users;
+            return this;
+        }
+
+        /**
+         * Delays each response by the latency plus a uniform random jitter up to the given one.
+         */
+        public Builder latency(final Duration latency, final Duration jitter) {
+            if (latency.isNegative() || jitter.isNegative()) {
+                throw new IllegalArgumentException("Invalid latency " + latency + " or jitter " + jitter);
+            }
+            this.latency = latency;
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * The share of requests answered 503 Service Unavailable.
+         */
+        public Builder errorRate(final double errorRate) {
+            if (!(errorRate >= 0 && errorRate <= 1)) {
+                throw new IllegalArgumentException("Invalid error rate " + errorRate);
+            }
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Gzips the bodies for the clients accepting gzip.
+         */
+        public Builder compress(final boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+
+        /**
+         * Serializes the bodies and starts serving them.
+         */
+        public StubUsersApi start() throws IOException {
+            return new StubUsersApi(this);
+        }
+    }
+}
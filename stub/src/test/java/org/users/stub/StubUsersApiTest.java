@@ -0,0 +1,59 @@
+package org.users.stub;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.web.client.RestTemplate;
+import org.users.client.UserClientException;
+import org.users.client.UsersClient;
+import org.users.client.UsersRestTemplates;
+import org.users.client.model.User;
+
+public class StubUsersApiTest {
+
+    private static final List<User> USERS = List.of(new User(1, 51.5, -0.1), new User(2, 48.9, 2.4),
+            new User(3, 52.5, 13.4));
+
+    @Test
+    public void shouldServeUsersOfCityIgnoringCase() throws IOException {
+        //given
+        try (StubUsersApi api = StubUsersApi.builder(USERS)
+                .city("New York", USERS.subList(1, 3))
+                .otherCities(USERS.subList(0, 1))
+                .compress(true)
+                .start()) {
+            final UsersClient usersClient = new UsersClient(api.getRootContext(),
+                    UsersRestTemplates.withUserCodec(new RestTemplate()));
+
+            //when
+            final List<User> all = usersClient.getAllUsers();
+            final List<User> newYork = usersClient.getUsersByCity("new york");
+            final List<User> other = usersClient.getUsersByCity("Lagos");
+
+            //then
+            assertEquals(List.of(1L, 2L, 3L), ids(all));
+            assertEquals(48.9, all.get(1).getLatitude(), 0);
+            assertEquals(List.of(2L, 3L), ids(newYork));
+            assertEquals(List.of(1L), ids(other));
+        }
+    }
+
+    @Test(expected = UserClientException.class)
+    public void shouldAnswerUnavailableAtErrorRate() throws IOException {
+        //given
+        try (StubUsersApi api = StubUsersApi.builder(USERS).errorRate(1).start()) {
+            final UsersClient usersClient = new UsersClient(api.getRootContext(), new RestTemplate());
+
+            //when
+            usersClient.getAllUsers();
+        }
+    }
+
+    private static List<Long> ids(final List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+}